@@ -0,0 +1,68 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import com.scandit.barcodepicker.ScanSession;
+import com.scandit.recognition.TrackedBarcode;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handling of what JS passes back when finishing the result callbacks: the tracked code states
+ * and the rejected codes, about a tenth of the codes are rejected.
+ */
+@State(Scope.Thread)
+public class CallbackResponseBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int codeCount;
+
+    private JSONArray mResponse;
+    private ScanSession mSession;
+    private List<Long> mRejectedIds;
+
+
+    @Setup
+    public void setUp() {
+        mResponse = Fixtures.didRecognizeNewCodesResponse(codeCount);
+        List<TrackedBarcode> trackedCodes = Fixtures.trackedCodes(codeCount);
+        mSession = new ScanSession(Fixtures.codes(codeCount), Fixtures.codes(codeCount),
+                                   Fixtures.trackedCodeMap(trackedCodes));
+        mRejectedIds = Fixtures.rejectedIds(codeCount);
+    }
+
+    @Benchmark
+    public Map<Long, JSONObject> determineStateObjects() {
+        return PickerControllerBase.determineStateObjects(mResponse, 1);
+    }
+
+    @Benchmark
+    public int rejectCodes() {
+        Marshal.rejectCodes(mSession, mRejectedIds);
+        return mSession.getRejectedCount();
+    }
+
+    @Benchmark
+    public int rejectTrackedCodes() {
+        Marshal.rejectTrackedCodes(mSession, mRejectedIds);
+        return mSession.getRejectedCount();
+    }
+}
@@ -0,0 +1,257 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Point;
+import android.os.Bundle;
+
+import com.scandit.barcodepicker.BarcodePicker;
+import com.scandit.barcodepicker.ScanSession;
+import com.scandit.barcodepicker.ScanSettings;
+import com.scandit.recognition.Barcode;
+import com.scandit.recognition.Quadrilateral;
+import com.scandit.recognition.TrackedBarcode;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the codes, sessions and pickers used by the benchmarks. The codes are deterministic so
+ * that results of different runs are comparable.
+ */
+final class Fixtures {
+
+    static final int FRAME_WIDTH = 1280;
+    static final int FRAME_HEIGHT = 720;
+
+    private static final int[] SYMBOLOGIES = {
+            Barcode.SYMBOLOGY_EAN13, Barcode.SYMBOLOGY_CODE128, Barcode.SYMBOLOGY_QR
+    };
+    private static final String[] SYMBOLOGY_NAMES = {"ean13", "code128", "qr"};
+
+
+    private Fixtures() {
+    }
+
+    static List<Barcode> codes(int count) {
+        List<Barcode> codes = new ArrayList<Barcode>(count);
+        for (int i = 0; i < count; i++) {
+            codes.add(new Barcode(i + 1, SYMBOLOGIES[i % 3], SYMBOLOGY_NAMES[i % 3], data(i),
+                                  location(i, 0)));
+        }
+        return codes;
+    }
+
+    static List<TrackedBarcode> trackedCodes(int count) {
+        List<TrackedBarcode> codes = new ArrayList<TrackedBarcode>(count);
+        for (int i = 0; i < count; i++) {
+            codes.add(new TrackedBarcode(i + 1, SYMBOLOGIES[i % 3], SYMBOLOGY_NAMES[i % 3],
+                                         data(i), location(i, 0), location(i, 4)));
+        }
+        return codes;
+    }
+
+    static Map<Long, TrackedBarcode> trackedCodeMap(List<TrackedBarcode> codes) {
+        Map<Long, TrackedBarcode> map = new LinkedHashMap<Long, TrackedBarcode>();
+        for (TrackedBarcode code : codes) {
+            map.put(code.getId(), code);
+        }
+        return map;
+    }
+
+    /**
+     * A session in which all the codes have just been recognized.
+     */
+    static ScanSession session(List<Barcode> codes) {
+        return new ScanSession(codes, codes, new LinkedHashMap<Long, TrackedBarcode>());
+    }
+
+    static BarcodePicker picker() {
+        return new BarcodePicker(new Context(2.625f), 1080, 1920, FRAME_WIDTH, FRAME_HEIGHT);
+    }
+
+    static PickerCoordinateTransform transform() {
+        return PickerCoordinateTransform.probe(picker(), FRAME_WIDTH, FRAME_HEIGHT);
+    }
+
+    static ResultFormat format(String encoding, String sessionDelivery, String symbologyEncoding) {
+        Bundle options = new Bundle();
+        options.putString(DeliveryParamParser.paramResultEncoding, encoding);
+        options.putString(DeliveryParamParser.paramSessionDelivery, sessionDelivery);
+        options.putString(DeliveryParamParser.paramSymbologyEncoding, symbologyEncoding);
+        return ResultFormat.fromOptions(options);
+    }
+
+    /**
+     * The args JS passes to finishDidRecognizeNewCodesCallback: the rejected ids and a state object
+     * for each of the tracked codes.
+     */
+    static JSONArray didRecognizeNewCodesResponse(int count) {
+        JSONArray rejected = new JSONArray();
+        JSONObject states = new JSONObject();
+        for (int i = 0; i < count; i++) {
+            if (i % 10 == 0) {
+                rejected.put(i + 1);
+            }
+            JSONObject state = new JSONObject();
+            state.put("color", "#ff0000");
+            state.put("shouldAnimateFromPreviousToNextState", true);
+            states.put(String.valueOf(i + 1), state);
+        }
+        return new JSONArray(Arrays.asList(rejected, states));
+    }
+
+    /**
+     * Every tenth code id, like an app rejecting some of the codes.
+     */
+    static List<Long> rejectedIds(int count) {
+        List<Long> ids = new ArrayList<Long>();
+        for (int i = 0; i < count; i += 10) {
+            ids.add((long) i + 1);
+        }
+        return ids;
+    }
+
+    /**
+     * The options of a typical show() call as they arrive from JS.
+     */
+    static JSONObject showOptions() {
+        JSONObject options = new JSONObject();
+        options.put("continuousMode", true);
+        options.put("resultEncoding", "binary");
+        options.put("codeFields", new JSONArray(Arrays.asList("data", "symbology", "location")));
+        JSONObject margins = new JSONObject();
+        margins.put("left", 0);
+        margins.put("top", 0);
+        margins.put("right", 0);
+        margins.put("bottom", 0.5);
+        options.put("portraitMargins", margins);
+        options.put("landscapeMargins", margins);
+        options.put("animationDuration", 0.25);
+        options.put("searchBarPlaceholderText", "Scan barcode or enter it here");
+        return options;
+    }
+
+    /**
+     * A NV21 frame with a gradient in the luma plane and neutral chroma.
+     */
+    static byte[] frame(int width, int height) {
+        byte[] frame = new byte[width * height * 3 / 2];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                frame[y * width + x] = (byte) (x + y);
+            }
+        }
+        Arrays.fill(frame, width * height, frame.length, (byte) 128);
+        return frame;
+    }
+
+    /**
+     * A controller without a picker, for driving the result callbacks of PickerControllerBase. It
+     * keeps the rejected code ids JS passes, everything else does nothing.
+     */
+    static class TestController extends PickerControllerBase {
+
+        // only accessed by the engine thread.
+        List<Long> rejectedCodeIds;
+        List<Long> rejectedTrackedCodeIds;
+
+
+        TestController() {
+            super(null, new CallbackContext());
+        }
+
+        @Override
+        protected void setRejectedCodeIds(List<Long> rejectedCodeIds) {
+            this.rejectedCodeIds = rejectedCodeIds;
+        }
+
+        @Override
+        protected void setRejectedTrackedCodeIds(List<Long> rejectedCodeIds) {
+            this.rejectedTrackedCodeIds = rejectedCodeIds;
+        }
+
+        @Override
+        protected void setTrackedCodeStates(Map<Long, JSONObject> trackedCodeStates) {
+        }
+
+        @Override
+        public void show(JSONObject settings, Bundle options, Bundle overlayOptions,
+                         boolean legacyMode, CallbackContext callbacks) {
+        }
+
+        @Override
+        public void applyScanSettings(ScanSettings scanSettings) {
+        }
+
+        @Override
+        public void updateUI(Bundle overlayOptions) {
+        }
+
+        @Override
+        public void updateResultFormat(Bundle options) {
+        }
+
+        @Override
+        public void updateFrameExportPolicy(Bundle options) {
+        }
+
+        @Override
+        public JSONObject getCoordinateTransform() {
+            return null;
+        }
+
+        @Override
+        public void setTorchEnabled(boolean enabled) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void onActivityPause() {
+        }
+
+        @Override
+        public void onActivityResume() {
+        }
+
+        @Override
+        public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        }
+
+        @Override
+        public void startScanning(boolean paused) {
+        }
+    }
+
+    private static String data(int index) {
+        return String.format("%013d", 4006381333931L + index * 7919L);
+    }
+
+    private static Quadrilateral location(int index, int offset) {
+        int x = 40 + (index * 97) % (FRAME_WIDTH - 240) + offset;
+        int y = 40 + (index * 53) % (FRAME_HEIGHT - 120) + offset;
+        return new Quadrilateral(new Point(x, y), new Point(x + 200, y + 4),
+                                 new Point(x - 2, y + 80), new Point(x + 198, y + 84));
+    }
+}
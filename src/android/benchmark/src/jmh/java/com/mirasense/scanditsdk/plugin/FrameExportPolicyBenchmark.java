@@ -0,0 +1,65 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.graphics.Rect;
+import android.os.Bundle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sharpness and brightness gate of the frame export policy, which runs on the engine thread for
+ * every frame that would be exported. It samples a fixed grid, so the whole frame costs about as
+ * much as the bounds of a code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameExportPolicyBenchmark {
+
+    @Param({"1920x1080", "3840x2160"})
+    String resolution;
+
+    private byte[] mFrame;
+    private int mWidth;
+    private int mHeight;
+    private Rect mRegion;
+    private FrameExportPolicy mPolicy;
+
+
+    @Setup
+    public void setUp() {
+        String[] size = resolution.split("x");
+        mWidth = Integer.parseInt(size[0]);
+        mHeight = Integer.parseInt(size[1]);
+        mFrame = Fixtures.frame(mWidth, mHeight);
+        mRegion = new Rect(0, 0, mWidth, mHeight);
+        Bundle options = new Bundle();
+        options.putFloat(DeliveryParamParser.paramFrameMinSharpness, 4.0f);
+        options.putInt(DeliveryParamParser.paramFrameMinBrightness, 40);
+        mPolicy = FrameExportPolicy.fromOptions(options);
+    }
+
+    @Benchmark
+    public boolean passesQualityGate() {
+        return mPolicy.passesQualityGate(mFrame, mWidth, mHeight, mRegion);
+    }
+}
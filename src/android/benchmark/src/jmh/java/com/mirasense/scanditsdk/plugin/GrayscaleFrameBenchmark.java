@@ -0,0 +1,76 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.graphics.Rect;
+import android.os.Bundle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of full frames in color against the grayscale path (frameGrayscale), which only reads
+ * the Y plane, optionally downsampled (frameDownsample). The JPEGs are compressed by the ImageIO
+ * stand-in of the YuvImage, which converts the neutral chroma of grayscale frames as well, the
+ * grayscale PNGs are written by the plugin itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GrayscaleFrameBenchmark {
+
+    @Param({"1920x1080", "3840x2160"})
+    String resolution;
+
+    @Param({"jpeg", "png"})
+    String format;
+
+    // color, or grayscale downsampled by the given factor.
+    @Param({"color", "1", "2"})
+    String grayscale;
+
+    private byte[] mFrame;
+    private int mWidth;
+    private int mHeight;
+    private Rect mRegion;
+    private FrameFormat mFormat;
+
+
+    @Setup
+    public void setUp() {
+        String[] size = resolution.split("x");
+        mWidth = Integer.parseInt(size[0]);
+        mHeight = Integer.parseInt(size[1]);
+        mFrame = Fixtures.frame(mWidth, mHeight);
+        mRegion = new Rect(0, 0, mWidth, mHeight);
+        Bundle options = new Bundle();
+        options.putString(DeliveryParamParser.paramFrameFormat, format);
+        if (!"color".equals(grayscale)) {
+            options.putBoolean(DeliveryParamParser.paramFrameGrayscale, true);
+            options.putInt(DeliveryParamParser.paramFrameDownsample, Integer.parseInt(grayscale));
+        }
+        mFormat = FrameFormat.fromOptions(options);
+    }
+
+    @Benchmark
+    public byte[] encodeFrame() {
+        return SampleBufferConverter.encodeFrame(mFrame, mWidth, mHeight, mRegion, mFormat);
+    }
+}
@@ -0,0 +1,182 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.content.Context;
+import android.graphics.Point;
+
+import com.scandit.barcodepicker.BarcodePicker;
+import com.scandit.barcodepicker.ScanSession;
+import com.scandit.recognition.Barcode;
+import com.scandit.recognition.Quadrilateral;
+import com.scandit.recognition.TrackedBarcode;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * The didScan and didRecognizeNewCodes json results of the streaming writer of ResultRelay next to
+ * the JSONObject tree the plugin built before, which converted every corner through the picker.
+ * Both produce the same fields, with the raw data as an array of ints.
+ */
+@State(Scope.Thread)
+public class JsonObjectResultBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int codeCount;
+
+    private ScanSession mSession;
+    private List<TrackedBarcode> mTrackedCodes;
+    private BarcodePicker mPicker;
+    private PickerCoordinateTransform mTransform;
+    private ResultFormat mFormat;
+    private final SessionDeltaTracker mTracker = new SessionDeltaTracker();
+    private final SymbologyTable mSymbologies = new SymbologyTable();
+
+
+    @Setup
+    public void setUp() {
+        mSession = Fixtures.session(Fixtures.codes(codeCount));
+        mTrackedCodes = Fixtures.trackedCodes(codeCount);
+        mPicker = Fixtures.picker();
+        mTransform = Fixtures.transform();
+        mFormat = Fixtures.format("json", "full", "name");
+    }
+
+    @Benchmark
+    public PluginResult didScanStreaming() {
+        mSymbologies.reset();
+        return Marshal.createOkResultFromJson(ResultRelay.jsonForSession(
+                mSession, mTransform, mFormat, mTracker, mSymbologies, 0));
+    }
+
+    @Benchmark
+    public PluginResult didScanJsonObject() {
+        return Marshal.createOkResult(Marshal.createEventArgs(ScanditSDK.DID_SCAN_EVENT,
+                jsonForSession(mSession, mPicker)));
+    }
+
+    @Benchmark
+    public PluginResult didRecognizeNewCodesStreaming() {
+        mSymbologies.reset();
+        return Marshal.createOkResultFromJson(ResultRelay.jsonForTrackedCodes(
+                mTrackedCodes, mTransform, mFormat, mSymbologies, 0));
+    }
+
+    @Benchmark
+    public PluginResult didRecognizeNewCodesJsonObject() {
+        return Marshal.createOkResult(Marshal.createEventArgs(ScanditSDK.DID_RECOGNIZE_NEW_CODES,
+                jsonForTrackedCodes(mTrackedCodes, mPicker)));
+    }
+
+    private static JSONObject jsonForSession(ScanSession session, BarcodePicker picker) {
+        JSONObject json = new JSONObject();
+        try {
+            json.put("newlyRecognizedCodes", jsonForCodes(session.getNewlyRecognizedCodes(), picker));
+            json.put("newlyLocalizedCodes", jsonForCodes(session.getNewlyLocalizedCodes(), picker));
+            json.put("allRecognizedCodes", jsonForCodes(session.getAllRecognizedCodes(), picker));
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return json;
+    }
+
+    private static JSONObject jsonForTrackedCodes(List<TrackedBarcode> trackedCodes,
+                                                  BarcodePicker picker) {
+        JSONObject json = new JSONObject();
+        try {
+            json.put("newlyTrackedCodes", jsonForCodes(trackedCodes, picker));
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return json;
+    }
+
+    private static JSONArray jsonForCodes(List<? extends Barcode> codes, BarcodePicker picker) {
+        JSONArray array = new JSONArray();
+        for (Barcode code : codes) {
+            JSONObject object = new JSONObject();
+            try {
+                object.put("symbology", code.getSymbologyName());
+                object.put("gs1DataCarrier", code.isGs1DataCarrier());
+                object.put("recognized", code.isRecognized());
+                object.put("data", code.getData());
+                object.put("location", jsonForQuadrilateral(code.getLocation()));
+                object.put("convertedLocation",
+                        jsonForQuadrilateral(convertQuadrilateral(picker, code.getLocation())));
+                object.put("compositeFlag", code.getCompositeFlag());
+                if (code instanceof TrackedBarcode) {
+                    Quadrilateral predicted = ((TrackedBarcode) code).getPredictedLocation();
+                    object.put("uniqueId", ((TrackedBarcode) code).getId());
+                    object.put("predictedLocation", jsonForQuadrilateral(predicted));
+                    object.put("convertedPredictedLocation",
+                            jsonForQuadrilateral(convertQuadrilateral(picker, predicted)));
+                } else {
+                    object.put("uniqueId", code.getHandle());
+                }
+                if (code.isRecognized()) {
+                    JSONArray bytes = new JSONArray();
+                    for (byte theByte : code.getRawData()) {
+                        bytes.put((int) theByte);
+                    }
+                    object.put("rawData", bytes);
+                }
+                array.put(object);
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+        }
+        return array;
+    }
+
+    private static Quadrilateral convertQuadrilateral(BarcodePicker picker, Quadrilateral rect) {
+        return new Quadrilateral(
+                dpFromPx(picker.getContext(), picker.convertPointToPickerCoordinates(rect.top_left)),
+                dpFromPx(picker.getContext(), picker.convertPointToPickerCoordinates(rect.top_right)),
+                dpFromPx(picker.getContext(), picker.convertPointToPickerCoordinates(rect.bottom_left)),
+                dpFromPx(picker.getContext(), picker.convertPointToPickerCoordinates(rect.bottom_right)));
+    }
+
+    private static Point dpFromPx(Context context, Point point) {
+        float displayDensity = context.getResources().getDisplayMetrics().density;
+        return new Point((int) (point.x / displayDensity), (int) (point.y / displayDensity));
+    }
+
+    private static JSONObject jsonForQuadrilateral(Quadrilateral quadrilateral) {
+        JSONObject obj = new JSONObject();
+        try {
+            obj.put("topLeft", jsonForPoint(quadrilateral.top_left));
+            obj.put("topRight", jsonForPoint(quadrilateral.top_right));
+            obj.put("bottomLeft", jsonForPoint(quadrilateral.bottom_left));
+            obj.put("bottomRight", jsonForPoint(quadrilateral.bottom_right));
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return obj;
+    }
+
+    private static JSONArray jsonForPoint(Point point) {
+        JSONArray array = new JSONArray();
+        array.put(point.x);
+        array.put(point.y);
+        return array;
+    }
+}
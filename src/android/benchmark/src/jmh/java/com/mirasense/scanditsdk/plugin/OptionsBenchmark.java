@@ -0,0 +1,50 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.os.Bundle;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Conversion of the options passed to show(), updateOverlay() and applySettings().
+ */
+@State(Scope.Thread)
+public class OptionsBenchmark {
+
+    private JSONObject mOptions;
+    private Bundle mBundle;
+
+
+    @Setup
+    public void setUp() {
+        mOptions = Fixtures.showOptions();
+        mBundle = new Bundle();
+        Marshal.setOptionsOnBundle(mOptions, mBundle);
+    }
+
+    @Benchmark
+    public Bundle setOptionsOnBundle() {
+        Bundle bundle = new Bundle();
+        Marshal.setOptionsOnBundle(mOptions, bundle);
+        return bundle;
+    }
+
+    @Benchmark
+    public ResultFormat resultFormatFromOptions() {
+        return ResultFormat.fromOptions(mBundle);
+    }
+}
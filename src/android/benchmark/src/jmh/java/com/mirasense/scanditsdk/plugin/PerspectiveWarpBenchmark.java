@@ -0,0 +1,65 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import com.scandit.recognition.Barcode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rectification of the crops of the frameRegion "rectified" on the encoder thread, without the
+ * compression of the crops. The warp only reads the pixels under the codes, so the frame size
+ * doesn't matter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PerspectiveWarpBenchmark {
+
+    @Param({"200", "400", "800"})
+    int cropWidth;
+
+    private byte[] mFrame;
+    private float[][] mCorners;
+    private byte[] mWarp;
+
+
+    @Setup
+    public void setUp() {
+        mFrame = Fixtures.frame(Fixtures.FRAME_WIDTH, Fixtures.FRAME_HEIGHT);
+        List<Barcode> codes = Fixtures.codes(3);
+        mCorners = new float[codes.size()][];
+        for (int i = 0; i < mCorners.length; i++) {
+            mCorners[i] = PerspectiveWarp.cornersOf(codes.get(i).getLocation());
+        }
+    }
+
+    @Benchmark
+    public byte[] warpNv21() {
+        for (float[] corners : mCorners) {
+            int height = PerspectiveWarp.heightForWidth(corners, cropWidth);
+            mWarp = PerspectiveWarp.warpNv21(mFrame, Fixtures.FRAME_WIDTH, Fixtures.FRAME_HEIGHT,
+                    corners, FrameFormat.DEFAULT_REGION_MARGIN, cropWidth, height, false, mWarp);
+        }
+        return mWarp;
+    }
+}
@@ -0,0 +1,121 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Control;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wake-up latency of the blocking result callback handshake. One thread plays the engine thread
+ * sending results, the others play the bridge thread finishing the callbacks and JS changing the
+ * picker state at the same time.
+ *
+ * The score of the engine thread is the round trip time from sending a result until it woke up.
+ * That every wake-up happens exactly once with the right decision is checked by
+ * ResultCallbackStressTest.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResultCallbackBenchmark {
+
+    private static final PluginResult RESULT = new PluginResult(PluginResult.Status.OK, "didScan");
+    private static final JSONArray DECISION = new JSONArray("[3,[1,2]]");
+
+    @State(Scope.Group)
+    public static class Controller extends Fixtures.TestController {
+
+        @Setup(Level.Iteration)
+        public void start() {
+            setResultCallbackTimeout(DEFAULT_RESULT_CALLBACK_TIMEOUT_MS);
+            setState(PickerStateMachine.ACTIVE);
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            // releases the engine thread if it is still waiting.
+            setState(PickerStateMachine.STOPPED);
+        }
+    }
+
+    private static int sendResult(Controller controller) {
+        return controller.sendPluginResultBlocking(RESULT,
+                PickerControllerBase.RESULT_EVENT_DID_SCAN);
+    }
+
+    private static void finishIfInFlight(Controller controller, Control control) {
+        // at the end of an iteration keep finishing until the engine thread stopped sending.
+        do {
+            if (controller.isResultCallbackInFlight()) {
+                controller.finishDidScanCallback(DECISION);
+            } else {
+                Thread.yield();
+            }
+        } while (control.stopMeasurement && controller.isResultCallbackInFlight());
+    }
+
+    /**
+     * Round trip of a result that JS finishes right away.
+     */
+    @Benchmark
+    @Group("handshake")
+    @GroupThreads(1)
+    public int engine(Controller controller) {
+        return sendResult(controller);
+    }
+
+    @Benchmark
+    @Group("handshake")
+    @GroupThreads(1)
+    public void bridge(Controller controller, Control control) {
+        finishIfInFlight(controller, control);
+    }
+
+    /**
+     * Like handshake, with several threads finishing the same callbacks and the picker state
+     * changing all the time.
+     */
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public int contendedEngine(Controller controller) {
+        return sendResult(controller);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public void contendedBridge(Controller controller, Control control) {
+        finishIfInFlight(controller, control);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void stateChanges(Controller controller) {
+        controller.setState(PickerStateMachine.ACTIVE);
+        Thread.yield();
+    }
+}
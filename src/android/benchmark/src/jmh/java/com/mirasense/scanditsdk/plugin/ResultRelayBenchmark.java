@@ -0,0 +1,100 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import com.scandit.barcodepicker.ScanSession;
+import com.scandit.recognition.Barcode;
+import com.scandit.recognition.TrackedBarcode;
+
+import org.apache.cordova.PluginResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Marshalling of didScan and didRecognizeNewCodes results up to the PluginResult handed to
+ * cordova, for both result encodings.
+ */
+@State(Scope.Thread)
+public class ResultRelayBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int codeCount;
+
+    @Param({"json", "binary"})
+    String encoding;
+
+    private ScanSession mSession;
+    private List<TrackedBarcode> mTrackedCodes;
+    private ScanSession mGrowingSession;
+    private PickerCoordinateTransform mTransform;
+    private ResultFormat mFullFormat;
+    private ResultFormat mIncrementalFormat;
+    private final SessionDeltaTracker mTracker = new SessionDeltaTracker();
+    private final SymbologyTable mSymbologies = new SymbologyTable();
+
+
+    @Setup
+    public void setUp() {
+        List<Barcode> codes = Fixtures.codes(codeCount);
+        mSession = Fixtures.session(codes);
+        mTrackedCodes = Fixtures.trackedCodes(codeCount);
+        // a continuous session that already contains the codes and recognizes one more.
+        List<Barcode> allCodes = new ArrayList<Barcode>(Fixtures.codes(codeCount + 1));
+        mGrowingSession = new ScanSession(allCodes.subList(codeCount, codeCount + 1), allCodes,
+                                          Fixtures.trackedCodeMap(mTrackedCodes));
+        mTransform = Fixtures.transform();
+        mFullFormat = Fixtures.format(encoding, "full", "name");
+        mIncrementalFormat = Fixtures.format(encoding, "incremental", "id");
+        mTracker.update(Fixtures.session(allCodes.subList(0, codeCount)));
+    }
+
+    @Benchmark
+    public PluginResult didScan() {
+        return resultForSession(mSession, mFullFormat);
+    }
+
+    /**
+     * didScan of a session that grew by one code, with the session delivered incrementally and
+     * symbology ids.
+     */
+    @Benchmark
+    public PluginResult didScanIncremental() {
+        return resultForSession(mGrowingSession, mIncrementalFormat);
+    }
+
+    @Benchmark
+    public PluginResult didRecognizeNewCodes() {
+        mSymbologies.reset();
+        if (mFullFormat.isBinary()) {
+            return Marshal.createOkResult(ResultRelay.binaryForTrackedCodes(
+                    mTrackedCodes, mTransform, mFullFormat, mSymbologies, 0));
+        }
+        return Marshal.createOkResultFromJson(ResultRelay.jsonForTrackedCodes(
+                mTrackedCodes, mTransform, mFullFormat, mSymbologies, 0));
+    }
+
+    private PluginResult resultForSession(ScanSession session, ResultFormat format) {
+        mSymbologies.reset();
+        if (format.isBinary()) {
+            return Marshal.createOkResult(ResultRelay.binaryForSession(
+                    session, mTransform, format, mTracker, mSymbologies, 0));
+        }
+        return Marshal.createOkResultFromJson(ResultRelay.jsonForSession(
+                session, mTransform, format, mTracker, mSymbologies, 0));
+    }
+}
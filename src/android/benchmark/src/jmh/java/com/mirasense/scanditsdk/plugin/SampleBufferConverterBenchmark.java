@@ -0,0 +1,126 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.os.Bundle;
+
+import com.scandit.recognition.Barcode;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of the camera frames passed with shouldPassBarcodeFrame. The image compression is
+ * done by the stand-ins on top of ImageIO, so only the relative numbers between runs are
+ * meaningful.
+ *
+ * exportFrame measures what is left on the engine thread when the frames are encoded by the
+ * FrameExporter, the encoder drops most of the frames then. Both encode the region of the frame
+ * around three recognized codes unless the region is full.
+ *
+ * storeFrame measures the encoder thread with frameDelivery "url", writing the image to the
+ * FrameStore instead of base64 encoding it. The cost saved on the bridge is not measured here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SampleBufferConverterBenchmark {
+
+    @Param({"640x480", "1280x720"})
+    String resolution;
+
+    @Param({"jpeg", "png"})
+    String format;
+
+    // Frames are scaled down to fit, 0 for the camera resolution.
+    @Param({"0", "640"})
+    int maxDimension;
+
+    @Param({"full", "codes", "perCode"})
+    String region;
+
+    private byte[] mFrame;
+    private int mWidth;
+    private int mHeight;
+    private FrameFormat mFormat;
+    private FrameExporter mExporter;
+    private List<Barcode> mCodes;
+    private FrameStore mStore;
+
+
+    @Setup
+    public void setUp() {
+        String[] size = resolution.split("x");
+        mWidth = Integer.parseInt(size[0]);
+        mHeight = Integer.parseInt(size[1]);
+        mFrame = Fixtures.frame(mWidth, mHeight);
+        Bundle options = new Bundle();
+        options.putString(DeliveryParamParser.paramFrameFormat, format);
+        options.putInt(DeliveryParamParser.paramFrameMaxDimension, maxDimension);
+        options.putString(DeliveryParamParser.paramFrameRegion, region);
+        mFormat = FrameFormat.fromOptions(options);
+        mExporter = new FrameExporter(new FrameExporter.Listener() {
+            @Override
+            public void onFrameExported(JSONObject frame) {
+            }
+        });
+        mExporter.setFormat(mFormat);
+        mCodes = Fixtures.codes(3);
+        mStore = FrameStore.getInstance(new Context(1.0f));
+    }
+
+    @Benchmark
+    public String base64StringFromFrame() {
+        Rect[] regions = FrameExporter.regionsForCodes(mCodes, mWidth, mHeight, mFormat);
+        if (regions == null) {
+            return SampleBufferConverter.base64StringFromFrame(mFrame, mWidth, mHeight, mFormat);
+        }
+        String last = null;
+        for (Rect region : regions) {
+            last = SampleBufferConverter.base64StringFromFrame(mFrame, mWidth, mHeight, region,
+                    mFormat);
+        }
+        return last;
+    }
+
+    @Benchmark
+    public String storeFrame() {
+        Rect[] regions = FrameExporter.regionsForCodes(mCodes, mWidth, mHeight, mFormat);
+        if (regions == null) {
+            regions = new Rect[]{ new Rect(0, 0, mWidth, mHeight) };
+        }
+        String last = null;
+        for (Rect region : regions) {
+            byte[] image = SampleBufferConverter.encodeFrame(mFrame, mWidth, mHeight, region,
+                    mFormat);
+            last = mStore.put(image, 0, image.length, mFormat.isPng());
+        }
+        return last;
+    }
+
+    @Benchmark
+    public long exportFrame() {
+        return mExporter.export(mFrame, mWidth, mHeight, mCodes);
+    }
+}
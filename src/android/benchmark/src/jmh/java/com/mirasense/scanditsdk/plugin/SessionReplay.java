@@ -0,0 +1,187 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.graphics.Point;
+
+import com.scandit.barcodepicker.OnScanListener;
+import com.scandit.barcodepicker.ProcessFrameListener;
+import com.scandit.barcodepicker.ScanSession;
+import com.scandit.recognition.Barcode;
+import com.scandit.recognition.Quadrilateral;
+import com.scandit.recognition.TrackedBarcode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays session recordings (see SessionRecorder) into the listener methods of a controller, in
+ * the order they were recorded and as fast as possible. The sessions are created again as
+ * ScanSession stand-ins when the recording is loaded, so a replay only measures the controller.
+ *
+ * Recordings are pulled from the device with
+ *
+ *   adb shell run-as <app id> cat files/scandit-recordings/<file> > <file>
+ */
+final class SessionReplay {
+
+    /**
+     * The listener methods a recording is replayed into, like the ones of
+     * SubViewPickerController. Whether MatrixScan is enabled is recorded with every frame.
+     */
+    interface Target extends OnScanListener, ProcessFrameListener {
+
+        void setMatrixScanEnabled(boolean enabled);
+    }
+
+    private static final class Step {
+
+        final SessionRecorder.Record record;
+        final ScanSession session;
+        final boolean matrixScan;
+
+
+        Step(SessionRecorder.Record record, ScanSession session, boolean matrixScan) {
+            this.record = record;
+            this.session = session;
+            this.matrixScan = matrixScan;
+        }
+    }
+
+    private final List<Step> mSteps = new ArrayList<Step>();
+    private int mFrameCount = 0;
+
+
+    /**
+     * Loads a recording, or all the recordings in the directory in the order they were written.
+     */
+    static SessionReplay load(File recording) throws IOException {
+        SessionReplay replay = new SessionReplay();
+        File[] files = recording.isDirectory() ? SessionRecorder.recordings(recording)
+                : new File[]{ recording };
+        for (File file : files) {
+            for (SessionRecorder.Record record : SessionRecorder.read(file)) {
+                replay.add(record);
+            }
+        }
+        if (replay.mSteps.isEmpty()) {
+            throw new IOException("No session records in " + recording);
+        }
+        return replay;
+    }
+
+    private void add(SessionRecorder.Record record) {
+        ByteBuffer session = ByteBuffer.wrap(record.session);
+        if (record.type == SessionRecorder.TYPE_DID_SCAN) {
+            List<Barcode> newlyRecognizedCodes = codes(session, false);
+            List<Barcode> newlyLocalizedCodes = codes(session, false);
+            List<Barcode> allRecognizedCodes = codes(session, false);
+            mSteps.add(new Step(record, new ScanSession(newlyRecognizedCodes, newlyLocalizedCodes,
+                    allRecognizedCodes, null), false));
+            return;
+        }
+        boolean matrixScan = session.get() != 0;
+        List<Barcode> newlyRecognizedCodes = codes(session, false);
+        List<Barcode> trackedCodes = codes(session, true);
+        Map<Long, TrackedBarcode> trackedCodeMap = null;
+        if (trackedCodes != null) {
+            trackedCodeMap = new LinkedHashMap<Long, TrackedBarcode>();
+            for (Barcode code : trackedCodes) {
+                trackedCodeMap.put(((TrackedBarcode) code).getId(), (TrackedBarcode) code);
+            }
+        }
+        mSteps.add(new Step(record, new ScanSession(newlyRecognizedCodes, new ArrayList<Barcode>(),
+                new ArrayList<Barcode>(), trackedCodeMap), matrixScan));
+        mFrameCount++;
+    }
+
+    int getRecordCount() {
+        return mSteps.size();
+    }
+
+    int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Passes all the records to the target.
+     */
+    void replay(Target target) {
+        for (Step step : mSteps) {
+            SessionRecorder.Record record = step.record;
+            if (record.type == SessionRecorder.TYPE_DID_SCAN) {
+                target.didScan(step.session);
+            } else {
+                target.setMatrixScanEnabled(step.matrixScan);
+                target.didProcess(record.frame, record.width, record.height, step.session);
+            }
+        }
+    }
+
+    /**
+     * Reads codes in the layout of SessionRecorder, null for a count of -1.
+     */
+    private static List<Barcode> codes(ByteBuffer session, boolean tracked) {
+        int count = session.getInt();
+        if (count < 0) {
+            return null;
+        }
+        List<Barcode> codes = new ArrayList<Barcode>(count);
+        for (int i = 0; i < count; i++) {
+            long id = session.getLong();
+            int symbology = session.getInt();
+            String symbologyName = string(session);
+            String data = string(session);
+            byte[] rawData = bytes(session);
+            Quadrilateral location = quad(session);
+            boolean recognized = session.get() != 0;
+            int compositeFlag = session.getInt();
+            boolean gs1DataCarrier = session.get() != 0;
+            if (tracked) {
+                codes.add(new TrackedBarcode(id, symbology, symbologyName, data, rawData, location,
+                        quad(session), recognized, compositeFlag, gs1DataCarrier));
+            } else {
+                codes.add(new Barcode(id, symbology, symbologyName, data, rawData, location,
+                        recognized, compositeFlag, gs1DataCarrier));
+            }
+        }
+        return codes;
+    }
+
+    private static String string(ByteBuffer session) {
+        byte[] bytes = bytes(session);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    private static byte[] bytes(ByteBuffer session) {
+        int length = session.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        session.get(bytes);
+        return bytes;
+    }
+
+    private static Quadrilateral quad(ByteBuffer session) {
+        return new Quadrilateral(new Point(session.getInt(), session.getInt()),
+                                 new Point(session.getInt(), session.getInt()),
+                                 new Point(session.getInt(), session.getInt()),
+                                 new Point(session.getInt(), session.getInt()));
+    }
+}
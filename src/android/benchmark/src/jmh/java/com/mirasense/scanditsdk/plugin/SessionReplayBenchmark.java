@@ -0,0 +1,210 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import com.scandit.barcodepicker.BarcodePicker;
+import com.scandit.barcodepicker.ScanSession;
+import com.scandit.recognition.Barcode;
+import com.scandit.recognition.TrackedBarcode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a session recording (recordSession option) through PickerResultHandler, the didScan and
+ * didProcess code of SubViewPickerController: marshalling the results, the MatrixScan diff and the
+ * frame export. Pass a recording pulled from a device, or a directory of them, with
+ *
+ *   gradle jmh -Pbenchmarks=SessionReplay -Precording=/path/to/scandit-recordings
+ *
+ * Without a recording, a synthetic one is recorded first: a shelf of 200 tracked labels passing
+ * through the frame, one new label per frame. The score is the time for the whole recording.
+ *
+ * recordDidProcess is what recording costs the engine thread per frame with 200 tracked codes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SessionReplayBenchmark {
+
+    private static final int SYNTHETIC_FRAMES = 240;
+    private static final int SYNTHETIC_TRACKED_CODES = 200;
+
+    /**
+     * Passes the replayed sessions to the PickerResultHandler like SubViewPickerController does,
+     * without the picker and its views. Results are pipelined, so nothing waits for JS.
+     */
+    static class ReplayController extends Fixtures.TestController
+            implements SessionReplay.Target {
+
+        private final BarcodePicker mPicker = Fixtures.picker();
+        private final PickerResultHandler mResultHandler = new PickerResultHandler(this);
+        private final ResultFormat mResultFormat;
+        private final boolean mShouldPassBarcodeFrame;
+        private boolean mMatrixScan = false;
+
+
+        ReplayController(ResultFormat resultFormat, boolean shouldPassBarcodeFrame) {
+            mResultFormat = resultFormat;
+            mShouldPassBarcodeFrame = shouldPassBarcodeFrame;
+            setPipelinedEvents(RESULT_EVENT_DID_SCAN | RESULT_EVENT_DID_RECOGNIZE_NEW_CODES);
+        }
+
+        /**
+         * Forgets the codes of the previous replay, like show() does.
+         */
+        void reset() {
+            mResultHandler.reset(mResultFormat, mShouldPassBarcodeFrame);
+        }
+
+        @Override
+        public void setMatrixScanEnabled(boolean enabled) {
+            if (enabled != mMatrixScan) {
+                mResultHandler.clearTrackedCodes();
+            }
+            mMatrixScan = enabled;
+        }
+
+        @Override
+        public void didScan(ScanSession session) {
+            mResultHandler.didScan(session, mPicker);
+            Marshal.rejectCodes(session, rejectedCodeIds);
+        }
+
+        @Override
+        public void didProcess(byte[] bytes, int width, int height, ScanSession session) {
+            mResultHandler.didProcess(bytes, width, height, session, mMatrixScan, mPicker);
+        }
+
+        @Override
+        protected void setRejectedTrackedCodeIds(List<Long> rejectedCodeIds) {
+            mResultHandler.setRejectedTrackedCodeIds(rejectedCodeIds);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Replay {
+
+        // A recording or a directory of recordings, empty for the synthetic one.
+        @Param({""})
+        String recording;
+
+        @Param({"json", "binary"})
+        String encoding;
+
+        @Param({"false", "true"})
+        boolean shouldPassBarcodeFrame;
+
+        SessionReplay replay;
+        ReplayController controller;
+
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            controller = new ReplayController(Fixtures.format(encoding, "full", "name"),
+                    shouldPassBarcodeFrame);
+            if (!recording.isEmpty()) {
+                replay = SessionReplay.load(new File(recording));
+                return;
+            }
+            File directory = Files.createTempDirectory("scandit-recordings").toFile();
+            try {
+                recordShelf(directory);
+                replay = SessionReplay.load(directory);
+            } finally {
+                for (File file : SessionRecorder.recordings(directory)) {
+                    file.delete();
+                }
+                directory.delete();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Recording {
+
+        @Param({"1", "4"})
+        int downsample;
+
+        File directory;
+        SessionRecorder recorder;
+        byte[] frame;
+        ScanSession session;
+
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            directory = Files.createTempDirectory("scandit-recordings").toFile();
+            recorder = new SessionRecorder(directory, downsample,
+                    SessionRecorder.DEFAULT_MAX_FILE_BYTES, 2);
+            frame = Fixtures.frame(Fixtures.FRAME_WIDTH, Fixtures.FRAME_HEIGHT);
+            session = new ScanSession(new ArrayList<Barcode>(), new ArrayList<Barcode>(),
+                    Fixtures.trackedCodeMap(Fixtures.trackedCodes(SYNTHETIC_TRACKED_CODES)));
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            recorder.close();
+            for (File file : SessionRecorder.recordings(directory)) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Records a shelf of labels passing through the frame, downsampled by 4 to keep the recording
+     * small.
+     */
+    private static void recordShelf(File directory) {
+        SessionRecorder recorder = new SessionRecorder(directory, 4,
+                SessionRecorder.DEFAULT_MAX_FILE_BYTES, SessionRecorder.DEFAULT_MAX_FILES);
+        byte[] frame = Fixtures.frame(Fixtures.FRAME_WIDTH, Fixtures.FRAME_HEIGHT);
+        List<TrackedBarcode> shelf = Fixtures.trackedCodes(
+                SYNTHETIC_TRACKED_CODES + SYNTHETIC_FRAMES);
+        for (int i = 0; i < SYNTHETIC_FRAMES; i++) {
+            List<TrackedBarcode> tracked = shelf.subList(i, i + SYNTHETIC_TRACKED_CODES);
+            ScanSession session = new ScanSession(new ArrayList<Barcode>(),
+                    new ArrayList<Barcode>(), Fixtures.trackedCodeMap(tracked));
+            recorder.recordDidProcess(frame, Fixtures.FRAME_WIDTH, Fixtures.FRAME_HEIGHT, session,
+                    true);
+        }
+        recorder.close();
+    }
+
+    @Benchmark
+    public void replay(Replay replay) {
+        replay.controller.reset();
+        replay.replay.replay(replay.controller);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void recordDidProcess(Recording recording) {
+        recording.recorder.recordDidProcess(recording.frame, Fixtures.FRAME_WIDTH,
+                Fixtures.FRAME_HEIGHT, recording.session, true);
+    }
+}
@@ -0,0 +1,93 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import com.scandit.recognition.TrackedBarcode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MatrixScan diff of didProcess for a shelf of tracked codes where 5% of the codes leave and
+ * enter the view with every frame, against the HashSet diff the controllers used before. Run with
+ * -Pprofilers=gc to compare the allocations per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrackedCodeDiffBenchmark {
+
+    private static final int FRAMES = 32;
+
+    @Param({"20", "200", "1000"})
+    int codes;
+
+    private final List<Map<Long, TrackedBarcode>> mFrames =
+            new ArrayList<Map<Long, TrackedBarcode>>();
+    private int mFrame = 0;
+    private final TrackedCodeDiff mDiff = new TrackedCodeDiff();
+    private Set<Long> mLastFrameTrackedCodeIds = new HashSet<Long>();
+
+
+    @Setup
+    public void setUp() {
+        int churn = Math.max(1, codes / 20);
+        List<TrackedBarcode> shelf = Fixtures.trackedCodes(codes + FRAMES / 2 * churn);
+        // the view pans along the shelf and back, so the last frame leads into the first one.
+        for (int i = 0; i < FRAMES; i++) {
+            int offset = (i < FRAMES / 2 ? i : FRAMES - i) * churn;
+            mFrames.add(Fixtures.trackedCodeMap(shelf.subList(offset, offset + codes)));
+        }
+    }
+
+    private Map<Long, TrackedBarcode> nextFrame() {
+        mFrame = (mFrame + 1) % FRAMES;
+        return mFrames.get(mFrame);
+    }
+
+    @Benchmark
+    public int trackedCodeDiff() {
+        mDiff.update(nextFrame());
+        return mDiff.getNewlyTrackedCodes().size() + mDiff.getLostCount();
+    }
+
+    @Benchmark
+    public int hashSetDiff() {
+        Map<Long, TrackedBarcode> trackedCodes = nextFrame();
+        List<TrackedBarcode> newlyTrackedCodes = new ArrayList<TrackedBarcode>();
+        Set<Long> recognizedCodeIds = new HashSet<Long>();
+        for (Map.Entry<Long, TrackedBarcode> entry : trackedCodes.entrySet()) {
+            if (entry.getValue().isRecognized()) {
+                recognizedCodeIds.add(entry.getKey());
+                if (!mLastFrameTrackedCodeIds.contains(entry.getKey())) {
+                    mLastFrameTrackedCodeIds.add(entry.getKey());
+                    newlyTrackedCodes.add(entry.getValue());
+                }
+            }
+        }
+        mLastFrameTrackedCodeIds = recognizedCodeIds;
+        return newlyTrackedCodes.size();
+    }
+}
@@ -0,0 +1,45 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package android.content;
+
+import android.content.res.Resources;
+import android.util.DisplayMetrics;
+
+import java.io.File;
+
+/**
+ * Stand-in for the android Context, only provides the display density and cache and files
+ * directories in the temporary directory of the JVM.
+ */
+public class Context {
+
+    private final Resources mResources;
+
+
+    public Context(float density) {
+        DisplayMetrics metrics = new DisplayMetrics();
+        metrics.density = density;
+        mResources = new Resources(metrics);
+    }
+
+    public Resources getResources() {
+        return mResources;
+    }
+
+    public File getCacheDir() {
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    public File getFilesDir() {
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+}
@@ -0,0 +1,93 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package android.graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Stand-in for the android Bitmap on top of a BufferedImage, see YuvImage.
+ */
+public class Bitmap {
+
+    public enum CompressFormat {
+        JPEG,
+        PNG
+    }
+
+    public enum Config {
+        ARGB_8888
+    }
+
+    final BufferedImage mImage;
+
+
+    Bitmap(BufferedImage image) {
+        mImage = image;
+    }
+
+    public static Bitmap createBitmap(int[] colors, int width, int height, Config config) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, width, height, colors, 0, width);
+        return new Bitmap(image);
+    }
+
+    public void recycle() {
+    }
+
+    public int getWidth() {
+        return mImage.getWidth();
+    }
+
+    public int getHeight() {
+        return mImage.getHeight();
+    }
+
+    public boolean compress(CompressFormat format, int quality, OutputStream stream) {
+        try {
+            return write(mImage, format == CompressFormat.PNG ? "png" : "jpeg", quality, stream);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static boolean write(BufferedImage image, String format, int quality, OutputStream stream)
+            throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            return false;
+        }
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed() && "jpeg".equals(format)) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality / 100f);
+        }
+        ImageOutputStream output = ImageIO.createImageOutputStream(stream);
+        try {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+            output.close();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,33 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package android.graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Stand-in for the android BitmapFactory on top of ImageIO, see YuvImage.
+ */
+public class BitmapFactory {
+
+    public static Bitmap decodeByteArray(byte[] data, int offset, int length) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(data, offset, length));
+            return image != null ? new Bitmap(image) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package android.graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stand-in for the android YuvImage. Converts the NV21 frame to RGB and compresses it with
+ * ImageIO, which costs about as much as the native compression on a device. The absolute numbers
+ * of benchmarks that go through it are not comparable to a device, only changes of the plugin code
+ * around it are.
+ */
+public class YuvImage {
+
+    private final byte[] mData;
+    private final int mWidth;
+    private final int mHeight;
+
+
+    public YuvImage(byte[] yuv, int format, int width, int height, int[] strides) {
+        if (format != ImageFormat.NV21) {
+            throw new IllegalArgumentException("only NV21 is supported");
+        }
+        mData = yuv;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public byte[] getYuvData() {
+        return mData;
+    }
+
+    public boolean compressToJpeg(Rect rectangle, int quality, OutputStream stream) {
+        BufferedImage image = new BufferedImage(rectangle.width(), rectangle.height(),
+                                                BufferedImage.TYPE_INT_RGB);
+        int uvOffset = mWidth * mHeight;
+        for (int y = rectangle.top; y < rectangle.bottom; y++) {
+            for (int x = rectangle.left; x < rectangle.right; x++) {
+                int luma = mData[y * mWidth + x] & 0xff;
+                int uvIndex = uvOffset + (y >> 1) * mWidth + (x & ~1);
+                int v = (mData[uvIndex] & 0xff) - 128;
+                int u = (mData[uvIndex + 1] & 0xff) - 128;
+                int r = clamp(luma + (int) (1.402f * v));
+                int g = clamp(luma - (int) (0.344f * u + 0.714f * v));
+                int b = clamp(luma + (int) (1.772f * u));
+                image.setRGB(x - rectangle.left, y - rectangle.top, (r << 16) | (g << 8) | b);
+            }
+        }
+        try {
+            return Bitmap.write(image, "jpeg", quality, stream);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
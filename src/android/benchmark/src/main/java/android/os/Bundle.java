@@ -0,0 +1,117 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package android.os;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stand-in for the android Bundle backed by a HashMap, only implements what the benchmarked
+ * plugin code uses.
+ */
+public class Bundle {
+
+    private final Map<String, Object> mValues = new HashMap<String, Object>();
+
+
+    public boolean containsKey(String key) {
+        return mValues.containsKey(key);
+    }
+
+    public Object get(String key) {
+        return mValues.get(key);
+    }
+
+    public Set<String> keySet() {
+        return mValues.keySet();
+    }
+
+    public int size() {
+        return mValues.size();
+    }
+
+    public boolean getBoolean(String key) {
+        return getBoolean(key, false);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = mValues.get(key);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    public int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Object value = mValues.get(key);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    public float getFloat(String key) {
+        return getFloat(key, 0);
+    }
+
+    public float getFloat(String key, float defaultValue) {
+        Object value = mValues.get(key);
+        return value instanceof Float ? (Float) value : defaultValue;
+    }
+
+    public String getString(String key) {
+        return getString(key, null);
+    }
+
+    public String getString(String key, String defaultValue) {
+        Object value = mValues.get(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    public Serializable getSerializable(String key) {
+        Object value = mValues.get(key);
+        return value instanceof Serializable ? (Serializable) value : null;
+    }
+
+    public Bundle getBundle(String key) {
+        Object value = mValues.get(key);
+        return value instanceof Bundle ? (Bundle) value : null;
+    }
+
+    public void putBoolean(String key, boolean value) {
+        mValues.put(key, value);
+    }
+
+    public void putInt(String key, int value) {
+        mValues.put(key, value);
+    }
+
+    public void putFloat(String key, float value) {
+        mValues.put(key, value);
+    }
+
+    public void putString(String key, String value) {
+        mValues.put(key, value);
+    }
+
+    public void putByteArray(String key, byte[] value) {
+        mValues.put(key, value);
+    }
+
+    public void putSerializable(String key, Serializable value) {
+        mValues.put(key, value);
+    }
+
+    public void putBundle(String key, Bundle value) {
+        mValues.put(key, value);
+    }
+}
@@ -0,0 +1,37 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package android.os;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for the android Handler, runs the posted runnables on the thread of its looper.
+ */
+public class Handler {
+
+    private final Looper mLooper;
+
+
+    public Handler(Looper looper) {
+        mLooper = looper;
+    }
+
+    public boolean post(Runnable runnable) {
+        mLooper.mExecutor.execute(runnable);
+        return true;
+    }
+
+    public boolean postDelayed(Runnable runnable, long delayMillis) {
+        mLooper.mExecutor.schedule(runnable, delayMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+}
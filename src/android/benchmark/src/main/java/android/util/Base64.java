@@ -0,0 +1,34 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package android.util;
+
+/**
+ * Stand-in for the android Base64 on top of java.util.Base64.
+ */
+public class Base64 {
+
+    public static final int DEFAULT = 0;
+    public static final int NO_WRAP = 2;
+
+
+    public static String encodeToString(byte[] input, int offset, int length, int flags) {
+        return encodeToString(java.util.Arrays.copyOfRange(input, offset, offset + length), flags);
+    }
+
+    public static String encodeToString(byte[] input, int flags) {
+        if ((flags & NO_WRAP) != 0) {
+            return java.util.Base64.getEncoder().encodeToString(input);
+        }
+        // android wraps lines at 76 characters and terminates the output with a newline.
+        return java.util.Base64.getMimeEncoder(76, new byte[]{'\n'}).encodeToString(input) + "\n";
+    }
+}
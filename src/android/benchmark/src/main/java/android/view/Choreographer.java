@@ -0,0 +1,47 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package android.view;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Stand-in for the android Choreographer, calls the frame callbacks on the main thread at the next
+ * multiple of the frame interval of a 60Hz display.
+ */
+public final class Choreographer {
+
+    private static final long FRAME_INTERVAL_NANOS = 1000000000L / 60;
+    private static final Choreographer sInstance = new Choreographer();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    public static Choreographer getInstance() {
+        return sInstance;
+    }
+
+    public void postFrameCallback(final FrameCallback callback) {
+        long now = System.nanoTime();
+        final long frameTimeNanos = (now / FRAME_INTERVAL_NANOS + 1) * FRAME_INTERVAL_NANOS;
+        mHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                callback.doFrame(frameTimeNanos);
+            }
+        }, Math.max(1, (frameTimeNanos - now) / 1000000));
+    }
+}
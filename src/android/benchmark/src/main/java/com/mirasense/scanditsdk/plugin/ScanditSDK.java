@@ -0,0 +1,24 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+/**
+ * Stand-in for the plugin entry point, only holds the event names used by the marshalling code.
+ */
+public class ScanditSDK {
+
+    public static final String DID_SCAN_EVENT = "didScan";
+    public static final String DID_RECOGNIZE_NEW_CODES = "didRecognizeNewCodes";
+    public static final String DID_CHANGE_PROPERTY = "didChangeProperty";
+    public static final String DID_PROCESS_FRAME = "didProcessFrame";
+    public static final String EVENT_BATCH = "eventBatch";
+}
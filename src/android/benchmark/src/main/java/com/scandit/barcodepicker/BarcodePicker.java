@@ -0,0 +1,57 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.scandit.barcodepicker;
+
+import android.content.Context;
+import android.graphics.Point;
+
+/**
+ * Stand-in for the Scandit BarcodePicker that maps a landscape camera frame onto a portrait view,
+ * scaling and rotating it by 90 degrees like the picker does on a phone held upright.
+ */
+public class BarcodePicker {
+
+    private final Context mContext;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFrameWidth;
+    private final int mFrameHeight;
+
+
+    public BarcodePicker(Context context, int width, int height, int frameWidth, int frameHeight) {
+        mContext = context;
+        mWidth = width;
+        mHeight = height;
+        mFrameWidth = frameWidth;
+        mFrameHeight = frameHeight;
+    }
+
+    public Context getContext() {
+        return mContext;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public Point convertPointToPickerCoordinates(Point point) {
+        float scale = Math.max(mWidth / (float) mFrameHeight, mHeight / (float) mFrameWidth);
+        float offsetX = (mWidth - mFrameHeight * scale) / 2;
+        float offsetY = (mHeight - mFrameWidth * scale) / 2;
+        return new Point((int) (offsetX + (mFrameHeight - point.y) * scale),
+                         (int) (offsetY + point.x * scale));
+    }
+}
@@ -0,0 +1,74 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.scandit.barcodepicker;
+
+import com.scandit.recognition.Barcode;
+import com.scandit.recognition.TrackedBarcode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stand-in for the Scandit ScanSession over fixed lists of codes. Rejected codes are counted so
+ * the benchmarks can consume them.
+ */
+public class ScanSession {
+
+    private final List<Barcode> mNewlyRecognizedCodes;
+    private final List<Barcode> mNewlyLocalizedCodes;
+    private final List<Barcode> mAllRecognizedCodes;
+    private final Map<Long, TrackedBarcode> mTrackedCodes;
+    private int mRejectedCount = 0;
+
+
+    public ScanSession(List<Barcode> newlyRecognizedCodes, List<Barcode> allRecognizedCodes,
+                       Map<Long, TrackedBarcode> trackedCodes) {
+        this(newlyRecognizedCodes, new ArrayList<Barcode>(), allRecognizedCodes, trackedCodes);
+    }
+
+    public ScanSession(List<Barcode> newlyRecognizedCodes, List<Barcode> newlyLocalizedCodes,
+                       List<Barcode> allRecognizedCodes, Map<Long, TrackedBarcode> trackedCodes) {
+        mNewlyRecognizedCodes = newlyRecognizedCodes;
+        mNewlyLocalizedCodes = newlyLocalizedCodes;
+        mAllRecognizedCodes = allRecognizedCodes;
+        mTrackedCodes = trackedCodes;
+    }
+
+    public List<Barcode> getNewlyRecognizedCodes() {
+        return mNewlyRecognizedCodes;
+    }
+
+    public List<Barcode> getNewlyLocalizedCodes() {
+        return mNewlyLocalizedCodes;
+    }
+
+    public List<Barcode> getAllRecognizedCodes() {
+        return mAllRecognizedCodes;
+    }
+
+    public Map<Long, TrackedBarcode> getTrackedCodes() {
+        return mTrackedCodes;
+    }
+
+    public void rejectCode(Barcode code) {
+        mRejectedCount++;
+    }
+
+    public void rejectTrackedCode(TrackedBarcode code) {
+        mRejectedCount++;
+    }
+
+    public int getRejectedCount() {
+        return mRejectedCount;
+    }
+}
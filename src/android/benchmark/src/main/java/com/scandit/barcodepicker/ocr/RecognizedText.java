@@ -0,0 +1,35 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.scandit.barcodepicker.ocr;
+
+public class RecognizedText {
+
+    private final String mText;
+    private boolean mRejected = false;
+
+
+    public RecognizedText(String text) {
+        mText = text;
+    }
+
+    public String getText() {
+        return mText;
+    }
+
+    public void setRejected(boolean rejected) {
+        mRejected = rejected;
+    }
+
+    public boolean isRejected() {
+        return mRejected;
+    }
+}
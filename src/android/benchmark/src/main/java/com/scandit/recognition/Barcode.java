@@ -0,0 +1,89 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.scandit.recognition;
+
+/**
+ * Stand-in for the Scandit Barcode with fixed values, see Fixtures and SessionReplay for how the
+ * benchmarks create them.
+ */
+public class Barcode {
+
+    public static final int SYMBOLOGY_EAN13 = 1;
+    public static final int SYMBOLOGY_CODE128 = 1 << 9;
+    public static final int SYMBOLOGY_QR = 1 << 16;
+
+    private final long mHandle;
+    private final int mSymbology;
+    private final String mSymbologyName;
+    private final String mData;
+    private final byte[] mRawData;
+    private final Quadrilateral mLocation;
+    private final boolean mRecognized;
+    private final int mCompositeFlag;
+    private final boolean mGs1DataCarrier;
+
+
+    public Barcode(long handle, int symbology, String symbologyName, String data,
+                   Quadrilateral location) {
+        this(handle, symbology, symbologyName, data, data.getBytes(), location, true, 0, false);
+    }
+
+    public Barcode(long handle, int symbology, String symbologyName, String data, byte[] rawData,
+                   Quadrilateral location, boolean recognized, int compositeFlag,
+                   boolean gs1DataCarrier) {
+        mHandle = handle;
+        mSymbology = symbology;
+        mSymbologyName = symbologyName;
+        mData = data;
+        mRawData = rawData;
+        mLocation = location;
+        mRecognized = recognized;
+        mCompositeFlag = compositeFlag;
+        mGs1DataCarrier = gs1DataCarrier;
+    }
+
+    public long getHandle() {
+        return mHandle;
+    }
+
+    public int getSymbology() {
+        return mSymbology;
+    }
+
+    public String getSymbologyName() {
+        return mSymbologyName;
+    }
+
+    public String getData() {
+        return mData;
+    }
+
+    public byte[] getRawData() {
+        return mRawData;
+    }
+
+    public Quadrilateral getLocation() {
+        return mLocation;
+    }
+
+    public boolean isRecognized() {
+        return mRecognized;
+    }
+
+    public int getCompositeFlag() {
+        return mCompositeFlag;
+    }
+
+    public boolean isGs1DataCarrier() {
+        return mGs1DataCarrier;
+    }
+}
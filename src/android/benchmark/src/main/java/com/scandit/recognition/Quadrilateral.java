@@ -0,0 +1,30 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.scandit.recognition;
+
+import android.graphics.Point;
+
+public class Quadrilateral {
+
+    public Point top_left;
+    public Point top_right;
+    public Point bottom_left;
+    public Point bottom_right;
+
+
+    public Quadrilateral(Point topLeft, Point topRight, Point bottomLeft, Point bottomRight) {
+        top_left = topLeft;
+        top_right = topRight;
+        bottom_left = bottomLeft;
+        bottom_right = bottomRight;
+    }
+}
@@ -0,0 +1,43 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.scandit.recognition;
+
+public class TrackedBarcode extends Barcode {
+
+    private final long mId;
+    private final Quadrilateral mPredictedLocation;
+
+
+    public TrackedBarcode(long id, int symbology, String symbologyName, String data,
+                          Quadrilateral location, Quadrilateral predictedLocation) {
+        super(id, symbology, symbologyName, data, location);
+        mId = id;
+        mPredictedLocation = predictedLocation;
+    }
+
+    public TrackedBarcode(long id, int symbology, String symbologyName, String data,
+                          byte[] rawData, Quadrilateral location, Quadrilateral predictedLocation,
+                          boolean recognized, int compositeFlag, boolean gs1DataCarrier) {
+        super(id, symbology, symbologyName, data, rawData, location, recognized, compositeFlag,
+              gs1DataCarrier);
+        mId = id;
+        mPredictedLocation = predictedLocation;
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public Quadrilateral getPredictedLocation() {
+        return mPredictedLocation;
+    }
+}
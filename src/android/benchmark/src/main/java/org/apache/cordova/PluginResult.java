@@ -0,0 +1,87 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package org.apache.cordova;
+
+import android.util.Base64;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Stand-in for the cordova PluginResult. Encodes the message when it is created, the same way
+ * cordova does, so that the cost of encoding is part of the benchmarks.
+ */
+public class PluginResult {
+
+    public enum Status {
+        NO_RESULT,
+        OK,
+        ERROR
+    }
+
+    public static final int MESSAGE_TYPE_STRING = 1;
+    public static final int MESSAGE_TYPE_JSON = 2;
+    public static final int MESSAGE_TYPE_NULL = 5;
+    public static final int MESSAGE_TYPE_ARRAYBUFFER = 6;
+
+    private final int mStatus;
+    private final int mMessageType;
+    private final String mEncodedMessage;
+    private boolean mKeepCallback = false;
+
+
+    public PluginResult(Status status) {
+        this(status, MESSAGE_TYPE_NULL, "null");
+    }
+
+    public PluginResult(Status status, String message) {
+        this(status, MESSAGE_TYPE_STRING, JSONObject.quote(message));
+    }
+
+    public PluginResult(Status status, JSONArray message) {
+        this(status, MESSAGE_TYPE_JSON, message.toString());
+    }
+
+    public PluginResult(Status status, JSONObject message) {
+        this(status, MESSAGE_TYPE_JSON, message.toString());
+    }
+
+    public PluginResult(Status status, byte[] data) {
+        this(status, MESSAGE_TYPE_ARRAYBUFFER, Base64.encodeToString(data, Base64.NO_WRAP));
+    }
+
+    private PluginResult(Status status, int messageType, String encodedMessage) {
+        mStatus = status.ordinal();
+        mMessageType = messageType;
+        mEncodedMessage = encodedMessage;
+    }
+
+    public void setKeepCallback(boolean keepCallback) {
+        mKeepCallback = keepCallback;
+    }
+
+    public boolean getKeepCallback() {
+        return mKeepCallback;
+    }
+
+    public int getStatus() {
+        return mStatus;
+    }
+
+    public int getMessageType() {
+        return mMessageType;
+    }
+
+    public String getMessage() {
+        return mEncodedMessage;
+    }
+}
@@ -0,0 +1,99 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The batched events have to reach JS in the order they occurred, and none of a closed picker may
+ * follow its cancel result. The interval is far longer than the tests, the events are only passed
+ * by explicit flushes and results.
+ */
+public class EventCoalescerTest {
+
+    private static final int INTERVAL_MS = 60000;
+
+    private final List<PluginResult> mSent = new ArrayList<PluginResult>();
+    private final EventCoalescer mCoalescer = new EventCoalescer(new EventCoalescer.Sink() {
+        @Override
+        public void sendPluginResult(PluginResult result) {
+            mSent.add(result);
+        }
+    });
+
+
+    @Test
+    public void supersedingPropertyChangeFollowsTheEarlierEvents() {
+        mCoalescer.setInterval(INTERVAL_MS);
+        mCoalescer.sendEvent(propertyChange("relativeZoom", 1));
+        mCoalescer.sendEvent(processedFrame(2));
+        mCoalescer.sendEvent(propertyChange("torch", 1));
+        mCoalescer.sendEvent(propertyChange("relativeZoom", 3));
+        mCoalescer.flush();
+
+        assertEquals(1, mSent.size());
+        assertEquals(batch(processedFrame(2), propertyChange("torch", 1),
+                propertyChange("relativeZoom", 3)), mSent.get(0).getMessage());
+    }
+
+    @Test
+    public void closeSendsThePendingEventsAndDropsTheLaterOnes() {
+        mCoalescer.setInterval(INTERVAL_MS);
+        mCoalescer.sendEvent(processedFrame(2));
+        mCoalescer.close(Marshal.createCancel());
+        mCoalescer.sendEvent(processedFrame(3));
+        mCoalescer.flush();
+
+        assertEquals(2, mSent.size());
+        assertEquals(processedFrame(2).toString(), mSent.get(0).getMessage());
+        assertEquals(Marshal.createCancel().getMessage(), mSent.get(1).getMessage());
+    }
+
+    @Test
+    public void nextShowPassesEventsAgain() {
+        mCoalescer.setInterval(EventCoalescer.DISABLED);
+        mCoalescer.close(Marshal.createCancel());
+        mCoalescer.sendEvent(processedFrame(3));
+        mCoalescer.setInterval(EventCoalescer.DISABLED);
+        mCoalescer.sendEvent(processedFrame(2));
+
+        assertEquals(2, mSent.size());
+        assertEquals(processedFrame(2).toString(), mSent.get(1).getMessage());
+    }
+
+    private static JSONArray propertyChange(String name, int value) {
+        JSONObject change = new JSONObject();
+        change.put("name", name);
+        change.put("newState", value);
+        return Marshal.createEventArgs(ScanditSDK.DID_CHANGE_PROPERTY, change);
+    }
+
+    private static JSONArray processedFrame(int frame) {
+        return Marshal.createEventArgs(ScanditSDK.DID_PROCESS_FRAME, frame);
+    }
+
+    private static String batch(JSONArray... events) {
+        JSONArray batch = new JSONArray();
+        for (JSONArray event : events) {
+            batch.put(event);
+        }
+        return Marshal.createEventArgs(ScanditSDK.EVENT_BATCH, batch).toString();
+    }
+}
@@ -0,0 +1,360 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hammers the blocking result callback handshake with finish, setState and close calls racing the
+ * engine thread, and checks every wake-up of the engine thread: it has to wake up exactly once per
+ * callback (a lost wake-up shows as a timeout, the timeout is far longer than any round trip) with
+ * the decision of that very callback, i.e. the next state and rejected ids JS passed for its id.
+ */
+public class ResultCallbackStressTest {
+
+    private static final int ROUNDS = 20000;
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long STATE_CHANGE_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final PluginResult RESULT = new PluginResult(PluginResult.Status.OK, "didScan");
+
+    private final List<Thread> mThreads = new ArrayList<Thread>();
+    private final AtomicBoolean mRunning = new AtomicBoolean(true);
+    private final AtomicReference<Throwable> mFailure = new AtomicReference<Throwable>();
+
+
+    @After
+    public void stopThreads() throws InterruptedException {
+        mRunning.set(false);
+        for (Thread thread : mThreads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Several threads complete the same slot at once, one of them releasing it like setState.
+     */
+    @Test
+    public void slotWakesUpOnceWithTheWinningDecision() throws Throwable {
+        final int completers = 3;
+        final AtomicReference<ResultCallbackSlot> current = new AtomicReference<ResultCallbackSlot>();
+        final AtomicInteger attempts = new AtomicInteger();
+        final AtomicInteger wins = new AtomicInteger();
+        final AtomicReference<ResultCallbackSlot.Decision> winner =
+                new AtomicReference<ResultCallbackSlot.Decision>();
+        for (int i = 0; i < completers; i++) {
+            final ResultCallbackSlot.Decision decision = i == 0 ? ResultCallbackSlot.RELEASED
+                    : new ResultCallbackSlot.Decision(i, Collections.singletonList((long) i), null);
+            start(new Runnable() {
+                @Override
+                public void run() {
+                    ResultCallbackSlot completed = null;
+                    while (mRunning.get()) {
+                        ResultCallbackSlot slot = current.get();
+                        if (slot == null || slot == completed) {
+                            Thread.yield();
+                            continue;
+                        }
+                        if (slot.complete(decision)) {
+                            wins.incrementAndGet();
+                            winner.set(decision);
+                        }
+                        completed = slot;
+                        attempts.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        AtomicBoolean shouldWait = new AtomicBoolean(true);
+        for (int round = 0; round < ROUNDS; round++) {
+            ResultCallbackSlot slot = new ResultCallbackSlot(round + 1,
+                    PickerControllerBase.RESULT_EVENT_DID_SCAN);
+            current.set(slot);
+            ResultCallbackSlot.Decision decision = slot.await(TIMEOUT_NANOS, shouldWait);
+            assertNotSame("lost wake-up in round " + round, ResultCallbackSlot.TIMED_OUT, decision);
+            while (attempts.get() < (round + 1) * completers) {
+                Thread.yield();
+            }
+            assertEquals("completions in round " + round, round + 1, wins.get());
+            assertSame("decision in round " + round, winner.get(), decision);
+            checkThreads();
+        }
+    }
+
+    /**
+     * Two bridge threads finish the callback in flight, one of them also finishes the previous
+     * callback again. At the same time the picker state changes and JS closes the picker.
+     */
+    @Test
+    public void controllerAppliesTheDecisionOfEachCallback() throws Throwable {
+        final Controller controller = new Controller();
+        controller.setResultCallbackTimeout((int) TimeUnit.NANOSECONDS.toMillis(TIMEOUT_NANOS));
+        controller.setState(PickerStateMachine.ACTIVE);
+        final AtomicInteger currentId = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            final boolean finishPrevious = i == 1;
+            start(new Runnable() {
+                @Override
+                public void run() {
+                    while (mRunning.get()) {
+                        int callbackId = currentId.get();
+                        if (callbackId == 0 || !controller.isResultCallbackInFlight()) {
+                            Thread.yield();
+                            continue;
+                        }
+                        // id 0 would stand for the callback in flight, not the previous one.
+                        if (finishPrevious && callbackId > 1) {
+                            controller.finishDidScanCallback(decisionFor(callbackId - 1));
+                        }
+                        controller.finishDidScanCallback(decisionFor(callbackId));
+                    }
+                }
+            });
+        }
+        start(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; mRunning.get(); i++) {
+                    if (i % 16 == 0) {
+                        controller.setState(PickerStateMachine.STOPPED);
+                    }
+                    controller.setState(PickerStateMachine.ACTIVE);
+                    // leave the bridge threads time to finish some of the callbacks.
+                    LockSupport.parkNanos(STATE_CHANGE_INTERVAL_NANOS);
+                }
+            }
+        });
+        start(new Runnable() {
+            @Override
+            public void run() {
+                while (mRunning.get()) {
+                    controller.requestClose();
+                    Thread.yield();
+                }
+            }
+        });
+
+        int decided = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            int callbackId = controller.beginResultCallback(
+                    PickerControllerBase.RESULT_EVENT_DID_SCAN);
+            controller.rejectedCodeIds = null;
+            currentId.set(callbackId);
+            int nextState = controller.sendResultCallback(RESULT,
+                    PickerControllerBase.RESULT_EVENT_DID_SCAN, callbackId);
+            if (nextState != 0) {
+                assertEquals("next state of " + callbackId, stateFor(callbackId), nextState);
+                assertEquals("rejected ids of " + callbackId,
+                        Collections.singletonList((long) callbackId), controller.rejectedCodeIds);
+                decided++;
+            } else {
+                // released or not waiting, nothing of another callback must be applied.
+                assertNull("rejected ids of " + callbackId, controller.rejectedCodeIds);
+            }
+            checkThreads();
+        }
+        assertEquals("lost wake-ups", 0, controller.getResultCallbackTimeoutCount());
+        assertTrue("no callback was decided", decided > 0);
+
+        stopThreads();
+        // every close request has to be followed by a close, deferred or not.
+        assertEquals("lost closes", controller.closeRequests.get(), controller.closedUpTo);
+    }
+
+    /**
+     * JS closes the picker while the bridge finishes the last callback: the close has to run,
+     * either right away or deferred until the engine thread returned, even though no further
+     * callback follows that could pick it up.
+     */
+    @Test
+    public void closeRacingTheLastCallbackIsNotLost() throws Throwable {
+        final Controller controller = new Controller();
+        controller.setResultCallbackTimeout((int) TimeUnit.NANOSECONDS.toMillis(TIMEOUT_NANOS));
+        controller.setState(PickerStateMachine.ACTIVE);
+        final AtomicInteger currentId = new AtomicInteger();
+        final AtomicInteger closedId = new AtomicInteger();
+        start(new Runnable() {
+            @Override
+            public void run() {
+                int finished = 0;
+                while (mRunning.get()) {
+                    int callbackId = currentId.get();
+                    if (callbackId == finished || !controller.isResultCallbackInFlight()) {
+                        Thread.yield();
+                        continue;
+                    }
+                    controller.finishDidScanCallback(decisionFor(callbackId));
+                    finished = callbackId;
+                }
+            }
+        });
+        start(new Runnable() {
+            @Override
+            public void run() {
+                while (mRunning.get()) {
+                    int callbackId = currentId.get();
+                    if (callbackId == closedId.get()) {
+                        Thread.yield();
+                        continue;
+                    }
+                    // spread the close around the finish of the callback.
+                    for (int spin = callbackId % 64; spin > 0; spin--) {
+                        Thread.yield();
+                    }
+                    controller.requestClose();
+                    closedId.set(callbackId);
+                }
+            }
+        });
+
+        for (int round = 0; round < ROUNDS; round++) {
+            int callbackId = controller.beginResultCallback(
+                    PickerControllerBase.RESULT_EVENT_DID_SCAN);
+            currentId.set(callbackId);
+            controller.sendResultCallback(RESULT, PickerControllerBase.RESULT_EVENT_DID_SCAN,
+                    callbackId);
+            while (closedId.get() != callbackId) {
+                checkThreads();
+                Thread.yield();
+            }
+            assertEquals("lost close in round " + round, controller.closeRequests.get(),
+                    controller.closedUpTo);
+        }
+        assertEquals("lost wake-ups", 0, controller.getResultCallbackTimeoutCount());
+    }
+
+    /**
+     * JS finishes the callbacks without passing their ids back: every decision has to complete
+     * the callback in flight instead of being dropped, or the engine thread waits out the timeout.
+     */
+    @Test
+    public void decisionWithoutIdFinishesTheCallbackInFlight() throws Throwable {
+        final Controller controller = new Controller();
+        controller.setResultCallbackTimeout((int) TimeUnit.NANOSECONDS.toMillis(TIMEOUT_NANOS));
+        controller.setState(PickerStateMachine.ACTIVE);
+        final AtomicInteger currentId = new AtomicInteger();
+        start(new Runnable() {
+            @Override
+            public void run() {
+                int finished = 0;
+                while (mRunning.get()) {
+                    int callbackId = currentId.get();
+                    if (callbackId == finished || !controller.isResultCallbackInFlight()) {
+                        Thread.yield();
+                        continue;
+                    }
+                    controller.finishDidScanCallback(new JSONArray("[" + stateFor(callbackId)
+                            + ",[" + callbackId + "]]"));
+                    finished = callbackId;
+                }
+            }
+        });
+
+        for (int round = 0; round < ROUNDS; round++) {
+            int callbackId = controller.beginResultCallback(
+                    PickerControllerBase.RESULT_EVENT_DID_SCAN);
+            controller.rejectedCodeIds = null;
+            currentId.set(callbackId);
+            int nextState = controller.sendResultCallback(RESULT,
+                    PickerControllerBase.RESULT_EVENT_DID_SCAN, callbackId);
+            assertEquals("next state of " + callbackId, stateFor(callbackId), nextState);
+            assertEquals("rejected ids of " + callbackId,
+                    Collections.singletonList((long) callbackId), controller.rejectedCodeIds);
+            checkThreads();
+        }
+        assertEquals("timeouts", 0, controller.getResultCallbackTimeoutCount());
+    }
+
+    private static int stateFor(int callbackId) {
+        return 1 + callbackId % 3;
+    }
+
+    private static JSONArray decisionFor(int callbackId) {
+        return new JSONArray("[" + stateFor(callbackId) + ",[" + callbackId + "]," + callbackId
+                + "]");
+    }
+
+    private void start(final Runnable runnable) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } catch (Throwable t) {
+                    mFailure.compareAndSet(null, t);
+                }
+            }
+        });
+        mThreads.add(thread);
+        thread.start();
+    }
+
+    private void checkThreads() throws Throwable {
+        Throwable failure = mFailure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Controller that only records the decisions and closes, like the real ones it defers a close
+     * while the engine thread waits for a callback.
+     */
+    private static class Controller extends Fixtures.TestController {
+
+        final AtomicInteger closeRequests = new AtomicInteger();
+        // The number of close requests when the last close ran.
+        volatile int closedUpTo = 0;
+
+
+        void requestClose() {
+            closeRequests.incrementAndGet();
+            close();
+        }
+
+        @Override
+        boolean isResultCallbackInFlight() {
+            boolean inFlight = super.isResultCallbackInFlight();
+            // widens the window between the check and what the caller does with it.
+            Thread.yield();
+            return inFlight;
+        }
+
+        @Override
+        public void close() {
+            if (deferCloseWhileResultCallbackInFlight()) {
+                return;
+            }
+            synchronized (this) {
+                closedUpTo = Math.max(closedUpTo, closeRequests.get());
+            }
+        }
+    }
+}
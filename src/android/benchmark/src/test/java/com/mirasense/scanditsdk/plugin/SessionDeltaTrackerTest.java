@@ -0,0 +1,97 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import com.scandit.barcodepicker.ScanSession;
+import com.scandit.recognition.Barcode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The deltas of allRecognizedCodes have to be right whenever the number of codes alone doesn't
+ * tell whether codes were removed.
+ */
+public class SessionDeltaTrackerTest {
+
+    private final List<Barcode> mCodes = Fixtures.codes(4);
+    private final SessionDeltaTracker mTracker = new SessionDeltaTracker();
+    private int mEpoch;
+
+
+    @Before
+    public void startEpoch() {
+        SessionDeltaTracker.Delta delta = mTracker.update(session(codes(), codes(0, 1)));
+        assertTrue(delta.snapshot);
+        mEpoch = delta.epoch;
+    }
+
+    @Test
+    public void sessionGrowingByTheNewCodesIsNotASnapshot() {
+        assertDelta(mTracker.update(session(codes(2), codes(0, 1, 2))));
+    }
+
+    @Test
+    public void codeRemovedWhileAnotherOneIsRecognizedIsSent() {
+        assertDelta(mTracker.update(session(codes(2), codes(1, 2))), 0);
+        // the removed code is forgotten, recognizing it again is an ordinary new code.
+        assertDelta(mTracker.update(session(codes(0), codes(0, 1, 2))));
+    }
+
+    @Test
+    public void codeRemovedWhileAnotherOneAppearsStartsAnEpoch() {
+        // as many codes as before, but JS has never been told about code 2.
+        SessionDeltaTracker.Delta delta = mTracker.update(session(codes(), codes(1, 2)));
+        assertTrue(delta.snapshot);
+        assertEquals(mEpoch + 1, delta.epoch);
+    }
+
+    @Test
+    public void duplicateCodesAreCountedOnce() {
+        // as many codes as before, code 1 twice.
+        assertDelta(mTracker.update(session(codes(), codes(1, 1))), 0);
+        assertDelta(mTracker.update(session(codes(1), codes(1, 1))));
+        assertDelta(mTracker.update(session(codes(), codes(1))));
+    }
+
+    private void assertDelta(SessionDeltaTracker.Delta delta, int... removedCodes) {
+        assertFalse(delta.snapshot);
+        assertEquals(mEpoch, delta.epoch);
+        assertEquals(removedCodes.length, delta.removedCodes.size());
+        for (int i = 0; i < removedCodes.length; i++) {
+            Barcode code = mCodes.get(removedCodes[i]);
+            assertArrayEquals(new String[]{code.getSymbologyName(), code.getData()},
+                    delta.removedCodes.get(i));
+        }
+    }
+
+    private List<Barcode> codes(int... indices) {
+        Barcode[] codes = new Barcode[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            codes[i] = mCodes.get(indices[i]);
+        }
+        return Arrays.asList(codes);
+    }
+
+    private static ScanSession session(List<Barcode> newlyRecognizedCodes,
+                                       List<Barcode> allRecognizedCodes) {
+        return new ScanSession(newlyRecognizedCodes, allRecognizedCodes, null);
+    }
+}
@@ -0,0 +1,89 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import com.scandit.barcodepicker.ScanSession;
+import com.scandit.recognition.Barcode;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Frames of odd sizes are recorded at the even size of their record header, the records that
+ * follow them have to be read back intact.
+ */
+public class SessionRecorderTest {
+
+    private static final int WIDTH = 7;
+    private static final int HEIGHT = 5;
+
+    private final File mDirectory;
+
+
+    public SessionRecorderTest() throws IOException {
+        mDirectory = Files.createTempDirectory("scandit-recordings").toFile();
+    }
+
+    @After
+    public void deleteRecordings() {
+        for (File file : SessionRecorder.recordings(mDirectory)) {
+            file.delete();
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void oddFrameIsCroppedToTheRecordedSize() throws IOException {
+        List<SessionRecorder.Record> records = record(SessionRecorder.NO_DOWNSAMPLING);
+
+        assertEquals(2, records.size());
+        for (SessionRecorder.Record record : records) {
+            assertEquals(SessionRecorder.TYPE_DID_PROCESS, record.type);
+            assertEquals(WIDTH - 1, record.width);
+            assertEquals(HEIGHT - 1, record.height);
+            byte[] expected = new byte[(WIDTH - 1) * (HEIGHT - 1) * 3 / 2];
+            for (int y = 0; y < HEIGHT - 1; y++) {
+                for (int x = 0; x < WIDTH - 1; x++) {
+                    expected[y * (WIDTH - 1) + x] = (byte) (x + y);
+                }
+            }
+            for (int i = (WIDTH - 1) * (HEIGHT - 1); i < expected.length; i++) {
+                expected[i] = (byte) 128;
+            }
+            assertArrayEquals(expected, record.frame);
+        }
+        assertArrayEquals(records.get(0).session, records.get(1).session);
+    }
+
+    private List<SessionRecorder.Record> record(int downsample) throws IOException {
+        SessionRecorder recorder = new SessionRecorder(mDirectory, downsample,
+                SessionRecorder.DEFAULT_MAX_FILE_BYTES, SessionRecorder.DEFAULT_MAX_FILES);
+        byte[] frame = Fixtures.frame(WIDTH, HEIGHT);
+        ScanSession session = new ScanSession(new ArrayList<Barcode>(), new ArrayList<Barcode>(),
+                Fixtures.trackedCodeMap(Fixtures.trackedCodes(2)));
+        recorder.recordDidProcess(frame, WIDTH, HEIGHT, session, true);
+        recorder.recordDidProcess(frame, WIDTH, HEIGHT, session, true);
+        recorder.close();
+        File[] recordings = SessionRecorder.recordings(mDirectory);
+        assertEquals(1, recordings.length);
+        return SessionRecorder.read(recordings[0]);
+    }
+}
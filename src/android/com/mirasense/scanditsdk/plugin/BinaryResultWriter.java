@@ -0,0 +1,144 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Little-endian writer for the binary result format. The layout is decoded by resultdecoder.js,
+ * so any change to it has to bump FORMAT_VERSION and be mirrored on the JS side.
+ *
+ * Layout of a message:
+ *  header:  'S' 'B' 'R' version:u8 event:u8 fields:u8 sectionCount:u8
+ *  section: sectionId:u8 codeCount:u32 code*
+ *  delta:   SECTION_SESSION_DELTA:u8 epoch:u32 removedCount:u32 (symbology:str data:str)*
+ *  table:   SECTION_SYMBOLOGY_TABLE:u8 entryCount:u32 (symbologyId:i32 symbology:str)*
+ *  id:      SECTION_CALLBACK_ID:u8 callbackId:u32
+ *  code:    flags:u8 [compositeFlag:i32] uniqueId:i64 (symbology:str | symbologyId:i32) data:str
+ *           [rawData:bytes]
+ *           [location:quad] [convertedLocation:quad] [predictedLocation:quad]
+ *           [convertedPredictedLocation:quad]
+ *  str/bytes: length:u32 followed by the (UTF-8 encoded) bytes, length -1 for a null str
+ *  quad:    topLeft, topRight, bottomLeft, bottomRight as x:i32 y:i32 pairs
+ *
+ * fields contains the ResultFormat.FIELD_* flags of the optional code fields that are present and
+ * FIELDS_SYMBOLOGY_ID if codes carry the symbology id instead of the name.
+ * Raw data is only present for codes that have the CODE_FLAG_RAW_DATA flag set, predicted
+ * locations only for codes that have the CODE_FLAG_TRACKED flag set.
+ * Sections are identified by their id and may come in any order, the decoder dispatches on the id.
+ * With the incremental session delivery the allRecognizedCodes section is only present when a new
+ * epoch starts, the delta section is present in every didScan message. The symbology table section
+ * contains the entries of the SymbologyTable that have not been sent before. The callback id
+ * section is present for all the results of callbacks started with beginResultCallback.
+ */
+class BinaryResultWriter {
+
+    public final static int FORMAT_VERSION = 6;
+
+    // must match values of resultdecoder.js
+    public final static int EVENT_DID_SCAN = 1;
+    public final static int EVENT_DID_RECOGNIZE_NEW_CODES = 2;
+
+    public final static int SECTION_NEWLY_RECOGNIZED_CODES = 0;
+    public final static int SECTION_NEWLY_LOCALIZED_CODES = 1;
+    public final static int SECTION_ALL_RECOGNIZED_CODES = 2;
+    public final static int SECTION_NEWLY_TRACKED_CODES = 3;
+    public final static int SECTION_SESSION_DELTA = 4;
+    public final static int SECTION_SYMBOLOGY_TABLE = 5;
+    public final static int SECTION_CALLBACK_ID = 6;
+
+    public final static int FIELDS_SYMBOLOGY_ID = 1 << 7;
+
+    public final static int CODE_FLAG_GS1_DATA_CARRIER = 1;
+    public final static int CODE_FLAG_RECOGNIZED = 1 << 1;
+    public final static int CODE_FLAG_TRACKED = 1 << 2;
+    public final static int CODE_FLAG_RAW_DATA = 1 << 3;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int SECTION_COUNT_OFFSET = 6;
+
+    private byte[] mBuffer;
+    private int mLength = 0;
+
+
+    BinaryResultWriter(int initialCapacity) {
+        mBuffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    /**
+     * Writes the header, the section count is incremented by every beginSection call.
+     */
+    public void writeHeader(int event, int fields) {
+        writeByte('S');
+        writeByte('B');
+        writeByte('R');
+        writeByte(FORMAT_VERSION);
+        writeByte(event);
+        writeByte(fields);
+        writeByte(0);
+    }
+
+    public void beginSection(int sectionId) {
+        mBuffer[SECTION_COUNT_OFFSET]++;
+        writeByte(sectionId);
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        mBuffer[mLength++] = (byte) value;
+    }
+
+    public void writeInt(int value) {
+        ensureCapacity(4);
+        mBuffer[mLength++] = (byte) value;
+        mBuffer[mLength++] = (byte) (value >> 8);
+        mBuffer[mLength++] = (byte) (value >> 16);
+        mBuffer[mLength++] = (byte) (value >> 24);
+    }
+
+    public void writeLong(long value) {
+        writeInt((int) value);
+        writeInt((int) (value >>> 32));
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            // passed as null like the json encoding does, not as an empty string.
+            writeInt(-1);
+            return;
+        }
+        writeBytes(value.getBytes(UTF_8));
+    }
+
+    public void writeBytes(byte[] bytes) {
+        writeInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, mBuffer, mLength, bytes.length);
+        mLength += bytes.length;
+    }
+
+    public int length() {
+        return mLength;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(mBuffer, mLength);
+    }
+
+    private void ensureCapacity(int additionalBytes) {
+        int required = mLength + additionalBytes;
+        if (required > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(required, mBuffer.length * 2));
+        }
+    }
+}
@@ -0,0 +1,493 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * Reads the options that decide how results, events and frames are delivered to JS and how
+ * sessions are recorded. None of them depend on the picker UI, the layout and search bar options
+ * are read by PhonegapParamParser.
+ */
+public class DeliveryParamParser {
+
+    public static final String paramResultEncoding = "resultEncoding".toLowerCase();
+    public static final String paramRawDataEncoding = "rawDataEncoding".toLowerCase();
+    public static final String paramCodeFields = "codeFields".toLowerCase();
+    public static final String paramSessionDelivery = "sessionDelivery".toLowerCase();
+    public static final String paramSymbologyEncoding = "symbologyEncoding".toLowerCase();
+    public static final String paramResultCallbackTimeout = "resultCallbackTimeout".toLowerCase();
+    public static final String paramPipelinedEvents = "pipelinedEvents".toLowerCase();
+    public static final String paramEventBatchInterval = "eventBatchInterval".toLowerCase();
+    public static final String paramFrameFormat = "frameFormat".toLowerCase();
+    public static final String paramFrameQuality = "frameQuality".toLowerCase();
+    public static final String paramFrameMaxDimension = "frameMaxDimension".toLowerCase();
+    public static final String paramFrameRegion = "frameRegion".toLowerCase();
+    public static final String paramFrameRegionMargin = "frameRegionMargin".toLowerCase();
+    public static final String paramFrameDelivery = "frameDelivery".toLowerCase();
+    public static final String paramFrameGrayscale = "frameGrayscale".toLowerCase();
+    public static final String paramFrameDownsample = "frameDownsample".toLowerCase();
+    public static final String paramFrameCropWidth = "frameCropWidth".toLowerCase();
+    public static final String paramFrameCropHeight = "frameCropHeight".toLowerCase();
+    public static final String paramFramePoolCapacity = "framePoolCapacity".toLowerCase();
+    public static final String paramFrameMaxFps = "frameMaxFps".toLowerCase();
+    public static final String paramFrameMinCodeInterval = "frameMinCodeInterval".toLowerCase();
+    public static final String paramFrameMinSharpness = "frameMinSharpness".toLowerCase();
+    public static final String paramFrameMinBrightness = "frameMinBrightness".toLowerCase();
+    public static final String paramFrameMaxBrightness = "frameMaxBrightness".toLowerCase();
+    public static final String paramFrameStoreMaxCount = "frameStoreMaxCount".toLowerCase();
+    public static final String paramFrameStoreMaxBytes = "frameStoreMaxBytes".toLowerCase();
+    public static final String paramRecordSession = "recordSession".toLowerCase();
+    public static final String paramRecordingDownsample = "recordingDownsample".toLowerCase();
+    public static final String paramRecordingMaxFileBytes = "recordingMaxFileBytes".toLowerCase();
+    public static final String paramRecordingMaxFiles = "recordingMaxFiles".toLowerCase();
+
+
+    public static int getFrameFormat(Bundle options, int defaultFormat) {
+        if (options != null && options.containsKey(DeliveryParamParser.paramFrameFormat)) {
+            String format = options.getString(DeliveryParamParser.paramFrameFormat);
+            if ("png".equals(format)) {
+                return FrameFormat.FORMAT_PNG;
+            } else if (!"jpeg".equals(format)) {
+                Log.e("ScanditSDK", "Unknown frame format '" + format + "', using jpeg.");
+            }
+            return FrameFormat.FORMAT_JPEG;
+        }
+        return defaultFormat;
+    }
+
+    public static int getFrameQuality(Bundle options, int defaultQuality) {
+        if (options == null || !options.containsKey(DeliveryParamParser.paramFrameQuality)) {
+            return defaultQuality;
+        }
+        Object quality = options.get(DeliveryParamParser.paramFrameQuality);
+        if (quality instanceof Number && ((Number) quality).intValue() >= 1
+                && ((Number) quality).intValue() <= 100) {
+            return ((Number) quality).intValue();
+        }
+        Log.e("ScanditSDK", "Invalid frame quality '" + quality + "', has to be in [1, 100].");
+        return defaultQuality;
+    }
+
+    /**
+     * Reads the maximal width and height of the passed frames in pixels, 0 for no limit.
+     */
+    public static int getFrameMaxDimension(Bundle options, int defaultDimension) {
+        if (options == null || !options.containsKey(DeliveryParamParser.paramFrameMaxDimension)) {
+            return defaultDimension;
+        }
+        Object dimension = options.get(DeliveryParamParser.paramFrameMaxDimension);
+        if (dimension instanceof Number && ((Number) dimension).intValue() >= 0) {
+            return ((Number) dimension).intValue();
+        }
+        Log.e("ScanditSDK", "Invalid frame max dimension '" + dimension + "'.");
+        return defaultDimension;
+    }
+
+    public static int getFrameRegion(Bundle options, int defaultRegion) {
+        if (options != null && options.containsKey(DeliveryParamParser.paramFrameRegion)) {
+            String region = options.getString(DeliveryParamParser.paramFrameRegion);
+            if ("codes".equals(region)) {
+                return FrameFormat.REGION_CODES;
+            } else if ("perCode".equals(region)) {
+                return FrameFormat.REGION_PER_CODE;
+            } else if ("rectified".equals(region)) {
+                return FrameFormat.REGION_RECTIFIED;
+            } else if (!"full".equals(region)) {
+                Log.e("ScanditSDK", "Unknown frame region '" + region + "', using full.");
+            }
+            return FrameFormat.REGION_FULL;
+        }
+        return defaultRegion;
+    }
+
+    /**
+     * Reads the margin around the codes of cropped frames, relative to the size of the codes.
+     */
+    public static float getFrameRegionMargin(Bundle options, float defaultMargin) {
+        if (options == null || !options.containsKey(DeliveryParamParser.paramFrameRegionMargin)) {
+            return defaultMargin;
+        }
+        Object margin = options.get(DeliveryParamParser.paramFrameRegionMargin);
+        if (margin instanceof Number && ((Number) margin).floatValue() >= 0) {
+            return ((Number) margin).floatValue();
+        }
+        Log.e("ScanditSDK", "Invalid frame region margin '" + margin + "'.");
+        return defaultMargin;
+    }
+
+    public static int getFrameDelivery(Bundle options, int defaultDelivery) {
+        if (options != null && options.containsKey(DeliveryParamParser.paramFrameDelivery)) {
+            String delivery = options.getString(DeliveryParamParser.paramFrameDelivery);
+            if ("url".equals(delivery)) {
+                return FrameFormat.DELIVERY_URL;
+            } else if (!"base64".equals(delivery)) {
+                Log.e("ScanditSDK", "Unknown frame delivery '" + delivery + "', using base64.");
+            }
+            return FrameFormat.DELIVERY_BASE64;
+        }
+        return defaultDelivery;
+    }
+
+    public static boolean getFrameGrayscale(Bundle options, boolean defaultGrayscale) {
+        if (options == null || !options.containsKey(DeliveryParamParser.paramFrameGrayscale)) {
+            return defaultGrayscale;
+        }
+        return options.getBoolean(DeliveryParamParser.paramFrameGrayscale);
+    }
+
+    /**
+     * Reads the integer factor by which grayscale frames are downsampled, 1 for none.
+     */
+    public static int getFrameDownsample(Bundle options, int defaultFactor) {
+        if (options == null || !options.containsKey(DeliveryParamParser.paramFrameDownsample)) {
+            return defaultFactor;
+        }
+        Object factor = options.get(DeliveryParamParser.paramFrameDownsample);
+        if (factor instanceof Number && ((Number) factor).intValue() >= 1) {
+            return ((Number) factor).intValue();
+        }
+        Log.e("ScanditSDK", "Invalid frame downsample factor '" + factor + "'.");
+        return defaultFactor;
+    }
+
+    /**
+     * Reads the width of rectified crops in pixels, rounded down to an even number.
+     */
+    public static int getFrameCropWidth(Bundle options, int defaultWidth) {
+        if (options == null || !options.containsKey(DeliveryParamParser.paramFrameCropWidth)) {
+            return defaultWidth;
+        }
+        Object width = options.get(DeliveryParamParser.paramFrameCropWidth);
+        if (width instanceof Number && ((Number) width).intValue() >= 2) {
+            return ((Number) width).intValue() & ~1;
+        }
+        Log.e("ScanditSDK", "Invalid frame crop width '" + width + "'.");
+        return defaultWidth;
+    }
+
+    /**
+     * Reads the height of rectified crops in pixels, rounded down to an even number. 0 keeps the
+     * aspect ratio of each code.
+     */
+    public static int getFrameCropHeight(Bundle options, int defaultHeight) {
+        if (options == null || !options.containsKey(DeliveryParamParser.paramFrameCropHeight)) {
+            return defaultHeight;
+        }
+        Object height = options.get(DeliveryParamParser.paramFrameCropHeight);
+        if (height instanceof Number && (((Number) height).intValue() >= 2
+                || ((Number) height).intValue() == FrameFormat.ASPECT_CROP_HEIGHT)) {
+            return ((Number) height).intValue() & ~1;
+        }
+        Log.e("ScanditSDK", "Invalid frame crop height '" + height + "'.");
+        return defaultHeight;
+    }
+
+    /**
+     * Reads how many frame buffers the FramePool keeps.
+     */
+    public static int getFramePoolCapacity(Bundle options, int defaultCapacity) {
+        if (options == null || !options.containsKey(DeliveryParamParser.paramFramePoolCapacity)) {
+            return defaultCapacity;
+        }
+        Object capacity = options.get(DeliveryParamParser.paramFramePoolCapacity);
+        if (capacity instanceof Number && ((Number) capacity).intValue() >= 1) {
+            return ((Number) capacity).intValue();
+        }
+        Log.e("ScanditSDK", "Invalid frame pool capacity '" + capacity + "'.");
+        return defaultCapacity;
+    }
+
+    /**
+     * Reads the max number of frames per second passed to didProcessFrame, 0 for no limit.
+     */
+    public static float getFrameMaxFps(Bundle options, float defaultFps) {
+        Number fps = getFramePolicyNumber(options, paramFrameMaxFps, 0, Float.MAX_VALUE);
+        return fps != null ? fps.floatValue() : defaultFps;
+    }
+
+    /**
+     * Reads the min time in ms between two frames passed for the same code, 0 for none.
+     */
+    public static int getFrameMinCodeInterval(Bundle options, int defaultInterval) {
+        Number interval = getFramePolicyNumber(options, paramFrameMinCodeInterval, 0,
+                Integer.MAX_VALUE);
+        return interval != null ? interval.intValue() : defaultInterval;
+    }
+
+    public static float getFrameMinSharpness(Bundle options, float defaultSharpness) {
+        Number sharpness = getFramePolicyNumber(options, paramFrameMinSharpness, 0, 255);
+        return sharpness != null ? sharpness.floatValue() : defaultSharpness;
+    }
+
+    public static int getFrameMinBrightness(Bundle options, int defaultBrightness) {
+        Number brightness = getFramePolicyNumber(options, paramFrameMinBrightness, 0, 255);
+        return brightness != null ? brightness.intValue() : defaultBrightness;
+    }
+
+    public static int getFrameMaxBrightness(Bundle options, int defaultBrightness) {
+        Number brightness = getFramePolicyNumber(options, paramFrameMaxBrightness, 0, 255);
+        return brightness != null ? brightness.intValue() : defaultBrightness;
+    }
+
+    /**
+     * Returns the number of the option if it is within [min, max], null if it is not present or
+     * invalid.
+     */
+    private static Number getFramePolicyNumber(Bundle options, String key, double min,
+                                               double max) {
+        if (options == null || !options.containsKey(key)) {
+            return null;
+        }
+        Object value = options.get(key);
+        if (value instanceof Number && ((Number) value).doubleValue() >= min
+                && ((Number) value).doubleValue() <= max) {
+            return (Number) value;
+        }
+        Log.e("ScanditSDK", "Invalid value '" + value + "' for " + key + ", ignoring it.");
+        return null;
+    }
+
+    /**
+     * Reads how many frames delivered as url are kept on disk at most.
+     */
+    public static int getFrameStoreMaxCount(Bundle options, int defaultCount) {
+        if (options == null || !options.containsKey(DeliveryParamParser.paramFrameStoreMaxCount)) {
+            return defaultCount;
+        }
+        Object count = options.get(DeliveryParamParser.paramFrameStoreMaxCount);
+        if (count instanceof Number && ((Number) count).intValue() >= 1) {
+            return ((Number) count).intValue();
+        }
+        Log.e("ScanditSDK", "Invalid frame store max count '" + count + "'.");
+        return defaultCount;
+    }
+
+    /**
+     * Reads how many bytes the frames delivered as url take on disk at most.
+     */
+    public static long getFrameStoreMaxBytes(Bundle options, long defaultBytes) {
+        if (options == null || !options.containsKey(DeliveryParamParser.paramFrameStoreMaxBytes)) {
+            return defaultBytes;
+        }
+        Object bytes = options.get(DeliveryParamParser.paramFrameStoreMaxBytes);
+        if (bytes instanceof Number && ((Number) bytes).longValue() >= 1) {
+            return ((Number) bytes).longValue();
+        }
+        Log.e("ScanditSDK", "Invalid frame store max bytes '" + bytes + "'.");
+        return defaultBytes;
+    }
+
+    public static boolean shouldRecordSession(Bundle options) {
+        return options != null &&
+                options.containsKey(DeliveryParamParser.paramRecordSession) &&
+                options.getBoolean(DeliveryParamParser.paramRecordSession);
+    }
+
+    /**
+     * Reads the integer factor by which recorded frames are downsampled, 1 for none.
+     */
+    public static int getRecordingDownsample(Bundle options, int defaultFactor) {
+        if (options == null || !options.containsKey(DeliveryParamParser.paramRecordingDownsample)) {
+            return defaultFactor;
+        }
+        Object factor = options.get(DeliveryParamParser.paramRecordingDownsample);
+        if (factor instanceof Number && ((Number) factor).intValue() >= 1) {
+            return ((Number) factor).intValue();
+        }
+        Log.e("ScanditSDK", "Invalid recording downsample factor '" + factor + "'.");
+        return defaultFactor;
+    }
+
+    /**
+     * Reads the size of each file of a session recording in bytes.
+     */
+    public static long getRecordingMaxFileBytes(Bundle options, long defaultBytes) {
+        if (options == null
+                || !options.containsKey(DeliveryParamParser.paramRecordingMaxFileBytes)) {
+            return defaultBytes;
+        }
+        Object bytes = options.get(DeliveryParamParser.paramRecordingMaxFileBytes);
+        if (bytes instanceof Number && ((Number) bytes).longValue() >= 1
+                && ((Number) bytes).longValue() <= Integer.MAX_VALUE) {
+            return ((Number) bytes).longValue();
+        }
+        Log.e("ScanditSDK", "Invalid recording max file bytes '" + bytes + "'.");
+        return defaultBytes;
+    }
+
+    /**
+     * Reads how many files of session recordings are kept on disk at most.
+     */
+    public static int getRecordingMaxFiles(Bundle options, int defaultCount) {
+        if (options == null || !options.containsKey(DeliveryParamParser.paramRecordingMaxFiles)) {
+            return defaultCount;
+        }
+        Object count = options.get(DeliveryParamParser.paramRecordingMaxFiles);
+        if (count instanceof Number && ((Number) count).intValue() >= 1) {
+            return ((Number) count).intValue();
+        }
+        Log.e("ScanditSDK", "Invalid recording max files '" + count + "'.");
+        return defaultCount;
+    }
+
+    public static int getResultEncoding(Bundle options, int defaultEncoding) {
+        if (options != null && options.containsKey(DeliveryParamParser.paramResultEncoding)) {
+            String encoding = options.getString(DeliveryParamParser.paramResultEncoding);
+            if ("binary".equals(encoding)) {
+                return ResultFormat.ENCODING_BINARY;
+            } else if (!"json".equals(encoding)) {
+                Log.e("ScanditSDK", "Unknown result encoding '" + encoding + "', using json.");
+            }
+            return ResultFormat.ENCODING_JSON;
+        }
+        return defaultEncoding;
+    }
+
+    public static int getRawDataEncoding(Bundle options, int defaultEncoding) {
+        if (options != null && options.containsKey(DeliveryParamParser.paramRawDataEncoding)) {
+            String encoding = options.getString(DeliveryParamParser.paramRawDataEncoding);
+            if ("base64".equals(encoding)) {
+                return ResultFormat.RAW_DATA_BASE64;
+            } else if (!"array".equals(encoding)) {
+                Log.e("ScanditSDK", "Unknown raw data encoding '" + encoding + "', using array.");
+            }
+            return ResultFormat.RAW_DATA_ARRAY;
+        }
+        return defaultEncoding;
+    }
+
+    public static boolean isIncrementalSessionDelivery(Bundle options, boolean defaultIncremental) {
+        if (options != null && options.containsKey(DeliveryParamParser.paramSessionDelivery)) {
+            String delivery = options.getString(DeliveryParamParser.paramSessionDelivery);
+            if ("incremental".equals(delivery)) {
+                return true;
+            } else if (!"full".equals(delivery)) {
+                Log.e("ScanditSDK", "Unknown session delivery '" + delivery + "', using full.");
+            }
+            return false;
+        }
+        return defaultIncremental;
+    }
+
+    public static boolean isSymbologyIdEncoding(Bundle options, boolean defaultIds) {
+        if (options != null && options.containsKey(DeliveryParamParser.paramSymbologyEncoding)) {
+            String encoding = options.getString(DeliveryParamParser.paramSymbologyEncoding);
+            if ("id".equals(encoding)) {
+                return true;
+            } else if (!"name".equals(encoding)) {
+                Log.e("ScanditSDK", "Unknown symbology encoding '" + encoding + "', using name.");
+            }
+            return false;
+        }
+        return defaultIds;
+    }
+
+    /**
+     * Reads how many milliseconds the engine thread waits at most for JS to finish a result
+     * callback. Returns defaultTimeoutMs if the option is not set or invalid.
+     */
+    public static int getResultCallbackTimeout(Bundle options, int defaultTimeoutMs) {
+        if (options == null || !options.containsKey(paramResultCallbackTimeout)) {
+            return defaultTimeoutMs;
+        }
+        Object timeout = options.get(paramResultCallbackTimeout);
+        if (timeout instanceof Number && ((Number) timeout).intValue() > 0) {
+            return ((Number) timeout).intValue();
+        }
+        Log.e("ScanditSDK", "Invalid result callback timeout '" + timeout + "', ignoring it.");
+        return defaultTimeoutMs;
+    }
+
+    /**
+     * Reads the list of result callbacks that are delivered pipelined, e.g. ["didScan"].
+     *
+     * @return the callbacks as a combination of the PickerControllerBase.RESULT_EVENT_* flags.
+     */
+    public static int getPipelinedEvents(Bundle options) {
+        if (options == null || !(options.getSerializable(paramPipelinedEvents) instanceof List)) {
+            return 0;
+        }
+        int events = 0;
+        for (Object event : (List<?>) options.getSerializable(paramPipelinedEvents)) {
+            if ("didScan".equals(event)) {
+                events |= PickerControllerBase.RESULT_EVENT_DID_SCAN;
+            } else if ("didRecognizeNewCodes".equals(event)) {
+                events |= PickerControllerBase.RESULT_EVENT_DID_RECOGNIZE_NEW_CODES;
+            } else if ("didRecognizeText".equals(event)) {
+                events |= PickerControllerBase.RESULT_EVENT_DID_RECOGNIZE_TEXT;
+            } else {
+                Log.e("ScanditSDK", "Unknown result callback '" + event + "' can't be pipelined.");
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Reads how the events JS doesn't have to answer are batched: "frame" once per display frame
+     * or a number of ms.
+     *
+     * @return the interval in ms, EventCoalescer.PER_FRAME or EventCoalescer.DISABLED if the
+     *         options don't ask for batching.
+     */
+    public static int getEventBatchInterval(Bundle options) {
+        if (options == null || !options.containsKey(paramEventBatchInterval)) {
+            return EventCoalescer.DISABLED;
+        }
+        Object interval = options.get(paramEventBatchInterval);
+        if ("frame".equals(interval)) {
+            return EventCoalescer.PER_FRAME;
+        } else if (interval instanceof Number && ((Number) interval).intValue() > 0) {
+            return ((Number) interval).intValue();
+        }
+        Log.e("ScanditSDK", "Invalid event batch interval '" + interval + "', not batching.");
+        return EventCoalescer.DISABLED;
+    }
+
+    /**
+     * Reads the list of optional code fields the app consumes, e.g. ["location", "rawData"]. An
+     * empty list passes only the mandatory fields.
+     *
+     * @return the fields as a combination of the ResultFormat.FIELD_* flags or defaultFields if the
+     *         options don't contain the list.
+     */
+    public static int getCodeFields(Bundle options, int defaultFields) {
+        if (options == null || !(options.getSerializable(paramCodeFields) instanceof List)) {
+            return defaultFields;
+        }
+        int fields = 0;
+        for (Object field : (List<?>) options.getSerializable(paramCodeFields)) {
+            if ("location".equals(field)) {
+                fields |= ResultFormat.FIELD_LOCATION;
+            } else if ("convertedLocation".equals(field)) {
+                fields |= ResultFormat.FIELD_CONVERTED_LOCATION;
+            } else if ("predictedLocation".equals(field)) {
+                fields |= ResultFormat.FIELD_PREDICTED_LOCATION;
+            } else if ("convertedPredictedLocation".equals(field)) {
+                fields |= ResultFormat.FIELD_CONVERTED_PREDICTED_LOCATION;
+            } else if ("rawData".equals(field)) {
+                fields |= ResultFormat.FIELD_RAW_DATA;
+            } else if ("compositeFlag".equals(field)) {
+                fields |= ResultFormat.FIELD_COMPOSITE_FLAG;
+            } else if ("gs1DataCarrier".equals(field)) {
+                fields |= ResultFormat.FIELD_GS1_DATA_CARRIER;
+            } else if (!"data".equals(field) && !"symbology".equals(field) &&
+                    !"uniqueId".equals(field) && !"recognized".equals(field)) {
+                Log.e("ScanditSDK", "Unknown code field '" + field + "' is ignored.");
+            }
+        }
+        return fields;
+    }
+}
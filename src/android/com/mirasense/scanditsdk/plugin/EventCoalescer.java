@@ -0,0 +1,174 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffers the events JS doesn't have to answer (didChangeState, didChangeProperty,
+ * didProcessFrame, didFailToValidateLicense) and passes them to JS together, once per display
+ * frame or interval (eventBatchInterval option), instead of crossing the bridge for every one of
+ * them. A property change replaces the pending change of the same property and moves to the end of
+ * the batch, so JS never sees the new value before events that happened earlier, e.g. only the
+ * last relativeZoom of a pinch gesture within a frame is passed.
+ *
+ * Once the picker closed, the events that still arrive (e.g. a frame export finishing late) are
+ * dropped until the interval is set again by the next show().
+ *
+ * Several pending events are passed as a single eventBatch event whose argument is the array of
+ * the [eventName, argument] pairs in the order they occurred, a single pending event is passed as
+ * is. All other results have to be sent through {@link #send(PluginResult)}, which passes the
+ * pending events first so that JS sees all events in order.
+ */
+class EventCoalescer {
+
+    // eventBatchInterval values that don't stand for an interval in ms.
+    static final int DISABLED = -1;
+    static final int PER_FRAME = 0;
+
+    interface Sink {
+        void sendPluginResult(PluginResult result);
+    }
+
+    private final Sink mSink;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final List<JSONArray> mPendingEvents = new ArrayList<JSONArray>();
+    // Property names of the pending didChangeProperty events, null for all other events.
+    private final List<String> mPendingProperties = new ArrayList<String>();
+    private int mIntervalMs = DISABLED;
+    private boolean mFlushScheduled = false;
+    private boolean mClosed = false;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            flush();
+        }
+    };
+    // The choreographer has to be used from the main thread.
+    private final Runnable mPostFrameCallbackRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    };
+
+
+    EventCoalescer(Sink sink) {
+        mSink = sink;
+    }
+
+    /**
+     * Sets how the events are batched, DISABLED, PER_FRAME or an interval in ms. Events that are
+     * pending are passed right away.
+     */
+    synchronized void setInterval(int intervalMs) {
+        flushLocked();
+        mIntervalMs = intervalMs;
+        mClosed = false;
+    }
+
+    /**
+     * Passes an event to JS, batched with the other pending events unless batching is disabled.
+     */
+    synchronized void sendEvent(JSONArray args) {
+        if (mClosed) {
+            return;
+        }
+        if (mIntervalMs == DISABLED) {
+            mSink.sendPluginResult(Marshal.createOkResult(args));
+            return;
+        }
+        String property = propertyName(args);
+        if (property != null) {
+            int superseded = mPendingProperties.indexOf(property);
+            if (superseded >= 0) {
+                mPendingEvents.remove(superseded);
+                mPendingProperties.remove(superseded);
+            }
+        }
+        mPendingEvents.add(args);
+        mPendingProperties.add(property);
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            if (mIntervalMs == PER_FRAME) {
+                mMainHandler.post(mPostFrameCallbackRunnable);
+            } else {
+                mMainHandler.postDelayed(mFlushRunnable, mIntervalMs);
+            }
+        }
+    }
+
+    /**
+     * Sends a result right away, after the pending events.
+     */
+    synchronized void send(PluginResult result) {
+        flushLocked();
+        mSink.sendPluginResult(result);
+    }
+
+    /**
+     * Sends the result that ends the picker, after the pending events, and drops all events that
+     * arrive afterwards.
+     */
+    synchronized void close(PluginResult result) {
+        send(result);
+        mClosed = true;
+    }
+
+    synchronized void flush() {
+        flushLocked();
+    }
+
+    private void flushLocked() {
+        // the scheduled flush might still run, it doesn't find any events then.
+        mFlushScheduled = false;
+        if (mPendingEvents.isEmpty()) {
+            return;
+        }
+        if (mPendingEvents.size() == 1) {
+            mSink.sendPluginResult(Marshal.createOkResult(mPendingEvents.get(0)));
+        } else {
+            JSONArray batch = new JSONArray();
+            for (JSONArray event : mPendingEvents) {
+                batch.put(event);
+            }
+            mSink.sendPluginResult(Marshal.createOkResult(
+                    Marshal.createEventArgs(ScanditSDK.EVENT_BATCH, batch)));
+        }
+        mPendingEvents.clear();
+        mPendingProperties.clear();
+    }
+
+    private static String propertyName(JSONArray args) {
+        if (!ScanditSDK.DID_CHANGE_PROPERTY.equals(args.optString(0))) {
+            return null;
+        }
+        JSONObject change = args.optJSONObject(1);
+        return change != null ? change.optString("name") : null;
+    }
+}
@@ -0,0 +1,134 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.graphics.Rect;
+import android.os.Bundle;
+
+/**
+ * Decides which of the frames that triggered a didProcessFrame are actually exported. Frames are
+ * skipped before they are copied or encoded if
+ *
+ *  - the last frame was exported less than 1 / frameMaxFps seconds ago,
+ *  - all their codes have been exported less than frameMinCodeInterval ms ago (per uniqueId, i.e.
+ *    per tracked code in MatrixScan), the codes exported recently are left out otherwise,
+ *  - the area of their codes is too blurry (frameMinSharpness) or too dark or bright
+ *    (frameMinBrightness, frameMaxBrightness).
+ *
+ * Sharpness and brightness are measured on a grid of at most GATE_SAMPLES x GATE_SAMPLES pixels of
+ * the Y plane within the bounds of the codes. The brightness is their mean luminance, the sharpness
+ * the mean absolute difference to their right and bottom neighbors. Both are in [0, 255].
+ *
+ * The policy is set with the options passed to show() and changed with the options passed to
+ * updateOverlay. Instances are immutable.
+ */
+class FrameExportPolicy {
+
+    public final static float UNLIMITED_FPS = 0;
+    public final static int NO_CODE_INTERVAL = 0;
+    public final static float NO_MIN_SHARPNESS = 0;
+    public final static int MIN_BRIGHTNESS = 0;
+    public final static int MAX_BRIGHTNESS = 255;
+
+    // The gate looks at no more pixels per direction, so its cost is independent of the frame size.
+    static final int GATE_SAMPLES = 64;
+
+    private float mMaxFps = UNLIMITED_FPS;
+    private int mMinCodeIntervalMs = NO_CODE_INTERVAL;
+    private float mMinSharpness = NO_MIN_SHARPNESS;
+    private int mMinBrightness = MIN_BRIGHTNESS;
+    private int mMaxBrightness = MAX_BRIGHTNESS;
+
+
+    static FrameExportPolicy fromOptions(Bundle options) {
+        return new FrameExportPolicy().withOptions(options);
+    }
+
+    /**
+     * Returns a copy of this policy in which all the properties present in the options are
+     * replaced.
+     */
+    FrameExportPolicy withOptions(Bundle options) {
+        FrameExportPolicy policy = new FrameExportPolicy();
+        policy.mMaxFps = DeliveryParamParser.getFrameMaxFps(options, mMaxFps);
+        policy.mMinCodeIntervalMs = DeliveryParamParser.getFrameMinCodeInterval(options,
+                mMinCodeIntervalMs);
+        policy.mMinSharpness = DeliveryParamParser.getFrameMinSharpness(options, mMinSharpness);
+        policy.mMinBrightness = DeliveryParamParser.getFrameMinBrightness(options, mMinBrightness);
+        policy.mMaxBrightness = DeliveryParamParser.getFrameMaxBrightness(options, mMaxBrightness);
+        return policy;
+    }
+
+    public float getMaxFps() {
+        return mMaxFps;
+    }
+
+    /**
+     * Returns the minimal time between two frames in ns, 0 if the frame rate is unlimited.
+     */
+    public long getMinFrameIntervalNanos() {
+        return mMaxFps == UNLIMITED_FPS ? 0 : (long) (1000000000L / mMaxFps);
+    }
+
+    public int getMinCodeIntervalMs() {
+        return mMinCodeIntervalMs;
+    }
+
+    public float getMinSharpness() {
+        return mMinSharpness;
+    }
+
+    public int getMinBrightness() {
+        return mMinBrightness;
+    }
+
+    public int getMaxBrightness() {
+        return mMaxBrightness;
+    }
+
+    public boolean hasQualityGate() {
+        return mMinSharpness > NO_MIN_SHARPNESS || mMinBrightness > MIN_BRIGHTNESS
+                || mMaxBrightness < MAX_BRIGHTNESS;
+    }
+
+    /**
+     * Returns whether the region of the NV21 frame is sharp enough and neither too dark nor too
+     * bright.
+     */
+    boolean passesQualityGate(byte[] frame, int width, int height, Rect region) {
+        // the neighbors of the sampled pixels have to be within the frame.
+        int right = Math.min(region.right, width - 1);
+        int bottom = Math.min(region.bottom, height - 1);
+        int stepX = Math.max(1, (right - region.left) / GATE_SAMPLES);
+        int stepY = Math.max(1, (bottom - region.top) / GATE_SAMPLES);
+        long luminance = 0;
+        long gradient = 0;
+        int samples = 0;
+        for (int y = region.top; y < bottom; y += stepY) {
+            int row = y * width;
+            for (int x = region.left; x < right; x += stepX) {
+                int pixel = frame[row + x] & 0xff;
+                luminance += pixel;
+                gradient += Math.abs(pixel - (frame[row + x + 1] & 0xff))
+                        + Math.abs(pixel - (frame[row + width + x] & 0xff));
+                samples++;
+            }
+        }
+        if (samples == 0) {
+            return true;
+        }
+        float brightness = (float) luminance / samples;
+        float sharpness = (float) gradient / (2 * samples);
+        return sharpness >= mMinSharpness && brightness >= mMinBrightness
+                && brightness <= mMaxBrightness;
+    }
+}
@@ -0,0 +1,387 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.graphics.Point;
+import android.graphics.Rect;
+
+import com.scandit.recognition.Barcode;
+import com.scandit.recognition.Quadrilateral;
+import com.scandit.recognition.TrackedBarcode;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encodes the camera frames passed to JS with shouldPassBarcodeFrame (didProcessFrame) on a
+ * background thread, so that the engine thread only has to copy the frame.
+ *
+ * At most QUEUE_CAPACITY frames wait for the encoder. When the encoder falls behind, the oldest
+ * waiting frame is dropped in favor of the new one and counted. The copies of the frames are
+ * borrowed from the FramePool, at most MAX_FRAMES_IN_FLIGHT at a time, and the images are encoded
+ * into a single reusable stream. Every exported frame gets a sequence number and carries the
+ * uniqueIds of the codes that triggered it, so JS can match it with the result of those codes.
+ *
+ * Depending on the region of the format, only the bounds of these codes or a crop around each of
+ * them is encoded instead of the whole frame. The regions are taken from the code locations on the
+ * engine thread and cropped while encoding. For the region "rectified" the quadrilateral of each
+ * code is warped into an upright crop of a fixed size instead (see PerspectiveWarp).
+ *
+ * With the url delivery of the format, the encoded images are written to the FrameStore and
+ * passed as its urls instead of base64 data urls.
+ *
+ * The FrameExportPolicy decides on the engine thread which frames are exported at all, the frames
+ * it rejects are neither copied nor encoded.
+ */
+class FrameExporter {
+
+    static final int QUEUE_CAPACITY = 2;
+    // The frame being encoded and the waiting ones, the oldest waiting frame is dropped before a
+    // new one is copied.
+    static final int MAX_FRAMES_IN_FLIGHT = 1 + QUEUE_CAPACITY;
+    // Returned by export for frames the policy skipped.
+    static final long NOT_EXPORTED = -1;
+    // The export times of the codes are pruned once there are more of them.
+    private static final int MAX_CODE_EXPORT_TIMES = 256;
+    // The encoder thread is stopped when no frames have been exported for that long.
+    private static final long KEEP_ALIVE_SECONDS = 5;
+
+    interface Listener {
+        /**
+         * Called on the encoder thread with the didProcessFrame argument of an exported frame.
+         */
+        void onFrameExported(JSONObject frame);
+    }
+
+    private final Listener mListener;
+    private final ThreadPoolExecutor mExecutor;
+    private final FramePool mFramePool = FramePool.getInstance();
+    // Only used on the encoder thread.
+    private final ReusableOutputStream mOutputStream = new ReusableOutputStream(0);
+    // Only used on the encoder thread, holds the rectified crops.
+    private byte[] mWarp;
+    private final AtomicLong mLastSequence = new AtomicLong(0);
+    private final AtomicLong mDroppedFrames = new AtomicLong(0);
+    private volatile FrameFormat mFormat = new FrameFormat();
+    private volatile FrameStore mStore;
+    private volatile FrameExportPolicy mPolicy = new FrameExportPolicy();
+    private final AtomicLong mSkippedFrames = new AtomicLong(0);
+    // Only used on the engine thread.
+    private long mLastExportNanos = 0;
+    private final Map<Long, Long> mCodeExportNanos = new HashMap<Long, Long>();
+
+
+    FrameExporter(Listener listener) {
+        mListener = listener;
+        mExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ScanditFrameExporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                // only happens if the frames are exported from several threads at once.
+                dropOldest();
+                executor.getQueue().offer(task);
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Sets the format of the frames exported from now on.
+     */
+    void setFormat(FrameFormat format) {
+        mFormat = format;
+    }
+
+    void setPolicy(FrameExportPolicy policy) {
+        mPolicy = policy;
+    }
+
+    FrameExportPolicy getPolicy() {
+        return mPolicy;
+    }
+
+    /**
+     * Sets the store the frames are written to if the format delivers them as url. Without a
+     * store they are passed as base64 data urls.
+     */
+    void setStore(FrameStore store) {
+        mStore = store;
+    }
+
+    /**
+     * Copies the frame and queues it for encoding unless the policy skips it. Called on the engine
+     * thread, the frame buffer is not used anymore when it returns.
+     *
+     * @return the sequence number of the frame, NOT_EXPORTED if it was skipped.
+     */
+    long export(byte[] frame, int width, int height, List<? extends Barcode> codes) {
+        FrameFormat format = mFormat;
+        FrameExportPolicy policy = mPolicy;
+        long now = System.nanoTime();
+        if (mLastExportNanos != 0 && now - mLastExportNanos < policy.getMinFrameIntervalNanos()) {
+            mSkippedFrames.incrementAndGet();
+            return NOT_EXPORTED;
+        }
+        if (policy.getMinCodeIntervalMs() != FrameExportPolicy.NO_CODE_INTERVAL) {
+            codes = codesDueForExport(codes, now,
+                    TimeUnit.MILLISECONDS.toNanos(policy.getMinCodeIntervalMs()));
+            if (codes.isEmpty()) {
+                mSkippedFrames.incrementAndGet();
+                return NOT_EXPORTED;
+            }
+        }
+        if (policy.hasQualityGate() && !policy.passesQualityGate(frame, width, height,
+                codes.isEmpty() ? new Rect(0, 0, width, height)
+                        : boundsOfCodes(codes, 0, codes.size(), 0, width, height))) {
+            mSkippedFrames.incrementAndGet();
+            return NOT_EXPORTED;
+        }
+        mLastExportNanos = now;
+        if (policy.getMinCodeIntervalMs() != FrameExportPolicy.NO_CODE_INTERVAL) {
+            for (Barcode code : codes) {
+                mCodeExportNanos.put(uniqueId(code), now);
+            }
+        }
+        if (mExecutor.getQueue().remainingCapacity() == 0) {
+            dropOldest();
+        }
+        byte[] buffer = mFramePool.copyOf(frame);
+
+        long[] uniqueIds = new long[codes.size()];
+        for (int i = 0; i < uniqueIds.length; i++) {
+            uniqueIds[i] = uniqueId(codes.get(i));
+        }
+        Rect[] regions = regionsForCodes(codes, width, height, format);
+        float[][] corners = null;
+        if (format.getRegion() == FrameFormat.REGION_RECTIFIED) {
+            corners = new float[codes.size()][];
+            for (int i = 0; i < corners.length; i++) {
+                corners[i] = PerspectiveWarp.cornersOf(codes.get(i).getLocation());
+            }
+        }
+        long sequence = mLastSequence.incrementAndGet();
+        FrameStore store = format.getDelivery() == FrameFormat.DELIVERY_URL ? mStore : null;
+        mExecutor.execute(new ExportTask(buffer, width, height, format, store, regions, corners,
+                sequence, uniqueIds));
+        return sequence;
+    }
+
+    /**
+     * Returns the id of the code that is passed to JS as uniqueId.
+     */
+    static long uniqueId(Barcode code) {
+        return code instanceof TrackedBarcode ? ((TrackedBarcode) code).getId() : code.getHandle();
+    }
+
+    /**
+     * Returns the codes that have not been exported within the interval, the list itself if none
+     * has.
+     */
+    private List<? extends Barcode> codesDueForExport(List<? extends Barcode> codes, long now,
+                                                      long intervalNanos) {
+        if (mCodeExportNanos.size() > MAX_CODE_EXPORT_TIMES) {
+            // codes that are not due anymore don't need their export time.
+            Iterator<Long> iterator = mCodeExportNanos.values().iterator();
+            while (iterator.hasNext()) {
+                if (now - iterator.next() >= intervalNanos) {
+                    iterator.remove();
+                }
+            }
+        }
+        List<Barcode> due = null;
+        for (int i = 0; i < codes.size(); i++) {
+            Long exported = mCodeExportNanos.get(uniqueId(codes.get(i)));
+            boolean isDue = exported == null || now - exported >= intervalNanos;
+            if (!isDue && due == null) {
+                due = new ArrayList<Barcode>(codes.subList(0, i));
+            } else if (isDue && due != null) {
+                due.add(codes.get(i));
+            }
+        }
+        return due != null ? due : codes;
+    }
+
+    /**
+     * Returns the regions of the frame to encode: null for the whole frame, the bounds of all the
+     * codes or the bounds of each code in the order of the codes, depending on the format.
+     */
+    static Rect[] regionsForCodes(List<? extends Barcode> codes, int width, int height,
+                                  FrameFormat format) {
+        if (format.getRegion() == FrameFormat.REGION_FULL || codes.isEmpty()) {
+            return null;
+        }
+        if (format.getRegion() == FrameFormat.REGION_CODES) {
+            return new Rect[]{ boundsOfCodes(codes, 0, codes.size(), format.getRegionMargin(),
+                    width, height) };
+        }
+        Rect[] regions = new Rect[codes.size()];
+        for (int i = 0; i < regions.length; i++) {
+            regions[i] = boundsOfCodes(codes, i, i + 1, format.getRegionMargin(), width, height);
+        }
+        return regions;
+    }
+
+    /**
+     * Returns the bounds of the locations of the codes [from, to) including the margin, clipped
+     * to the frame. Left, top, width and height are even as required by NV21.
+     */
+    static Rect boundsOfCodes(List<? extends Barcode> codes, int from, int to, float margin,
+                              int width, int height) {
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            Quadrilateral location = codes.get(i).getLocation();
+            for (Point corner : new Point[]{ location.top_left, location.top_right,
+                    location.bottom_left, location.bottom_right }) {
+                left = Math.min(left, corner.x);
+                top = Math.min(top, corner.y);
+                right = Math.max(right, corner.x);
+                bottom = Math.max(bottom, corner.y);
+            }
+        }
+        int marginX = (int) ((right - left) * margin);
+        int marginY = (int) ((bottom - top) * margin);
+        left = Math.max(0, left - marginX) & ~1;
+        top = Math.max(0, top - marginY) & ~1;
+        int regionWidth = Math.max(2, (Math.min(width, right + marginX) - left) & ~1);
+        int regionHeight = Math.max(2, (Math.min(height, bottom + marginY) - top) & ~1);
+        // codes at the right or bottom border of the frame.
+        left = Math.min(left, width - regionWidth);
+        top = Math.min(top, height - regionHeight);
+        return new Rect(left, top, left + regionWidth, top + regionHeight);
+    }
+
+    /**
+     * Returns how many frames the policy skipped.
+     */
+    long getSkippedFrameCount() {
+        return mSkippedFrames.get();
+    }
+
+    /**
+     * Returns how many frames were dropped because the encoder fell behind.
+     */
+    long getDroppedFrameCount() {
+        return mDroppedFrames.get();
+    }
+
+    /**
+     * Drops the frame that has been waiting the longest and gives its buffer back.
+     */
+    private void dropOldest() {
+        ExportTask oldest = (ExportTask) mExecutor.getQueue().poll();
+        if (oldest != null) {
+            mDroppedFrames.incrementAndGet();
+            mFramePool.giveBack(oldest.mFrame);
+        }
+    }
+
+    private class ExportTask implements Runnable {
+
+        private final byte[] mFrame;
+        private final int mWidth;
+        private final int mHeight;
+        private final FrameFormat mFormat;
+        // null if the frames are passed as base64 data urls.
+        private final FrameStore mStore;
+        private final Rect[] mRegions;
+        // The corners of the codes for rectified crops, null otherwise.
+        private final float[][] mCorners;
+        private final long mSequence;
+        private final long[] mUniqueIds;
+
+
+        ExportTask(byte[] frame, int width, int height, FrameFormat format, FrameStore store,
+                   Rect[] regions, float[][] corners, long sequence, long[] uniqueIds) {
+            mFrame = frame;
+            mWidth = width;
+            mHeight = height;
+            mFormat = format;
+            mStore = store;
+            mRegions = regions;
+            mCorners = corners;
+            mSequence = sequence;
+            mUniqueIds = uniqueIds;
+        }
+
+        @Override
+        public void run() {
+            String data = null;
+            Rect region = null;
+            JSONArray crops = null;
+            try {
+                if (mRegions == null) {
+                    data = encode(mFrame, mWidth, mHeight, new Rect(0, 0, mWidth, mHeight));
+                } else if (mFormat.getRegion() == FrameFormat.REGION_CODES) {
+                    region = mRegions[0];
+                    data = encode(mFrame, mWidth, mHeight, region);
+                } else {
+                    crops = new JSONArray();
+                    for (int i = 0; i < mRegions.length; i++) {
+                        String crop = mCorners != null ? encodeRectified(mCorners[i])
+                                : encode(mFrame, mWidth, mHeight, mRegions[i]);
+                        crops.put(ResultRelay.jsonForFrameCrop(mUniqueIds[i], crop,
+                                mStore != null, mRegions[i]));
+                    }
+                }
+            } finally {
+                mFramePool.giveBack(mFrame);
+            }
+            mListener.onFrameExported(ResultRelay.jsonForDidProcessFrame(data, mStore != null,
+                    region, crops, mSequence, mUniqueIds, mDroppedFrames.get()));
+        }
+
+        private String encodeRectified(float[] corners) {
+            int width = mFormat.getCropWidth();
+            int height = mFormat.getCropHeight() != FrameFormat.ASPECT_CROP_HEIGHT
+                    ? mFormat.getCropHeight() : PerspectiveWarp.heightForWidth(corners, width);
+            mWarp = PerspectiveWarp.warpNv21(mFrame, mWidth, mHeight, corners,
+                    mFormat.getRegionMargin(), width, height, mFormat.isGrayscale(), mWarp);
+            return encode(mWarp, width, height, new Rect(0, 0, width, height));
+        }
+
+        /**
+         * Returns the base64 data url of the region of the NV21 image or its url in the store.
+         */
+        private String encode(byte[] image, int width, int height, Rect region) {
+            if (mStore == null) {
+                return SampleBufferConverter.base64StringFromFrame(image, width, height, region,
+                        mFormat, mOutputStream);
+            }
+            SampleBufferConverter.encodeFrame(image, width, height, region, mFormat,
+                    mOutputStream);
+            return mStore.put(mOutputStream.getBuffer(), 0, mOutputStream.size(),
+                    mFormat.isPng());
+        }
+    }
+}
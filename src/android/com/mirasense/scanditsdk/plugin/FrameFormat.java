@@ -0,0 +1,131 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.os.Bundle;
+
+/**
+ * Describes how the camera frames passed with shouldPassBarcodeFrame (didProcessFrame) are
+ * encoded. The format is chosen per picker through the options passed to show(). Instances are
+ * immutable.
+ */
+class FrameFormat {
+
+    public final static int FORMAT_JPEG = 0;
+    public final static int FORMAT_PNG = 1;
+
+    // Which part of the frame is passed: the whole frame, the bounds of the codes that triggered
+    // the export or a crop around each of these codes.
+    public final static int REGION_FULL = 0;
+    public final static int REGION_CODES = 1;
+    public final static int REGION_PER_CODE = 2;
+    // A crop per code of a fixed size, rectified from the quadrilateral of the code.
+    public final static int REGION_RECTIFIED = 3;
+
+    // How the encoded frames are passed: inline as base64 data url or as url of a file in the
+    // FrameStore that the WebView loads through the plugin.
+    public final static int DELIVERY_BASE64 = 0;
+    public final static int DELIVERY_URL = 1;
+
+    public final static int DEFAULT_QUALITY = 90;
+    public final static float DEFAULT_REGION_MARGIN = 0.25f;
+    public final static int NO_DOWNSAMPLING = 1;
+    public final static int DEFAULT_CROP_WIDTH = 400;
+    // The height of rectified crops follows the aspect ratio of each code.
+    public final static int ASPECT_CROP_HEIGHT = 0;
+    // No limit, the frame is passed in the camera resolution.
+    public final static int UNLIMITED_DIMENSION = 0;
+
+    private int mFormat = FORMAT_JPEG;
+    // JPEG quality 1-100, PNG is lossless.
+    private int mQuality = DEFAULT_QUALITY;
+    // The frame is scaled down if its width or height exceeds it.
+    private int mMaxDimension = UNLIMITED_DIMENSION;
+    private int mRegion = REGION_FULL;
+    // Added to the bounds of the codes on every side, relative to their width and height.
+    private float mRegionMargin = DEFAULT_REGION_MARGIN;
+    private int mDelivery = DELIVERY_BASE64;
+    // Only the luminance is encoded, see SampleBufferConverter.encodeGrayscaleFrame.
+    private boolean mGrayscale = false;
+    // Grayscale frames are shrunk by this factor, averaging the pixels of each block.
+    private int mDownsample = NO_DOWNSAMPLING;
+    private int mCropWidth = DEFAULT_CROP_WIDTH;
+    private int mCropHeight = ASPECT_CROP_HEIGHT;
+
+
+    static FrameFormat fromOptions(Bundle options) {
+        return new FrameFormat().withOptions(options);
+    }
+
+    /**
+     * Returns a copy of this format in which all the properties present in the options are
+     * replaced.
+     */
+    FrameFormat withOptions(Bundle options) {
+        FrameFormat format = new FrameFormat();
+        format.mFormat = DeliveryParamParser.getFrameFormat(options, mFormat);
+        format.mQuality = DeliveryParamParser.getFrameQuality(options, mQuality);
+        format.mMaxDimension = DeliveryParamParser.getFrameMaxDimension(options, mMaxDimension);
+        format.mRegion = DeliveryParamParser.getFrameRegion(options, mRegion);
+        format.mRegionMargin = DeliveryParamParser.getFrameRegionMargin(options, mRegionMargin);
+        format.mDelivery = DeliveryParamParser.getFrameDelivery(options, mDelivery);
+        format.mGrayscale = DeliveryParamParser.getFrameGrayscale(options, mGrayscale);
+        format.mDownsample = DeliveryParamParser.getFrameDownsample(options, mDownsample);
+        format.mCropWidth = DeliveryParamParser.getFrameCropWidth(options, mCropWidth);
+        format.mCropHeight = DeliveryParamParser.getFrameCropHeight(options, mCropHeight);
+        return format;
+    }
+
+    public int getFormat() {
+        return mFormat;
+    }
+
+    public boolean isPng() {
+        return mFormat == FORMAT_PNG;
+    }
+
+    public int getQuality() {
+        return mQuality;
+    }
+
+    public int getMaxDimension() {
+        return mMaxDimension;
+    }
+
+    public int getRegion() {
+        return mRegion;
+    }
+
+    public float getRegionMargin() {
+        return mRegionMargin;
+    }
+
+    public int getDelivery() {
+        return mDelivery;
+    }
+
+    public boolean isGrayscale() {
+        return mGrayscale;
+    }
+
+    public int getDownsample() {
+        return mDownsample;
+    }
+
+    public int getCropWidth() {
+        return mCropWidth;
+    }
+
+    public int getCropHeight() {
+        return mCropHeight;
+    }
+}
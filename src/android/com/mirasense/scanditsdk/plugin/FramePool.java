@@ -0,0 +1,144 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed ring of frame buffers for everything that keeps a copy of the frame the engine passes to
+ * didProcess beyond the call (frame export, recording, analysis). The buffers are allocated when
+ * they are borrowed for the first time, so a picker that never copies a frame allocates none, and
+ * the default capacity is what the FrameExporter can have in flight. Borrowed buffers have to be
+ * given back once the copy is not needed anymore.
+ *
+ * A borrow that is served by a buffer that was given back counts as a hit, every other one
+ * allocates a new buffer and counts as a miss. When all buffers of the capacity are borrowed, the
+ * new buffer is dropped when it is given back. If the frame size changes, the buffers of the old
+ * size are dropped. The counts are returned by getMetrics as
+ *
+ *   framePool: { capacity, frameSize, allocated, available, hits, misses }
+ *
+ * where allocated are the buffers of the current frame size the pool keeps, so misses beyond them
+ * mean the capacity is too small.
+ * so that the capacity (framePoolCapacity option) can be sized per device.
+ */
+class FramePool {
+
+    static final int DEFAULT_CAPACITY = FrameExporter.MAX_FRAMES_IN_FLIGHT;
+
+    private static final FramePool sInstance = new FramePool(DEFAULT_CAPACITY);
+
+    private ArrayBlockingQueue<byte[]> mBuffers;
+    private int mFrameSize = 0;
+    // The buffers of the current frame size allocated by the pool so far.
+    private int mAllocated = 0;
+    private final AtomicLong mHits = new AtomicLong(0);
+    private final AtomicLong mMisses = new AtomicLong(0);
+
+
+    /**
+     * Returns the pool of the process, shared by the pickers.
+     */
+    static FramePool getInstance() {
+        return sInstance;
+    }
+
+    FramePool(int capacity) {
+        mBuffers = new ArrayBlockingQueue<byte[]>(capacity);
+    }
+
+    /**
+     * Changes the number of buffers, the buffers are allocated again as they are borrowed.
+     */
+    synchronized void setCapacity(int capacity) {
+        if (capacity != mBuffers.remainingCapacity() + mBuffers.size()) {
+            mBuffers = new ArrayBlockingQueue<byte[]>(capacity);
+            mFrameSize = 0;
+        }
+    }
+
+    /**
+     * Returns a buffer of the given size, its content is undefined.
+     */
+    byte[] borrow(int frameSize) {
+        ArrayBlockingQueue<byte[]> buffers;
+        synchronized (this) {
+            if (frameSize != mFrameSize) {
+                // the first frame or the camera resolution changed.
+                mBuffers.clear();
+                mAllocated = 0;
+                mFrameSize = frameSize;
+            }
+            buffers = mBuffers;
+        }
+        byte[] buffer = buffers.poll();
+        if (buffer != null) {
+            mHits.incrementAndGet();
+            return buffer;
+        }
+        mMisses.incrementAndGet();
+        synchronized (this) {
+            if (buffers == mBuffers && frameSize == mFrameSize
+                    && mAllocated < mBuffers.remainingCapacity() + mBuffers.size()) {
+                mAllocated++;
+            }
+        }
+        return new byte[frameSize];
+    }
+
+    /**
+     * Borrows a buffer and copies the frame into it.
+     */
+    byte[] copyOf(byte[] frame) {
+        byte[] buffer = borrow(frame.length);
+        System.arraycopy(frame, 0, buffer, 0, frame.length);
+        return buffer;
+    }
+
+    /**
+     * Gives a borrowed buffer back, it must not be used anymore afterwards.
+     */
+    void giveBack(byte[] buffer) {
+        ArrayBlockingQueue<byte[]> buffers;
+        synchronized (this) {
+            if (buffer.length != mFrameSize) {
+                return;
+            }
+            buffers = mBuffers;
+        }
+        buffers.offer(buffer);
+    }
+
+    void resetCounts() {
+        mHits.set(0);
+        mMisses.set(0);
+    }
+
+    synchronized JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        try {
+            json.put("capacity", mBuffers.remainingCapacity() + mBuffers.size());
+            json.put("frameSize", mFrameSize);
+            json.put("allocated", mAllocated);
+            json.put("available", mBuffers.size());
+            json.put("hits", mHits.get());
+            json.put("misses", mMisses.get());
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return json;
+    }
+}
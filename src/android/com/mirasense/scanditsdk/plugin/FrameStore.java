@@ -0,0 +1,162 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the encoded frames delivered with frameDelivery "url" as files in the app cache directory,
+ * so that didProcessFrame only carries a short url instead of the base64 encoded image. The
+ * WebView loads the url through ScanditSDK (remapUri/handleOpenForRead), which streams the file
+ * from disk without the image ever crossing the bridge.
+ *
+ * The least recently written or loaded frames are deleted as soon as there are more than the max
+ * count of frames or they take more than the max bytes. The most recently used frame is always
+ * kept. Frames left over from a previous run are deleted when the store is created.
+ */
+class FrameStore {
+
+    static final String SCHEME = "scanditframe";
+    static final int DEFAULT_MAX_COUNT = 20;
+    static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+    private static final String URL_PREFIX = SCHEME + "://frames/";
+    private static final String DIRECTORY = "scandit-frames";
+
+    private static FrameStore sInstance;
+
+    private final File mDirectory;
+    // Name to size of the stored frames, in the order they were last written or loaded.
+    private final LinkedHashMap<String, Long> mFrames = new LinkedHashMap<String, Long>(16, 0.75f,
+            true);
+    private long mTotalBytes = 0;
+    private long mLastId = 0;
+    private int mMaxCount = DEFAULT_MAX_COUNT;
+    private long mMaxBytes = DEFAULT_MAX_BYTES;
+
+
+    /**
+     * Returns the store of the process, shared by the plugin and the pickers.
+     */
+    static synchronized FrameStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new FrameStore(new File(context.getCacheDir(), DIRECTORY));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the store of the process with the limits of the options passed to show().
+     */
+    static FrameStore getInstance(Context context, Bundle options) {
+        FrameStore store = getInstance(context);
+        store.setLimits(DeliveryParamParser.getFrameStoreMaxCount(options, DEFAULT_MAX_COUNT),
+                DeliveryParamParser.getFrameStoreMaxBytes(options, DEFAULT_MAX_BYTES));
+        return store;
+    }
+
+    FrameStore(File directory) {
+        mDirectory = directory;
+        File[] leftovers = directory.listFiles();
+        if (leftovers != null) {
+            for (File file : leftovers) {
+                file.delete();
+            }
+        }
+    }
+
+    synchronized void setLimits(int maxCount, long maxBytes) {
+        mMaxCount = maxCount;
+        mMaxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * Writes the encoded frame to disk. Called on the encoder thread.
+     *
+     * @return the url under which the WebView loads the frame, null if it could not be written.
+     */
+    String put(byte[] image, int offset, int length, boolean png) {
+        String name;
+        synchronized (this) {
+            name = "frame-" + (++mLastId) + (png ? ".png" : ".jpg");
+        }
+        // written outside of the lock so that the WebView can load other frames meanwhile.
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.e("ScanditSDK", "Failed to create the frame directory " + mDirectory + ".");
+            return null;
+        }
+        FileOutputStream stream = null;
+        try {
+            stream = new FileOutputStream(new File(mDirectory, name));
+            stream.write(image, offset, length);
+        } catch (IOException e) {
+            e.printStackTrace();
+            new File(mDirectory, name).delete();
+            return null;
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        synchronized (this) {
+            mFrames.put(name, (long) length);
+            mTotalBytes += length;
+            evict();
+        }
+        return URL_PREFIX + name;
+    }
+
+    static boolean isFrameUrl(String url) {
+        return url != null && url.startsWith(URL_PREFIX);
+    }
+
+    /**
+     * Returns the file of the frame with the given name (last segment of its url), null if it is
+     * unknown or has been evicted.
+     */
+    synchronized File get(String name) {
+        // also marks the frame as recently used.
+        if (name == null || mFrames.get(name) == null) {
+            return null;
+        }
+        return new File(mDirectory, name);
+    }
+
+    static String mimeTypeForName(String name) {
+        return name.endsWith(".png") ? "image/png" : "image/jpeg";
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = mFrames.entrySet().iterator();
+        while (mFrames.size() > 1 && (mFrames.size() > mMaxCount || mTotalBytes > mMaxBytes)) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            // a WebView that is still reading the file keeps it open until it is done.
+            new File(mDirectory, eldest.getKey()).delete();
+            mTotalBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+}
@@ -33,18 +33,13 @@ import com.scandit.barcodepicker.ScanSettings;
 import com.scandit.barcodepicker.ocr.RecognizedText;
 import com.scandit.barcodepicker.ocr.TextRecognitionListener;
 import com.scandit.base.util.JSONParseException;
-import com.scandit.recognition.TrackedBarcode;
 
-import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 
@@ -69,14 +64,13 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
     private PickerStateMachine mPickerStateMachine = null;
     private boolean mContinuousMode = false;
     private boolean mIsDidScanDefined = false;
-    private boolean mShouldPassBarcodeFrame = false;
+    private final PickerResultHandler mResultHandler = new PickerResultHandler(ResultRelay.SINK);
+    // null unless the session is recorded.
+    private SessionRecorder mRecorder = null;
 
     private int mStateBeforeSuspend = PickerStateMachine.STOPPED;
     private List<Long> mRejectedCodeIds;
 
-    private Set<Long> mLastFrameTrackedCodeIds = new HashSet<Long>();
-    private List<Long> mRejectedTrackedCodeIds;
-
 
     public static void setState(int state) {
         if (sActiveActivity == null) return;
@@ -100,7 +94,7 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
 
     public static void setRejectedTrackedCodeIds(List<Long> rejectedCodeIds) {
         if (sActiveActivity == null) return;
-        sActiveActivity.mRejectedTrackedCodeIds = rejectedCodeIds;
+        sActiveActivity.mResultHandler.setRejectedTrackedCodeIds(rejectedCodeIds);
     }
 
     public static void setTrackedCodeStates(Map<Long, JSONObject> trackedCodeStates) {
@@ -113,6 +107,23 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
         UIParamParser.updatePickerUI(sActiveActivity.mPickerStateMachine.getPicker(), overlayOptions);
     }
 
+    public static void updateResultFormat(Bundle options) {
+        if (sActiveActivity == null) return;
+        sActiveActivity.mResultHandler.updateResultFormat(options);
+    }
+
+    public static void updateFrameExportPolicy(Bundle options) {
+        if (sActiveActivity == null) return;
+        FrameExporter exporter = sActiveActivity.mResultHandler.getFrameExporter();
+        exporter.setPolicy(exporter.getPolicy().withOptions(options));
+    }
+
+    public static JSONObject getCoordinateTransform() {
+        if (sActiveActivity == null || sActiveActivity.mPicker == null) return null;
+        return sActiveActivity.mResultHandler.getCoordinateTransform(sActiveActivity.mPicker)
+                .toJson();
+    }
+
     public static void setTorchEnabled(boolean enabled) {
         if (sActiveActivity != null) {
             sActiveActivity.switchTorchOn(enabled);
@@ -208,7 +219,15 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
 
         mContinuousMode = PhonegapParamParser.shouldRunInContinuousMode(options);
         mIsDidScanDefined = PhonegapParamParser.isDidScanDefined(options);
-        mShouldPassBarcodeFrame = PhonegapParamParser.shouldPassBarcodeFrame(options);
+        FrameExporter frameExporter = mResultHandler.getFrameExporter();
+        frameExporter.setFormat(FrameFormat.fromOptions(options));
+        frameExporter.setPolicy(FrameExportPolicy.fromOptions(options));
+        frameExporter.setStore(FrameStore.getInstance(this, options));
+        FramePool.getInstance().setCapacity(DeliveryParamParser.getFramePoolCapacity(options,
+                FramePool.DEFAULT_CAPACITY));
+        mResultHandler.reset(ResultFormat.fromOptions(options),
+                PhonegapParamParser.shouldPassBarcodeFrame(options));
+        mRecorder = SessionRecorder.fromOptions(this, options);
 
         mStateBeforeSuspend = PhonegapParamParser.shouldStartInPausedState(options)
                 ? PickerStateMachine.PAUSED : PickerStateMachine.ACTIVE;
@@ -225,6 +244,14 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
         super.onPause();
     }
 
+    @Override
+    protected void onDestroy() {
+        if (mRecorder != null) {
+            mRecorder.close();
+        }
+        super.onDestroy();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -256,6 +283,9 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
 
     @Override
     public void didScan(ScanSession session) {
+        if (mRecorder != null) {
+            mRecorder.recordDidScan(session);
+        }
         // don't do anything if:
         // there is a pending close operation (otherwise we will deadlock)
         // or the didScan callback is undefined
@@ -263,8 +293,9 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
             return;
         }
 
-        Bundle bundle = bundleForScanResult(session);
         if (!mContinuousMode) {
+            Bundle bundle = new Bundle();
+            mResultHandler.putSession(bundle, session, mPicker);
             mPickerStateMachine.switchToNextScanState(PickerStateMachine.PAUSED, session);
             final Intent intent = new Intent();
             bundle.putBoolean("waitForResult", false);
@@ -278,89 +309,23 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
             });
             return;
         }
-        int nextState = ResultRelay.relayResult(bundle);
+        int nextState = mResultHandler.didScan(session, mPicker);
         mPickerStateMachine.switchToNextScanState(nextState, session);
         Marshal.rejectCodes(session, mRejectedCodeIds);
     }
 
-    private Bundle bundleForScanResult(ScanSession session) {
-        Bundle bundle = new Bundle();
-        JSONArray eventArgs = Marshal.createEventArgs(ScanditSDK.DID_SCAN_EVENT,
-                ResultRelay.jsonForSession(session, mPicker));
-        bundle.putString("jsonString", eventArgs.toString());
-        return bundle;
-    }
-
     @Override
     public void didProcess(byte[] bytes, int width, int height, ScanSession session) {
+        boolean matrixScan = mPickerStateMachine == null
+                || mPickerStateMachine.isMatrixScanEnabled();
+        if (mRecorder != null) {
+            mRecorder.recordDidProcess(bytes, width, height, session, matrixScan);
+        }
         if (sPendingClose.get()) {
             // return if there is a pending close. Otherwise we might deadlock
             return;
         }
-
-        if ((mPickerStateMachine != null && !mPickerStateMachine.isMatrixScanEnabled())) {
-            // Call didProcessFrame only when new codes have been recognized.
-            if (session.getNewlyRecognizedCodes().size() > 0) {
-                returnFrameBufferIfWanted(bytes, width, height);
-            }
-            return;
-        }
-
-        // If tracked codes are null for whatever reason, there is nothing more to do.
-        if (session.getTrackedCodes() == null) {
-            return;
-        }
-
-        Map<Long, TrackedBarcode> trackedCodes = session.getTrackedCodes();
-        List<TrackedBarcode> newlyTrackedCodes = new ArrayList<TrackedBarcode>();
-        Set<Long> recognizedCodeIds = new HashSet<Long>();
-
-        for (Map.Entry<Long, TrackedBarcode> entry : trackedCodes.entrySet()) {
-            // Check if it's a new identifier.
-            if (entry.getValue().isRecognized()) {
-                recognizedCodeIds.add(entry.getKey());
-                if (!mLastFrameTrackedCodeIds.contains(entry.getKey())) {
-                    // Add the new identifier.
-                    mLastFrameTrackedCodeIds.add(entry.getKey());
-                    newlyTrackedCodes.add(entry.getValue());
-                }
-            }
-        }
-        // Update the recognized code ids for next frame.
-        mLastFrameTrackedCodeIds = recognizedCodeIds;
-
-        if (newlyTrackedCodes.size() > 0) {
-            Bundle bundle = bundleForProcessResult(newlyTrackedCodes);
-            ResultRelay.relayResult(bundle);
-            Marshal.rejectTrackedCodes(session, mRejectedTrackedCodeIds);
-
-            // Call didProcessFrame only when new codes have started to be tracked.
-            returnFrameBufferIfWanted(bytes, width, height);
-        }
-    }
-
-    private void returnFrameBufferIfWanted(byte[] bytes, int width, int height) {
-        if (mShouldPassBarcodeFrame) {
-            String base64Data = SampleBufferConverter.base64StringFromFrame(bytes, width, height);
-            ResultRelay.relayResult(bundleForDidProcessFrame(base64Data));
-        }
-    }
-
-    private Bundle bundleForDidProcessFrame(String base64Data) {
-        Bundle bundle = new Bundle();
-        JSONArray args = Marshal.createEventArgs(ScanditSDK.DID_PROCESS_FRAME,
-                ResultRelay.jsonForDidProcessFrame(base64Data));
-        bundle.putString("jsonString", args.toString());
-        bundle.putBoolean("waitForResult", false);
-        return bundle;
-    }
-
-    private Bundle bundleForProcessResult(List<TrackedBarcode> newylTrackedCodes) {
-        Bundle bundle = new Bundle();
-        JSONArray eventArgs = Marshal.createEventArgs(ScanditSDK.DID_RECOGNIZE_NEW_CODES,
-                ResultRelay.jsonForTrackedCodes(newylTrackedCodes, mPicker));
-        bundle.putString("jsonString", eventArgs.toString());
-        return bundle;
+        mResultHandler.didProcess(bytes, width, height, session, matrixScan, mPicker);
     }
 
     @Override
@@ -373,8 +338,8 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
             return;
         }
 
-        Bundle bundle = manualSearchResultsToBundle(entry.trim());
-        ResultRelay.relayResult(bundle);
+        JSONArray args = Marshal.createEventArgs(ScanditSDK.DID_MANUAL_SEARCH_EVENT, entry.trim());
+        ResultRelay.relayResult(Marshal.createOkResult(args), false);
     }
 
     private Bundle manualSearchResultsToBundle(String entry) {
@@ -393,8 +358,13 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
             // return if there is a pending close. Otherwise we might deadlock
             return TextRecognitionListener.PICKER_STATE_STOPPED;
         }
-        Bundle bundle = bundleForTextRecognitionResult(recognizedText);
+        int callbackId = mContinuousMode ? ResultRelay.beginResultCallback(
+                PickerControllerBase.RESULT_EVENT_DID_RECOGNIZE_TEXT) : 0;
+        JSONArray eventArgs = Marshal.createEventArgs(ScanditSDK.DID_RECOGNIZE_TEXT_EVENT,
+                ResultRelay.jsonForRecognizedText(recognizedText, callbackId));
         if (!mContinuousMode) {
+            Bundle bundle = new Bundle();
+            bundle.putString("jsonString", eventArgs.toString());
             final Intent intent = new Intent();
             bundle.putBoolean("waitForResult", false);
             intent.putExtras(bundle);
@@ -408,7 +378,8 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
             mPickerStateMachine.setState(PickerStateMachine.PAUSED);
             return TextRecognitionListener.PICKER_STATE_PAUSED;
         }
-        int nextState = ResultRelay.relayResult(bundle);
+        int nextState = ResultRelay.relayResultCallback(Marshal.createOkResult(eventArgs),
+                PickerControllerBase.RESULT_EVENT_DID_RECOGNIZE_TEXT, callbackId);
 
         mPickerStateMachine.setState(nextState);
         Marshal.rejectRecognizedTexts(recognizedText, mRejectedCodeIds);
@@ -421,14 +392,6 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
         }
     }
 
-    private Bundle bundleForTextRecognitionResult(RecognizedText recognizedText) {
-        Bundle bundle = new Bundle();
-        JSONArray eventArgs = Marshal.createEventArgs(ScanditSDK.DID_RECOGNIZE_TEXT_EVENT,
-                ResultRelay.jsonForRecognizedText(recognizedText));
-        bundle.putString("jsonString", eventArgs.toString());
-        return bundle;
-    }
-
     @Override
     public void onBackPressed() {
         sPendingClose.set(true);
@@ -445,43 +408,26 @@ public class FullScreenPickerActivity extends Activity implements OnScanListener
 
     @Override
     public void pickerEnteredState(BarcodePickerWithSearchBar picker, int newState) {
-        Bundle resultBundle = new Bundle();
         JSONArray didStopArgs = Marshal.createEventArgs(ScanditSDK.DID_CHANGE_STATE_EVENT, newState);
-        resultBundle.putString("jsonString", didStopArgs.toString());
-        resultBundle.putBoolean("waitForResult", false);
-        ResultRelay.relayResult(resultBundle);
+        ResultRelay.relayEvent(didStopArgs);
     }
 
     @Override
     public void pickerSwitchedMatrixScanState(BarcodePickerWithSearchBar picker, boolean matrixScan) {
-        mLastFrameTrackedCodeIds.clear();
+        mResultHandler.clearTrackedCodes();
     }
 
     @Override
     public void onPropertyChange(int name, int newState) {
-        ResultRelay.relayResult(bundleForPropertyChange(name, newState));
-    }
-
-    private Bundle bundleForPropertyChange(int name, int newState) {
-        Bundle bundle = new Bundle();
         JSONArray args = Marshal.createEventArgs(ScanditSDK.DID_CHANGE_PROPERTY,
                 ResultRelay.jsonForPropertyChange(name, newState));
-        bundle.putString("jsonString", args.toString());
-        bundle.putBoolean("waitForResult", false);
-        return bundle;
+        ResultRelay.relayEvent(args);
     }
 
     @Override
     public void failedToValidateLicense(String errorMessage) {
-        ResultRelay.relayResult(bundleForLicenseValidationFail(errorMessage));
-    }
-
-    private Bundle bundleForLicenseValidationFail(String errorMessage) {
-        Bundle bundle = new Bundle();
         JSONArray args = Marshal.createEventArgs(ScanditSDK.DID_FAIL_TO_VALIDATE_LICENSE,
                 ResultRelay.jsonForLicenseValidationFail(errorMessage));
-        bundle.putString("jsonString", args.toString());
-        bundle.putBoolean("waitForResult", false);
-        return bundle;
+        ResultRelay.relayEvent(args);
     }
 }
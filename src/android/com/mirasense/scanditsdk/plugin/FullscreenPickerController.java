@@ -11,7 +11,6 @@ import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
@@ -42,6 +41,10 @@ class FullscreenPickerController extends PickerControllerBase implements ResultR
     @Override
     public void show(JSONObject settings, Bundle options, Bundle overlayOptions, boolean legacyMode, CallbackContext callbacks) {
         mCallbackContext = callbacks;
+        setResultCallbackTimeout(DeliveryParamParser.getResultCallbackTimeout(options,
+                ADAPTIVE_RESULT_CALLBACK_TIMEOUT));
+        setPipelinedEvents(DeliveryParamParser.getPipelinedEvents(options));
+        setEventBatchInterval(DeliveryParamParser.getEventBatchInterval(options));
         int flags = mPlugin.cordova.getActivity().getWindow().getAttributes().flags;
         if ((flags & WindowManager.LayoutParams.FLAG_SECURE) != 0) {
             options.putBoolean("secure", true);
@@ -78,6 +81,21 @@ class FullscreenPickerController extends PickerControllerBase implements ResultR
         FullScreenPickerActivity.updateUI(overlayOptions);
     }
 
+    @Override
+    public void updateResultFormat(Bundle options) {
+        FullScreenPickerActivity.updateResultFormat(options);
+    }
+
+    @Override
+    public void updateFrameExportPolicy(Bundle options) {
+        FullScreenPickerActivity.updateFrameExportPolicy(options);
+    }
+
+    @Override
+    public JSONObject getCoordinateTransform() {
+        return FullScreenPickerActivity.getCoordinateTransform();
+    }
+
     @Override
     public void setTorchEnabled(boolean enabled) {
         FullScreenPickerActivity.setTorchEnabled(enabled);
@@ -105,12 +123,13 @@ class FullscreenPickerController extends PickerControllerBase implements ResultR
                 resultCode == FullScreenPickerActivity.TEXT) {
             PluginResult result = resultForBundle(data.getExtras());
             if (data.getExtras().getBoolean("waitForResult", true)) {
-                sendPluginResultBlocking(result);
+                sendPluginResultBlocking(result, resultCode == FullScreenPickerActivity.TEXT
+                        ? RESULT_EVENT_DID_RECOGNIZE_TEXT : RESULT_EVENT_DID_SCAN);
             } else {
-                mCallbackContext.sendPluginResult(result);
+                sendPluginResult(result);
             }
         } else if (resultCode == FullScreenPickerActivity.CANCEL) {
-            mCallbackContext.sendPluginResult(Marshal.createCancel());
+            sendCancelResult();
         }
     }
 
@@ -121,33 +140,40 @@ class FullscreenPickerController extends PickerControllerBase implements ResultR
     }
 
     @Override
-    public int onRelayedResult(Bundle bundle) {
-        PluginResult result = resultForBundle(bundle);
-        if (bundle.getBoolean("waitForResult", true)) {
-            return sendPluginResultBlocking(result);
+    public int onRelayedResult(PluginResult result, boolean waitForResult) {
+        if (waitForResult) {
+            return sendPluginResultBlocking(result, RESULT_EVENT_DID_SCAN);
         }
-        mCallbackContext.sendPluginResult(resultForBundle(bundle));
+        sendPluginResult(result);
         return 0;
     }
 
-    PluginResult createOkResult(JSONArray args) {
-        PluginResult result = new PluginResult(PluginResult.Status.OK, args);
-        result.setKeepCallback(true);
-        return result;
+    @Override
+    public void onRelayedEvent(JSONArray args) {
+        sendEvent(args);
     }
 
+    @Override
+    public int onBeginResultCallback(int event) {
+        return beginResultCallback(event);
+    }
+
+    @Override
+    public int onRelayedResultCallback(PluginResult result, int event, int callbackId) {
+        return sendResultCallback(result, event, callbackId);
+    }
+
+    /**
+     * Only used for the result the activity finishes with, all other results are relayed directly.
+     */
     private PluginResult resultForBundle(Bundle bundle) {
-        PluginResult result = null;
+        if (bundle.containsKey("binaryArgs")) {
+            return Marshal.createOkResult(bundle.getByteArray("binaryArgs"));
+        }
         if (bundle.containsKey("jsonString")) {
-            String jsonString = bundle.getString("jsonString");
-            try {
-                JSONArray json = new JSONArray(jsonString);
-                return createOkResult(json);
-            } catch (JSONException e) {
-                e.printStackTrace();
-                result = new PluginResult(PluginResult.Status.OK, "error");
-            }
+            // The activity already encoded the event args, no need to parse them again.
+            return Marshal.createOkResultFromJson(bundle.getString("jsonString"));
         }
-        return result;
+        return null;
     }
 }
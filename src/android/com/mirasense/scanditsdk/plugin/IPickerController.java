@@ -61,6 +61,33 @@ public interface IPickerController {
      */
     void updateLayout(Bundle layoutOptions);
 
+    /**
+     * @brief Update how results are marshalled
+     *
+     * @param options Options containing the result format properties (resultEncoding,
+     *                rawDataEncoding, codeFields) to change. Properties that are not present keep
+     *                their current value. Supported by both picker controllers while the picker is
+     *                running.
+     */
+    void updateResultFormat(Bundle options);
+
+    /**
+     * @brief Update which frames are passed to didProcessFrame
+     *
+     * @param options Options containing the frame export policy properties (frameMaxFps,
+     *                frameMinCodeInterval, frameMinSharpness, frameMinBrightness,
+     *                frameMaxBrightness) to change. Properties that are not present keep their
+     *                current value. Supported by both picker controllers while the picker is
+     *                running.
+     */
+    void updateFrameExportPolicy(Bundle options);
+
+    /**
+     * Returns the transform from code locations to converted locations (picker coordinates in dp)
+     * that is currently used by the picker, or null if no picker is shown.
+     */
+    JSONObject getCoordinateTransform();
+
     /**
      * Enable/disable the torch
      *
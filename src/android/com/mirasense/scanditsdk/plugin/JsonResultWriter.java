@@ -0,0 +1,196 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import java.util.Arrays;
+
+/**
+ * Streaming json writer used to marshal scan results without building a JSONObject tree. The
+ * output is appended to a char buffer that is reused by all results written on the same thread,
+ * so writing a result only allocates the final string that is handed to cordova.
+ *
+ * The writer does not validate the structure, callers are expected to balance begin/end calls.
+ */
+class JsonResultWriter {
+
+    // Buffers that grew beyond this size (e.g. for a huge session) are not kept around.
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+
+    private static final ThreadLocal<JsonResultWriter> sWriters = new ThreadLocal<JsonResultWriter>() {
+        @Override
+        protected JsonResultWriter initialValue() {
+            return new JsonResultWriter();
+        }
+    };
+
+    private StringBuilder mBuilder = new StringBuilder(INITIAL_CAPACITY);
+    // Whether the object/array at the given nesting level already contains an element.
+    private boolean[] mHasElements = new boolean[16];
+    private int mDepth = 0;
+    private boolean mAfterName = false;
+
+
+    /**
+     * Returns the (cleared) writer of the calling thread. The writer must not be used anymore after
+     * finish() has been called.
+     */
+    static JsonResultWriter obtain() {
+        JsonResultWriter writer = sWriters.get();
+        writer.reset();
+        return writer;
+    }
+
+    public JsonResultWriter beginObject() {
+        return open('{');
+    }
+
+    public JsonResultWriter endObject() {
+        return close('}');
+    }
+
+    public JsonResultWriter beginArray() {
+        return open('[');
+    }
+
+    public JsonResultWriter endArray() {
+        return close(']');
+    }
+
+    public JsonResultWriter name(String name) {
+        beforeValue();
+        appendQuoted(name);
+        mBuilder.append(':');
+        mAfterName = true;
+        return this;
+    }
+
+    public JsonResultWriter value(String value) {
+        beforeValue();
+        if (value == null) {
+            mBuilder.append("null");
+        } else {
+            appendQuoted(value);
+        }
+        return this;
+    }
+
+    public JsonResultWriter value(long value) {
+        beforeValue();
+        mBuilder.append(value);
+        return this;
+    }
+
+    public JsonResultWriter value(boolean value) {
+        beforeValue();
+        mBuilder.append(value);
+        return this;
+    }
+
+    /**
+     * Returns the written json and releases the buffer for the next result.
+     */
+    public String finish() {
+        String json = mBuilder.toString();
+        if (mBuilder.capacity() > MAX_RETAINED_CAPACITY) {
+            mBuilder = new StringBuilder(INITIAL_CAPACITY);
+        }
+        reset();
+        return json;
+    }
+
+    private void reset() {
+        mBuilder.setLength(0);
+        mDepth = 0;
+        mHasElements[0] = false;
+        mAfterName = false;
+    }
+
+    private JsonResultWriter open(char bracket) {
+        beforeValue();
+        mBuilder.append(bracket);
+        mDepth++;
+        if (mDepth == mHasElements.length) {
+            mHasElements = Arrays.copyOf(mHasElements, mHasElements.length * 2);
+        }
+        mHasElements[mDepth] = false;
+        return this;
+    }
+
+    private JsonResultWriter close(char bracket) {
+        mBuilder.append(bracket);
+        mDepth--;
+        return this;
+    }
+
+    private void beforeValue() {
+        if (mAfterName) {
+            mAfterName = false;
+            return;
+        }
+        if (mHasElements[mDepth]) {
+            mBuilder.append(',');
+        }
+        mHasElements[mDepth] = true;
+    }
+
+    private void appendQuoted(String value) {
+        StringBuilder builder = mBuilder;
+        builder.append('"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    builder.append('\\').append(c);
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\b':
+                    builder.append("\\b");
+                    break;
+                case '\f':
+                    builder.append("\\f");
+                    break;
+                // Valid in json, but not in JS string literals when the bridge evaluates the result.
+                case '\u2028':
+                case '\u2029':
+                    appendUnicodeEscape(c);
+                    break;
+                default:
+                    if (c < 0x20) {
+                        appendUnicodeEscape(c);
+                    } else {
+                        builder.append(c);
+                    }
+                    break;
+            }
+        }
+        builder.append('"');
+    }
+
+    private void appendUnicodeEscape(char c) {
+        mBuilder.append("\\u");
+        String hex = Integer.toHexString(c);
+        for (int i = hex.length(); i < 4; i++) {
+            mBuilder.append('0');
+        }
+        mBuilder.append(hex);
+    }
+}
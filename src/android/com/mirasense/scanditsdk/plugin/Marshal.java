@@ -11,6 +11,8 @@
 //  limitations under the License.
 package com.mirasense.scanditsdk.plugin;
 
+import android.os.Bundle;
+
 import com.scandit.barcodepicker.ScanSession;
 import com.scandit.barcodepicker.ocr.RecognizedText;
 import com.scandit.recognition.Barcode;
@@ -18,8 +20,11 @@ import com.scandit.recognition.TrackedBarcode;
 
 import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -28,6 +33,52 @@ import java.util.List;
  */
 public class Marshal {
 
+    /**
+     * Copies the options passed from JS into the bundle, lower-casing all the keys. Nested objects
+     * are copied into nested bundles, arrays into ArrayLists.
+     */
+    public static void setOptionsOnBundle(JSONObject options, Bundle bundle) {
+        @SuppressWarnings("unchecked")
+        Iterator<String> iter = options.keys();
+        while (iter.hasNext()) {
+            String key = iter.next();
+            Object obj = options.opt(key);
+            if (obj != null) {
+                if (obj instanceof Float) {
+                    bundle.putFloat(key.toLowerCase(), (Float) obj);
+                } else if (obj instanceof Double) {
+                    bundle.putFloat(key.toLowerCase(), ((Double) obj).floatValue());
+                } else if (obj instanceof Integer) {
+                    bundle.putInt(key.toLowerCase(), (Integer) obj);
+                } else if (obj instanceof Boolean) {
+                    bundle.putBoolean(key.toLowerCase(), (Boolean) obj);
+                } else if (obj instanceof String) {
+                    bundle.putString(key.toLowerCase(), (String) obj);
+                } else if (obj instanceof JSONArray) {
+                    ArrayList<Object> list = new ArrayList<Object>();
+                    JSONArray array = (JSONArray) obj;
+                    for (int i = 0; i < array.length(); i++) {
+                        try {
+                            Object item = array.get(i);
+                            if (item instanceof Double) {
+                                list.add(((Double) item).floatValue());
+                            } else {
+                                list.add(array.get(i));
+                            }
+                        } catch (JSONException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                    bundle.putSerializable(key.toLowerCase(), list);
+                } else if (obj instanceof JSONObject) {
+                    Bundle dictionary = new Bundle();
+                    setOptionsOnBundle((JSONObject) obj, dictionary);
+                    bundle.putBundle(key.toLowerCase(), dictionary);
+                }
+            }
+        }
+    }
+
     public static JSONArray createEventArgs(String eventName, JSONObject arg) {
         JSONArray args = new JSONArray();
         args.put(eventName);
@@ -35,6 +86,13 @@ public class Marshal {
         return args;
     }
 
+    public static JSONArray createEventArgs(String eventName, JSONArray arg) {
+        JSONArray args = new JSONArray();
+        args.put(eventName);
+        args.put(arg);
+        return args;
+    }
+
     public static JSONArray createEventArgs(String eventName, int arg) {
         JSONArray args = new JSONArray();
         args.put(eventName);
@@ -55,6 +113,26 @@ public class Marshal {
         return result;
     }
 
+    /**
+     * Creates a result whose payload is passed to JS as an ArrayBuffer. Used for the binary result
+     * encoding, the buffer already contains the event type.
+     */
+    public static PluginResult createOkResult(byte[] binaryArgs) {
+        PluginResult result = new PluginResult(PluginResult.Status.OK, binaryArgs);
+        result.setKeepCallback(true);
+        return result;
+    }
+
+    /**
+     * Creates a result from already encoded event args, e.g. written by the JsonResultWriter. The
+     * json is passed to JS as is, without being parsed into a JSONArray first.
+     */
+    public static PluginResult createOkResultFromJson(String encodedArgs) {
+        PluginResult result = new EncodedJsonResult(encodedArgs);
+        result.setKeepCallback(true);
+        return result;
+    }
+
     public static PluginResult createFailResult(String message) {
         PluginResult result = new PluginResult(PluginResult.Status.ERROR, message);
         result.setKeepCallback(true);
@@ -91,6 +169,29 @@ public class Marshal {
         }
     }
 
+    /**
+     * Plugin result whose message is json that has been encoded beforehand. Cordova only reads the
+     * message type and the encoded message when sending the result to JS.
+     */
+    private static class EncodedJsonResult extends PluginResult {
+        private final String mEncodedMessage;
+
+        EncodedJsonResult(String encodedMessage) {
+            super(Status.OK);
+            mEncodedMessage = encodedMessage;
+        }
+
+        @Override
+        public int getMessageType() {
+            return MESSAGE_TYPE_JSON;
+        }
+
+        @Override
+        public String getMessage() {
+            return mEncodedMessage;
+        }
+    }
+
     public static void rejectRecognizedTexts(RecognizedText recognizedText, List<Long> rejectedCodeIds) {
         if (rejectedCodeIds != null && !rejectedCodeIds.isEmpty()) {
             recognizedText.setRejected(true);
@@ -0,0 +1,142 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import com.scandit.recognition.Quadrilateral;
+
+import java.util.Arrays;
+
+/**
+ * Rectifies the quadrilateral of a code in an NV21 frame into an upright NV21 image of a fixed
+ * size, for the frameRegion "rectified". The projective transform maps the unit square (extended
+ * by the margin on every side) onto the corners of the code, so the top left corner of the code
+ * ends up at the top left of the image no matter how the code was rotated or tilted.
+ *
+ * Every pixel of the image is sampled from the frame exactly once: the luminance bilinearly, the
+ * chroma of each 2x2 block from the nearest source pixel. Only the pixels under the code are read.
+ * Samples outside of the frame are clamped to its border.
+ */
+class PerspectiveWarp {
+
+    /**
+     * Copies the corners of the location in the order top left, top right, bottom right, bottom
+     * left, the location is only valid during didProcess.
+     */
+    static float[] cornersOf(Quadrilateral location) {
+        return new float[]{
+                location.top_left.x, location.top_left.y,
+                location.top_right.x, location.top_right.y,
+                location.bottom_right.x, location.bottom_right.y,
+                location.bottom_left.x, location.bottom_left.y
+        };
+    }
+
+    /**
+     * Returns the even height of a warp of the given width that keeps the aspect ratio of the
+     * corners (averaged over opposite sides).
+     */
+    static int heightForWidth(float[] corners, int warpWidth) {
+        float top = distance(corners, 0, 2);
+        float bottom = distance(corners, 6, 4);
+        float left = distance(corners, 0, 6);
+        float right = distance(corners, 2, 4);
+        if (top + bottom == 0) {
+            return warpWidth;
+        }
+        int height = Math.round(warpWidth * (left + right) / (top + bottom));
+        return Math.max(2, height & ~1);
+    }
+
+    /**
+     * Warps the corners (plus the margin relative to the size of the code) of the NV21 frame into
+     * the even sized NV21 image.
+     *
+     * @param grayscale Whether the chroma is only filled with the neutral value instead of being
+     *                  sampled.
+     * @return the image, warp if it is large enough.
+     */
+    static byte[] warpNv21(byte[] frame, int width, int height, float[] corners, float margin,
+                           int warpWidth, int warpHeight, boolean grayscale, byte[] warp) {
+        int lumaSize = warpWidth * warpHeight;
+        if (warp == null || warp.length < lumaSize * 3 / 2) {
+            warp = new byte[lumaSize * 3 / 2];
+        }
+
+        // projective map from the unit square to the corners, see Heckbert, "Fundamentals of
+        // Texture Mapping and Image Warping", 1989.
+        float x0 = corners[0], y0 = corners[1], x1 = corners[2], y1 = corners[3];
+        float x2 = corners[4], y2 = corners[5], x3 = corners[6], y3 = corners[7];
+        float sx = x0 - x1 + x2 - x3;
+        float sy = y0 - y1 + y2 - y3;
+        float g = 0;
+        float h = 0;
+        float det = (x1 - x2) * (y3 - y2) - (x3 - x2) * (y1 - y2);
+        if ((sx != 0 || sy != 0) && det != 0) {
+            g = (sx * (y3 - y2) - (x3 - x2) * sy) / det;
+            h = ((x1 - x2) * sy - sx * (y1 - y2)) / det;
+        }
+        float a = x1 - x0 + g * x1;
+        float b = x3 - x0 + h * x3;
+        float d = y1 - y0 + g * y1;
+        float e = y3 - y0 + h * y3;
+
+        // the centers of the image pixels in unit square coordinates.
+        float du = (1 + 2 * margin) / warpWidth;
+        float dv = (1 + 2 * margin) / warpHeight;
+        float u0 = -margin + du / 2;
+        float maxX = width - 1.001f;
+        float maxY = height - 1.001f;
+        int uvOffset = width * height;
+        for (int y = 0; y < warpHeight; y++) {
+            float v = -margin + dv * (y + 0.5f);
+            // numerators and denominator are linear along the row.
+            float numeratorX = a * u0 + b * v + x0;
+            float numeratorY = d * u0 + e * v + y0;
+            float denominator = g * u0 + h * v + 1;
+            boolean chromaRow = !grayscale && (y & 1) == 0;
+            int row = y * warpWidth;
+            int uvRow = lumaSize + (y >> 1) * warpWidth;
+            for (int x = 0; x < warpWidth; x++) {
+                float scale = 1 / denominator;
+                float sourceX = Math.max(0, Math.min(maxX, numeratorX * scale));
+                float sourceY = Math.max(0, Math.min(maxY, numeratorY * scale));
+                int ix = (int) sourceX;
+                int iy = (int) sourceY;
+                int fx = (int) ((sourceX - ix) * 256);
+                int fy = (int) ((sourceY - iy) * 256);
+                int index = iy * width + ix;
+                int top = (frame[index] & 0xff) * (256 - fx) + (frame[index + 1] & 0xff) * fx;
+                int bottom = (frame[index + width] & 0xff) * (256 - fx)
+                        + (frame[index + width + 1] & 0xff) * fx;
+                warp[row + x] = (byte) ((top * (256 - fy) + bottom * fy) >> 16);
+                if (chromaRow && (x & 1) == 0) {
+                    int uvIndex = uvOffset + (iy >> 1) * width + (ix & ~1);
+                    warp[uvRow + x] = frame[uvIndex];
+                    warp[uvRow + x + 1] = frame[uvIndex + 1];
+                }
+                numeratorX += a * du;
+                numeratorY += d * du;
+                denominator += g * du;
+            }
+        }
+        if (grayscale) {
+            Arrays.fill(warp, lumaSize, lumaSize * 3 / 2, (byte) 128);
+        }
+        return warp;
+    }
+
+    private static float distance(float[] corners, int from, int to) {
+        float dx = corners[to] - corners[from];
+        float dy = corners[to + 1] - corners[from + 1];
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+}
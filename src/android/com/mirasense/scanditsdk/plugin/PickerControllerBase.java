@@ -14,6 +14,7 @@ package com.mirasense.scanditsdk.plugin;
 
 
 import android.os.Bundle;
+import android.util.Log;
 
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaPlugin;
@@ -27,27 +28,68 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Base class for the picker controllers.
  */
-abstract class PickerControllerBase implements IPickerController {
+abstract class PickerControllerBase implements IPickerController, PickerResultHandler.Sink {
+
+    // The timeout as long as too few callbacks of an event finished to adapt it.
+    static final int DEFAULT_RESULT_CALLBACK_TIMEOUT_MS = 600;
+    // Timeout that adapts to the observed latencies of the callbacks, used unless the
+    // resultCallbackTimeout option is passed. It is a multiple of the p99 latency of the event,
+    // within the bounds below.
+    static final int ADAPTIVE_RESULT_CALLBACK_TIMEOUT = 0;
+    static final int ADAPTIVE_RESULT_CALLBACK_TIMEOUT_FACTOR = 3;
+    static final int MIN_ADAPTIVE_RESULT_CALLBACK_TIMEOUT_MS = 150;
+    static final int MAX_ADAPTIVE_RESULT_CALLBACK_TIMEOUT_MS = 2000;
+    static final int MIN_ADAPTIVE_RESULT_CALLBACK_SAMPLES = 20;
+
+    // The result callbacks that can be delivered pipelined, see setPipelinedEvents.
+    static final int RESULT_EVENT_DID_SCAN = 1;
+    static final int RESULT_EVENT_DID_RECOGNIZE_NEW_CODES = 1 << 1;
+    static final int RESULT_EVENT_DID_RECOGNIZE_TEXT = 1 << 2;
+
+    // How many blocking result callbacks are kept after they finished, must be a power of two.
+    private static final int RECENT_RESULT_CALLBACKS = 16;
 
     final CordovaPlugin mPlugin;
     CallbackContext mCallbackContext;
 
-    // Indicates whether a result callback (any of didScan, didRecognizeNewCodes, didRecognizeText)
-    // is in process.
-    private AtomicInteger mInFlightResultCallbackId = new AtomicInteger(0);
+    // The blocking result callback (any of didScan, didRecognizeNewCodes, didRecognizeText) that
+    // is in process, null if there is none. Only cleared by the engine thread once it woke up.
+    private final AtomicReference<ResultCallbackSlot> mInFlightResultCallback =
+            new AtomicReference<ResultCallbackSlot>();
+    // The last blocking result callbacks indexed by their callback id, kept after they finished
+    // to match decisions that arrive late to the callback they belong to.
+    private final AtomicReferenceArray<ResultCallbackSlot> mRecentBlockingResultCallbacks =
+            new AtomicReferenceArray<ResultCallbackSlot>(RECENT_RESULT_CALLBACKS);
     // The id of the last result callback (any of didScan, didRecognizeNewCodes, didRecognizeText)
     private AtomicInteger mLastResultCallbackId = new AtomicInteger(0);
     private AtomicBoolean mShouldBlockForDidScan = new AtomicBoolean(false);
-    private int mNextState = 0;
-    private final Object mSync = new Object();
+    private volatile int mResultCallbackTimeoutMs = ADAPTIVE_RESULT_CALLBACK_TIMEOUT;
+    // Set by a close that has to wait until the engine thread returned from a blocking callback.
+    private final AtomicBoolean mCloseDeferred = new AtomicBoolean(false);
+    // How often the timeout released the engine thread.
+    private final AtomicInteger mResultCallbackTimeoutCount = new AtomicInteger(0);
+    // Shared by all controllers, the full screen controller is created anew for every show().
+    static final ResultCallbackMetrics sMetrics = new ResultCallbackMetrics();
+    private volatile int mPipelinedEvents = 0;
+    // Decisions of pipelined didScan and didRecognizeText callbacks (finishDidScanCallback).
+    private final PipelinedDecisions mPipelinedScanDecisions = new PipelinedDecisions();
+    // Decisions of pipelined didRecognizeNewCodes callbacks.
+    private final PipelinedDecisions mPipelinedTrackingDecisions = new PipelinedDecisions();
+    private final EventCoalescer mEventCoalescer = new EventCoalescer(new EventCoalescer.Sink() {
+        @Override
+        public void sendPluginResult(PluginResult result) {
+            mCallbackContext.sendPluginResult(result);
+        }
+    });
 
 
     PickerControllerBase(CordovaPlugin plugin, CallbackContext callbacks) {
@@ -56,13 +98,166 @@ abstract class PickerControllerBase implements IPickerController {
     }
 
     boolean isResultCallbackInFlight() {
-        return mInFlightResultCallbackId.get() != 0;
+        return mInFlightResultCallback.get() != null;
     }
 
-    private void clearInFlightResultCallbackAndNotify() {
-        synchronized (mSync) {
-            mInFlightResultCallbackId.set(0);
-            mSync.notifyAll();
+    /**
+     * Defers closing the picker while the engine thread waits for a blocking result callback,
+     * removing the picker from within its listener would dead-lock. The engine thread calls
+     * close() again once the callback finished, was released or timed out. Closes that arrive
+     * while one is deferred are merged into it.
+     *
+     * @return whether the close was deferred, if not the caller has to close right away.
+     */
+    boolean deferCloseWhileResultCallbackInFlight() {
+        mCloseDeferred.set(true);
+        if (isResultCallbackInFlight()) {
+            return true;
+        }
+        // the engine thread returned in the meantime, unless it took over the close it is ours.
+        return !mCloseDeferred.compareAndSet(true, false);
+    }
+
+    /**
+     * Sets how long the engine thread waits at most for JS to finish a result callback, from the
+     * resultCallbackTimeout option passed to show(). ADAPTIVE_RESULT_CALLBACK_TIMEOUT adapts the
+     * timeout to the observed latencies of the callbacks instead.
+     */
+    void setResultCallbackTimeout(int timeoutMs) {
+        mResultCallbackTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * Returns how often the engine thread was released because a result callback timed out.
+     */
+    int getResultCallbackTimeoutCount() {
+        return mResultCallbackTimeoutCount.get();
+    }
+
+    /**
+     * Sets the result callbacks (combination of the RESULT_EVENT_* flags) that are delivered
+     * pipelined: the engine thread keeps processing frames instead of waiting for JS to finish
+     * them and the decisions are applied to the next result, see PipelinedDecisions. Decisions of
+     * callbacks that were still pending are dropped.
+     */
+    void setPipelinedEvents(int events) {
+        mPipelinedEvents = events;
+        mPipelinedScanDecisions.clear();
+        mPipelinedTrackingDecisions.clear();
+    }
+
+    /**
+     * Sets how the events JS doesn't have to answer are batched, from the eventBatchInterval
+     * option passed to show(), see EventCoalescer.
+     */
+    void setEventBatchInterval(int intervalMs) {
+        mEventCoalescer.setInterval(intervalMs);
+    }
+
+    /**
+     * Passes an event JS doesn't have to answer (didChangeState, didChangeProperty,
+     * didProcessFrame, didFailToValidateLicense), batched with other such events if enabled.
+     */
+    @Override
+    public void sendEvent(JSONArray args) {
+        mEventCoalescer.sendEvent(args);
+    }
+
+    /**
+     * Sends a result right away, after all the pending events. All results but the ones of
+     * sendEvent have to be sent this way to keep the order of the events.
+     */
+    void sendPluginResult(PluginResult result) {
+        mEventCoalescer.send(result);
+    }
+
+    /**
+     * Sends the cancel result once the picker has been closed, after all the pending events. The
+     * events of the closed picker that arrive afterwards are dropped.
+     */
+    void sendCancelResult() {
+        mEventCoalescer.close(Marshal.createCancel());
+    }
+
+    /**
+     * Starts a result callback of the given RESULT_EVENT_* kind.
+     *
+     * @return the id of the callback. It has to be passed to JS with the result so that JS can
+     *         pass it back with the decision, which is matched to the callback by it.
+     */
+    @Override
+    public int beginResultCallback(int event) {
+        int callbackId = mLastResultCallbackId.incrementAndGet();
+        if (callbackId == 0) {
+            // 0 is reserved for results that don't carry an id.
+            callbackId = mLastResultCallbackId.incrementAndGet();
+        }
+        if ((mPipelinedEvents & event) != 0) {
+            decisionsForEvent(event).register(callbackId);
+        }
+        return callbackId;
+    }
+
+    /**
+     * Sends the result of a callback started with beginResultCallback. Callbacks that are not
+     * pipelined block like sendPluginResultBlocking. Pipelined callbacks return right away and
+     * pass on the decisions JS made for earlier callbacks of the same kind in the meantime.
+     *
+     * @return the next state of the picker, 0 if it should not change.
+     */
+    @Override
+    public int sendResultCallback(PluginResult result, int event, int callbackId) {
+        if ((mPipelinedEvents & event) == 0) {
+            return sendPluginResultBlocking(result, event, callbackId);
+        }
+        sendPluginResult(result);
+        PipelinedDecisions.Decision decision = decisionsForEvent(event).take();
+        if (event == RESULT_EVENT_DID_RECOGNIZE_NEW_CODES) {
+            setRejectedTrackedCodeIds(decision.rejectedCodeIds);
+        } else {
+            setRejectedCodeIds(decision.rejectedCodeIds);
+        }
+        return decision.nextState;
+    }
+
+    private PipelinedDecisions decisionsForEvent(int event) {
+        return event == RESULT_EVENT_DID_RECOGNIZE_NEW_CODES
+                ? mPipelinedTrackingDecisions : mPipelinedScanDecisions;
+    }
+
+    /**
+     * Completes the blocking result callback with the given id with the decision of JS and wakes
+     * up the engine thread if it still waits for it. A decision JS passes without an id (callback
+     * id 0) completes the callback in flight, whatever its id. Decisions for callbacks that
+     * already timed out are reported as late, the ones for callbacks that were released or are
+     * unknown are dropped.
+     */
+    private void completeResultCallback(int callbackId, ResultCallbackSlot.Decision decision) {
+        ResultCallbackSlot slot;
+        if (callbackId == 0) {
+            slot = mInFlightResultCallback.get();
+            if (slot == null) {
+                return;
+            }
+        } else {
+            slot = mRecentBlockingResultCallbacks.get(callbackId & (RECENT_RESULT_CALLBACKS - 1));
+            if (slot == null || slot.callbackId != callbackId) {
+                Log.e("ScanditSDK", "Dropped the decision for unknown result callback " +
+                        callbackId + ".");
+                return;
+            }
+        }
+        if (slot.complete(decision)) {
+            sMetrics.forEvent(slot.event).record(System.nanoTime() - slot.sentAtNanos);
+            return;
+        }
+        if (slot.completeLate()) {
+            long latencyNanos = System.nanoTime() - slot.sentAtNanos;
+            sMetrics.forEvent(slot.event).recordLate(latencyNanos);
+            Log.e("ScanditSDK", "Result callback " + slot.callbackId + " was finished " +
+                    TimeUnit.NANOSECONDS.toMillis(latencyNanos) +
+                    "ms after it was sent, after the engine thread had been released. The " +
+                    "decision was dropped.");
         }
     }
 
@@ -70,7 +265,10 @@ abstract class PickerControllerBase implements IPickerController {
     public void setState(int state) {
         mShouldBlockForDidScan.set(state == PickerStateMachine.ACTIVE);
         // stop any in-flight callback when there is a state change.
-        clearInFlightResultCallbackAndNotify();
+        ResultCallbackSlot slot = mInFlightResultCallback.get();
+        if (slot != null) {
+            slot.complete(ResultCallbackSlot.RELEASED);
+        }
     }
 
     @Override
@@ -80,23 +278,46 @@ abstract class PickerControllerBase implements IPickerController {
 
     @Override
     public void finishDidScanCallback(JSONArray data) {
-        mNextState = 0;
+        int nextState = 0;
         if (data != null && data.length() > 0) {
             try {
-                mNextState = data.getInt(0);
+                nextState = data.getInt(0);
             } catch (JSONException e) {
                 e.printStackTrace();
             }
         }
-        setRejectedCodeIds(determineRejectedCodes(data, 1));
-        clearInFlightResultCallbackAndNotify();
+        int callbackId = determineCallbackId(data, 2);
+        List<Long> rejectedCodeIds = determineRejectedCodes(data, 1);
+        if (callbackId != 0
+                && mPipelinedScanDecisions.complete(callbackId, nextState, rejectedCodeIds)) {
+            return;
+        }
+        completeResultCallback(callbackId,
+                new ResultCallbackSlot.Decision(nextState, rejectedCodeIds, null));
     }
 
     @Override
     public void finishDidRecognizeNewCodesCallback(JSONArray data) {
-        setRejectedTrackedCodeIds(determineRejectedCodes(data, 0));
         setTrackedCodeStates(determineStateObjects(data, 1));
-        clearInFlightResultCallbackAndNotify();
+        int callbackId = determineCallbackId(data, 2);
+        List<Long> rejectedCodeIds = determineRejectedCodes(data, 0);
+        if (callbackId != 0
+                && mPipelinedTrackingDecisions.complete(callbackId, 0, rejectedCodeIds)) {
+            return;
+        }
+        completeResultCallback(callbackId,
+                new ResultCallbackSlot.Decision(0, null, rejectedCodeIds));
+    }
+
+    /**
+     * Reads the id JS passes back when finishing a result callback. Returns 0 if there is none,
+     * i.e. the result was sent without an id.
+     */
+    private static int determineCallbackId(JSONArray data, int dataIndex) {
+        if (data == null || data.length() <= dataIndex) {
+            return 0;
+        }
+        return data.optInt(dataIndex, 0);
     }
 
     public static Map<Long, JSONObject> determineStateObjects(JSONArray data, int dataIndex) {
@@ -145,37 +366,68 @@ abstract class PickerControllerBase implements IPickerController {
 
     protected abstract void setRejectedTrackedCodeIds(List<Long> rejectedCodeIds);
 
-    int sendPluginResultBlocking(PluginResult result) {
-        final int currentId = mLastResultCallbackId.incrementAndGet();
-        mInFlightResultCallbackId.set(currentId);
-        mNextState = 0;
+    /**
+     * Sends a result without a callback id and blocks like the other overload, it is finished by
+     * the next decision JS passes without an id.
+     */
+    int sendPluginResultBlocking(PluginResult result, int event) {
+        return sendPluginResultBlocking(result, event, 0);
+    }
 
-        try {
-            mCallbackContext.sendPluginResult(result);
-            // Very rarely it can happen that cordova does not invoke the native layer again from
-            // javascript after the callback ended. As a result the engine thread is not released.
-            // To prevent this deadlock, we release the engine thread in a delayed runnable below.
-            new ScheduledThreadPoolExecutor(1).schedule(new Runnable() {
-                @Override
-                public void run() {
-                    synchronized (mSync) {
-                        if (mInFlightResultCallbackId.get() == currentId) {
-                            mInFlightResultCallbackId.set(0);
-                            mSync.notifyAll();
-                        }
-                    }
-                }
-            }, 600, TimeUnit.MILLISECONDS);
-            synchronized (mSync) {
-                while (mInFlightResultCallbackId.get() == currentId &&
-                        mShouldBlockForDidScan.get()) {
-                    mSync.wait();
-                }
-            }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+    /**
+     * Sends the result of a callback of the given RESULT_EVENT_* kind and blocks the engine thread
+     * until JS finished it, the picker state changed or the timeout elapsed.
+     *
+     * @param callbackId The id from beginResultCallback the result carries, 0 if it has none.
+     * @return the next state of the picker, 0 if it should not change.
+     */
+    int sendPluginResultBlocking(PluginResult result, int event, int callbackId) {
+        ResultCallbackSlot slot = new ResultCallbackSlot(callbackId, event);
+        mRecentBlockingResultCallbacks.set(callbackId & (RECENT_RESULT_CALLBACKS - 1), slot);
+        mInFlightResultCallback.set(slot);
+        sendPluginResult(result);
+        // Very rarely it can happen that cordova does not invoke the native layer again from
+        // javascript after the callback ended. As a result the engine thread is not released.
+        // To prevent this deadlock, the engine thread only waits until the timeout.
+        int timeoutMs = resultCallbackTimeoutMs(event);
+        ResultCallbackSlot.Decision decision = slot.await(
+                TimeUnit.MILLISECONDS.toNanos(timeoutMs), mShouldBlockForDidScan);
+        mInFlightResultCallback.compareAndSet(slot, null);
+
+        if (decision == ResultCallbackSlot.TIMED_OUT) {
+            sMetrics.forEvent(event).recordTimeout();
+            Log.e("ScanditSDK", "Result callback was not finished within " + timeoutMs +
+                    "ms, released the engine thread (" +
+                    mResultCallbackTimeoutCount.incrementAndGet() + " times).");
+        }
+        if (decision.rejectedCodeIds != null) {
+            setRejectedCodeIds(decision.rejectedCodeIds);
         }
+        if (decision.rejectedTrackedCodeIds != null) {
+            setRejectedTrackedCodeIds(decision.rejectedTrackedCodeIds);
+        }
+        if (mCloseDeferred.compareAndSet(true, false)) {
+            // JS closed the picker while the callback was in flight.
+            close();
+        }
+        return decision.nextState;
+    }
 
-        return mNextState;
+    private int resultCallbackTimeoutMs(int event) {
+        int timeoutMs = mResultCallbackTimeoutMs;
+        if (timeoutMs != ADAPTIVE_RESULT_CALLBACK_TIMEOUT) {
+            return timeoutMs;
+        }
+        // Callbacks that are dropped by cordova are never finished and don't add to the latencies,
+        // they only cost the (short) timeout. Slow handlers that are finished late do, so the
+        // timeout grows until they fit in.
+        ResultCallbackMetrics.Histogram latencies = sMetrics.forEvent(event);
+        if (latencies.getCount() < MIN_ADAPTIVE_RESULT_CALLBACK_SAMPLES) {
+            return DEFAULT_RESULT_CALLBACK_TIMEOUT_MS;
+        }
+        int adaptiveMs = (int) Math.ceil(
+                ADAPTIVE_RESULT_CALLBACK_TIMEOUT_FACTOR * latencies.getPercentileMs(0.99));
+        return Math.max(MIN_ADAPTIVE_RESULT_CALLBACK_TIMEOUT_MS,
+                Math.min(MAX_ADAPTIVE_RESULT_CALLBACK_TIMEOUT_MS, adaptiveMs));
     }
 }
@@ -0,0 +1,181 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.graphics.Point;
+
+import com.scandit.barcodepicker.BarcodePicker;
+import com.scandit.base.system.SbSystemUtils;
+import com.scandit.recognition.Barcode;
+import com.scandit.recognition.Quadrilateral;
+import com.scandit.recognition.TrackedBarcode;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * Affine transform from camera frame coordinates (the code locations) to picker coordinates in dp
+ * (the converted locations). The picker only maps the preview onto the view by scaling, cropping
+ * and rotating in steps of 90 degrees, so the whole mapping is captured by probing
+ * convertPointToPickerCoordinates with three points instead of calling it for every corner.
+ *
+ * Instances are immutable, use a {@link Cache} to get the transform that matches the current
+ * layout of a picker.
+ */
+class PickerCoordinateTransform {
+
+    // Used to probe the picker as long as no frame has been processed yet.
+    private static final int DEFAULT_PROBE_SIZE = 1024;
+
+    // x' = mM00 * x + mM01 * y + mM02, y' = mM10 * x + mM11 * y + mM12, all in dp.
+    private final float mM00, mM01, mM02;
+    private final float mM10, mM11, mM12;
+    private final float mDensity;
+
+
+    private PickerCoordinateTransform(float m00, float m01, float m02,
+                                      float m10, float m11, float m12, float density) {
+        mM00 = m00;
+        mM01 = m01;
+        mM02 = m02;
+        mM10 = m10;
+        mM11 = m11;
+        mM12 = m12;
+        mDensity = density;
+    }
+
+    static PickerCoordinateTransform probe(BarcodePicker picker, int frameWidth, int frameHeight) {
+        float density = picker.getContext().getResources().getDisplayMetrics().density;
+        Point origin = picker.convertPointToPickerCoordinates(new Point(0, 0));
+        Point right = picker.convertPointToPickerCoordinates(new Point(frameWidth, 0));
+        Point down = picker.convertPointToPickerCoordinates(new Point(0, frameHeight));
+        return new PickerCoordinateTransform(
+                (right.x - origin.x) / (frameWidth * density),
+                (down.x - origin.x) / (frameHeight * density),
+                origin.x / density,
+                (right.y - origin.y) / (frameWidth * density),
+                (down.y - origin.y) / (frameHeight * density),
+                origin.y / density,
+                density);
+    }
+
+    /**
+     * Converts the locations of all the codes.
+     *
+     * @return the converted corners of the i-th code at [8 * i, 8 * i + 8) in the order topLeft,
+     *         topRight, bottomLeft, bottomRight as x, y pairs.
+     */
+    int[] convertLocations(List<? extends Barcode> codes) {
+        int[] corners = new int[codes.size() * 8];
+        for (int i = 0, count = codes.size(); i < count; i++) {
+            convert(codes.get(i).getLocation(), corners, i * 8);
+        }
+        return corners;
+    }
+
+    /**
+     * Same as {@link #convertLocations(List)} for the predicted locations. The corners of codes
+     * that are not tracked are left at 0.
+     */
+    int[] convertPredictedLocations(List<? extends Barcode> codes) {
+        int[] corners = new int[codes.size() * 8];
+        for (int i = 0, count = codes.size(); i < count; i++) {
+            Barcode code = codes.get(i);
+            if (code instanceof TrackedBarcode) {
+                convert(((TrackedBarcode) code).getPredictedLocation(), corners, i * 8);
+            }
+        }
+        return corners;
+    }
+
+    private void convert(Quadrilateral quadrilateral, int[] corners, int offset) {
+        convert(quadrilateral.top_left, corners, offset);
+        convert(quadrilateral.top_right, corners, offset + 2);
+        convert(quadrilateral.bottom_left, corners, offset + 4);
+        convert(quadrilateral.bottom_right, corners, offset + 6);
+    }
+
+    private void convert(Point point, int[] corners, int offset) {
+        corners[offset] = (int) (mM00 * point.x + mM01 * point.y + mM02);
+        corners[offset + 1] = (int) (mM10 * point.x + mM11 * point.y + mM12);
+    }
+
+    /**
+     * The transform as passed to Scandit.CoordinateTransform on the JS side.
+     */
+    JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        try {
+            JSONArray matrix = new JSONArray();
+            matrix.put((double) mM00);
+            matrix.put((double) mM01);
+            matrix.put((double) mM02);
+            matrix.put((double) mM10);
+            matrix.put((double) mM11);
+            matrix.put((double) mM12);
+            json.put("matrix", matrix);
+            json.put("density", (double) mDensity);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return json;
+    }
+
+    /**
+     * Keeps the transform of a picker and only probes the picker again when its size, the display
+     * rotation, the display density or the camera resolution changed.
+     */
+    static class Cache {
+
+        private PickerCoordinateTransform mTransform;
+        private BarcodePicker mPicker;
+        private int mPickerWidth;
+        private int mPickerHeight;
+        private int mRotation;
+        private float mDensity;
+        private int mFrameWidth = DEFAULT_PROBE_SIZE;
+        private int mFrameHeight = DEFAULT_PROBE_SIZE;
+
+
+        /**
+         * Called with the size of every processed frame, i.e. the camera resolution.
+         */
+        synchronized void setFrameSize(int width, int height) {
+            if (width <= 0 || height <= 0) return;
+            if (width != mFrameWidth || height != mFrameHeight) {
+                mFrameWidth = width;
+                mFrameHeight = height;
+                mTransform = null;
+            }
+        }
+
+        synchronized PickerCoordinateTransform get(BarcodePicker picker) {
+            int width = picker.getWidth();
+            int height = picker.getHeight();
+            int rotation = SbSystemUtils.getDisplayRotation(picker.getContext());
+            float density = picker.getContext().getResources().getDisplayMetrics().density;
+            if (mTransform == null || picker != mPicker || width != mPickerWidth
+                    || height != mPickerHeight || rotation != mRotation || density != mDensity) {
+                mTransform = probe(picker, mFrameWidth, mFrameHeight);
+                mPicker = picker;
+                mPickerWidth = width;
+                mPickerHeight = height;
+                mRotation = rotation;
+                mDensity = density;
+            }
+            return mTransform;
+        }
+    }
+}
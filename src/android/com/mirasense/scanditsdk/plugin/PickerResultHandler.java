@@ -0,0 +1,200 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.os.Bundle;
+
+import com.scandit.barcodepicker.BarcodePicker;
+import com.scandit.barcodepicker.ScanSession;
+import com.scandit.recognition.Barcode;
+import com.scandit.recognition.TrackedBarcode;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Passes the results of didScan and didProcess to the result callbacks: marshals the sessions and
+ * the newly tracked codes, diffs the MatrixScan codes of consecutive frames and exports the frames
+ * for didProcessFrame. Shared by the sub view picker, which passes the results to its controller,
+ * and the full screen picker activity, which relays them through ResultRelay. Knows nothing about
+ * the picker views, the caller decides when results are passed and what happens to the picker
+ * afterwards.
+ *
+ * didScan and didProcess are called on the engine thread, the rest from any thread.
+ */
+class PickerResultHandler {
+
+    /**
+     * Where the results go, see the methods of the same name in PickerControllerBase.
+     */
+    interface Sink {
+        int beginResultCallback(int event);
+
+        int sendResultCallback(PluginResult result, int event, int callbackId);
+
+        void sendEvent(JSONArray args);
+    }
+
+    private final Sink mSink;
+    private volatile ResultFormat mResultFormat = new ResultFormat();
+    private volatile boolean mShouldPassBarcodeFrame = false;
+    private final PickerCoordinateTransform.Cache mCoordinateTransform =
+            new PickerCoordinateTransform.Cache();
+    private final SessionDeltaTracker mSessionDeltaTracker = new SessionDeltaTracker();
+    private final SymbologyTable mSymbologyTable = new SymbologyTable();
+    private final TrackedCodeDiff mTrackedCodeDiff = new TrackedCodeDiff();
+    private final FrameExporter mFrameExporter;
+    private List<Long> mRejectedTrackedCodeIds;
+
+
+    PickerResultHandler(final Sink sink) {
+        mSink = sink;
+        mFrameExporter = new FrameExporter(new FrameExporter.Listener() {
+            @Override
+            public void onFrameExported(JSONObject frame) {
+                sink.sendEvent(Marshal.createEventArgs(ScanditSDK.DID_PROCESS_FRAME, frame));
+            }
+        });
+    }
+
+    /**
+     * Starts over for a new picker: the sessions are delivered in full again, symbology ids are
+     * announced again and all the codes of the next MatrixScan frame are new.
+     */
+    void reset(ResultFormat resultFormat, boolean shouldPassBarcodeFrame) {
+        mResultFormat = resultFormat;
+        mShouldPassBarcodeFrame = shouldPassBarcodeFrame;
+        mSessionDeltaTracker.invalidate();
+        mSymbologyTable.reset();
+        mTrackedCodeDiff.clear();
+    }
+
+    void updateResultFormat(Bundle options) {
+        mResultFormat = mResultFormat.withOptions(options);
+    }
+
+    /**
+     * Returns the exporter of the didProcessFrame images, to set its format, policy and store.
+     */
+    FrameExporter getFrameExporter() {
+        return mFrameExporter;
+    }
+
+    PickerCoordinateTransform getCoordinateTransform(BarcodePicker picker) {
+        return mCoordinateTransform.get(picker);
+    }
+
+    void setRejectedTrackedCodeIds(List<Long> rejectedCodeIds) {
+        mRejectedTrackedCodeIds = rejectedCodeIds;
+    }
+
+    /**
+     * Forgets the tracked codes of the previous frame, e.g. because MatrixScan was switched on or
+     * off.
+     */
+    void clearTrackedCodes() {
+        mTrackedCodeDiff.clear();
+    }
+
+    /**
+     * Passes the session to the didScan callback.
+     *
+     * @return the state JS asked the picker to switch to.
+     */
+    int didScan(ScanSession session, BarcodePicker picker) {
+        int callbackId = mSink.beginResultCallback(PickerControllerBase.RESULT_EVENT_DID_SCAN);
+        PluginResult result;
+        PickerCoordinateTransform transform = mCoordinateTransform.get(picker);
+        if (mResultFormat.isBinary()) {
+            result = Marshal.createOkResult(ResultRelay.binaryForSession(session, transform,
+                    mResultFormat, mSessionDeltaTracker, mSymbologyTable, callbackId));
+        } else {
+            result = Marshal.createOkResultFromJson(ResultRelay.jsonForSession(session, transform,
+                    mResultFormat, mSessionDeltaTracker, mSymbologyTable, callbackId));
+        }
+        return mSink.sendResultCallback(result, PickerControllerBase.RESULT_EVENT_DID_SCAN,
+                callbackId);
+    }
+
+    /**
+     * Puts the session into the bundle the full screen picker activity finishes with in
+     * non-continuous mode, as binaryArgs or jsonString. The result carries no callback id.
+     */
+    void putSession(Bundle bundle, ScanSession session, BarcodePicker picker) {
+        PickerCoordinateTransform transform = mCoordinateTransform.get(picker);
+        if (mResultFormat.isBinary()) {
+            bundle.putByteArray("binaryArgs", ResultRelay.binaryForSession(session, transform,
+                    mResultFormat, mSessionDeltaTracker, mSymbologyTable, 0));
+        } else {
+            bundle.putString("jsonString", ResultRelay.jsonForSession(session, transform,
+                    mResultFormat, mSessionDeltaTracker, mSymbologyTable, 0));
+        }
+    }
+
+    /**
+     * Passes the codes that started to be tracked to the didRecognizeNewCodes callback in
+     * MatrixScan, and the frames with new codes to didProcessFrame if the app asked for them.
+     */
+    void didProcess(byte[] bytes, int width, int height, ScanSession session,
+                    boolean matrixScan, BarcodePicker picker) {
+        mCoordinateTransform.setFrameSize(width, height);
+        if (!matrixScan) {
+            // Call didProcessFrame only when new codes have been recognized.
+            if (session.getNewlyRecognizedCodes().size() > 0) {
+                returnFrameBufferIfWanted(bytes, width, height, session.getNewlyRecognizedCodes());
+            }
+            return;
+        }
+
+        // If tracked codes are null for whatever reason, there is nothing more to do.
+        if (session.getTrackedCodes() == null) {
+            return;
+        }
+
+        Map<Long, TrackedBarcode> trackedCodes = session.getTrackedCodes();
+        // reused by the next frame, the results below are created before returning.
+        mTrackedCodeDiff.update(trackedCodes);
+        List<TrackedBarcode> newlyTrackedCodes = mTrackedCodeDiff.getNewlyTrackedCodes();
+
+        if (newlyTrackedCodes.size() > 0) {
+            int callbackId = mSink.beginResultCallback(
+                    PickerControllerBase.RESULT_EVENT_DID_RECOGNIZE_NEW_CODES);
+            PluginResult result;
+            PickerCoordinateTransform transform = mCoordinateTransform.get(picker);
+            if (mResultFormat.isBinary()) {
+                result = Marshal.createOkResult(ResultRelay.binaryForTrackedCodes(newlyTrackedCodes,
+                        transform, mResultFormat, mSymbologyTable, callbackId));
+            } else {
+                result = Marshal.createOkResultFromJson(ResultRelay.jsonForTrackedCodes(
+                        newlyTrackedCodes, transform, mResultFormat, mSymbologyTable, callbackId));
+            }
+            mSink.sendResultCallback(result,
+                    PickerControllerBase.RESULT_EVENT_DID_RECOGNIZE_NEW_CODES, callbackId);
+            Marshal.rejectTrackedCodes(session, mRejectedTrackedCodeIds);
+
+            // Call didProcessFrame only when new codes have started to be tracked.
+            returnFrameBufferIfWanted(bytes, width, height, newlyTrackedCodes);
+        }
+    }
+
+    private void returnFrameBufferIfWanted(byte[] bytes, int width, int height,
+                                           List<? extends Barcode> codes) {
+        if (mShouldPassBarcodeFrame) {
+            // encoded on a background thread, didProcessFrame is passed once it is done.
+            mFrameExporter.export(bytes, width, height, codes);
+        }
+    }
+}
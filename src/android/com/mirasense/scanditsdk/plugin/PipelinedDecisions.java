@@ -0,0 +1,100 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the decisions JS makes for result callbacks that are delivered pipelined (pipelinedEvents
+ * option of show()). The engine thread doesn't wait for these callbacks to be finished, instead the
+ * decisions that arrived in the meantime are applied when the next result of the same kind is
+ * delivered.
+ *
+ * Decisions are matched to their callbacks through the callback id JS passes back, so decisions
+ * that arrive late or out of order are still applied: the next state of the most recent callback
+ * wins, the rejected code ids of all the callbacks are accumulated.
+ */
+class PipelinedDecisions {
+
+    static class Decision {
+        // 0 if the state should not change.
+        final int nextState;
+        final List<Long> rejectedCodeIds;
+
+        Decision(int nextState, List<Long> rejectedCodeIds) {
+            this.nextState = nextState;
+            this.rejectedCodeIds = rejectedCodeIds;
+        }
+    }
+
+    // Callbacks that are older are forgotten, their decisions are dropped.
+    private static final int MAX_PENDING_CALLBACKS = 64;
+
+    private final ArrayDeque<Integer> mPendingCallbackIds = new ArrayDeque<Integer>();
+    private int mNextState = 0;
+    private int mNextStateCallbackId = 0;
+    private List<Long> mRejectedCodeIds = new ArrayList<Long>();
+
+
+    /**
+     * Registers a callback that has been sent to JS and whose decision is pending.
+     */
+    synchronized void register(int callbackId) {
+        if (mPendingCallbackIds.size() == MAX_PENDING_CALLBACKS) {
+            Log.e("ScanditSDK", "Result callback " + mPendingCallbackIds.removeFirst() +
+                    " was not finished, its decision will be dropped.");
+        }
+        mPendingCallbackIds.addLast(callbackId);
+    }
+
+    /**
+     * Stores the decision for a pending callback.
+     *
+     * @return false if the callback is not pending, e.g. because it was already finished.
+     */
+    synchronized boolean complete(int callbackId, int nextState, List<Long> rejectedCodeIds) {
+        if (!mPendingCallbackIds.remove(callbackId)) {
+            return false;
+        }
+        if (nextState != 0 && callbackId > mNextStateCallbackId) {
+            mNextState = nextState;
+            mNextStateCallbackId = callbackId;
+        }
+        mRejectedCodeIds.addAll(rejectedCodeIds);
+        return true;
+    }
+
+    /**
+     * Returns the decisions that arrived since the last call.
+     */
+    synchronized Decision take() {
+        Decision decision = new Decision(mNextState,
+                mRejectedCodeIds.isEmpty() ? Collections.<Long>emptyList() : mRejectedCodeIds);
+        mNextState = 0;
+        if (!mRejectedCodeIds.isEmpty()) {
+            mRejectedCodeIds = new ArrayList<Long>();
+        }
+        return decision;
+    }
+
+    synchronized void clear() {
+        mPendingCallbackIds.clear();
+        mNextState = 0;
+        mNextStateCallbackId = 0;
+        mRejectedCodeIds = new ArrayList<Long>();
+    }
+}
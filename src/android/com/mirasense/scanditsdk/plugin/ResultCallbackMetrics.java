@@ -0,0 +1,204 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Round trip latencies of the blocking result callbacks, from sending the result to JS until JS
+ * finished the callback (finishDidScanCallback, finishDidRecognizeNewCodesCallback), i.e. how long
+ * the JS handlers hold the engine thread. Also counts how often the engine thread was released
+ * because a callback timed out and how many of those callbacks JS finished later on. The latencies
+ * of the late callbacks are recorded as well, they drive the adaptive timeout up.
+ *
+ * The latencies are kept per event in histograms with fixed buckets, so recording never allocates
+ * and only takes a few atomic increments. Percentiles are estimated from the buckets. Returned to
+ * JS by the getMetrics command as:
+ *
+ *   { didScan: { count, timeouts, lateDecisions, p50, p99, max, buckets: [[upperBoundMs, count], ...] },
+ *     didRecognizeNewCodes: {...}, didRecognizeText: {...} }
+ *
+ * with all times in ms. The upper bound of the last bucket is -1 (unbounded).
+ */
+class ResultCallbackMetrics {
+
+    // Upper bounds of the buckets in ms, the last bucket collects all the longer latencies.
+    static final int[] BUCKET_BOUNDS_MS = {
+            1, 2, 5, 10, 20, 50, 100, 150, 200, 300, 400, 500, 600, 800, 1000, 2000, 5000
+    };
+
+    static class Histogram {
+
+        private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+        private final AtomicLong mMaxNanos = new AtomicLong(0);
+        private final AtomicLong mTimeouts = new AtomicLong(0);
+        private final AtomicLong mLateDecisions = new AtomicLong(0);
+
+
+        void record(long latencyNanos) {
+            mCounts.incrementAndGet(bucketForLatency(latencyNanos));
+            long max;
+            while (latencyNanos > (max = mMaxNanos.get())) {
+                if (mMaxNanos.compareAndSet(max, latencyNanos)) {
+                    break;
+                }
+            }
+        }
+
+        void recordTimeout() {
+            mTimeouts.incrementAndGet();
+        }
+
+        /**
+         * Records a callback that JS finished after it had timed out.
+         */
+        void recordLate(long latencyNanos) {
+            record(latencyNanos);
+            mLateDecisions.incrementAndGet();
+        }
+
+        long getCount() {
+            long count = 0;
+            for (int i = 0; i < mCounts.length(); i++) {
+                count += mCounts.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * Estimates the latency in ms below which the given fraction of the callbacks finished,
+         * interpolating linearly within the bucket it falls into. Returns 0 if nothing has been
+         * recorded.
+         */
+        double getPercentileMs(double fraction) {
+            // called for every blocking callback by the adaptive timeout, hence the counts are
+            // read in place instead of taking a snapshot. Concurrent updates at most shift the
+            // estimate by a bucket, if the rank is not reached anymore the max is returned.
+            long total = getCount();
+            if (total == 0) {
+                return 0;
+            }
+            double maxMs = nanosToMs(mMaxNanos.get());
+            double rank = fraction * total;
+            long below = 0;
+            for (int i = 0; i < mCounts.length(); i++) {
+                long count = mCounts.get(i);
+                if (count > 0 && below + count >= rank) {
+                    double lower = i == 0 ? 0 : BUCKET_BOUNDS_MS[i - 1];
+                    double upper = i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : maxMs;
+                    double estimate = lower + (upper - lower) * (rank - below) / count;
+                    return Math.min(estimate, maxMs);
+                }
+                below += count;
+            }
+            return maxMs;
+        }
+
+        void reset() {
+            for (int i = 0; i < mCounts.length(); i++) {
+                mCounts.set(i, 0);
+            }
+            mMaxNanos.set(0);
+            mTimeouts.set(0);
+            mLateDecisions.set(0);
+        }
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            try {
+                long[] counts = snapshot();
+                JSONArray buckets = new JSONArray();
+                long total = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    JSONArray bucket = new JSONArray();
+                    bucket.put(i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : -1);
+                    bucket.put(counts[i]);
+                    buckets.put(bucket);
+                    total += counts[i];
+                }
+                json.put("count", total);
+                json.put("timeouts", mTimeouts.get());
+                json.put("lateDecisions", mLateDecisions.get());
+                json.put("p50", getPercentileMs(0.5));
+                json.put("p99", getPercentileMs(0.99));
+                json.put("max", nanosToMs(mMaxNanos.get()));
+                json.put("buckets", buckets);
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+            return json;
+        }
+
+        private long[] snapshot() {
+            long[] counts = new long[mCounts.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = mCounts.get(i);
+            }
+            return counts;
+        }
+
+        private static int bucketForLatency(long latencyNanos) {
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+            int i = 0;
+            // bucket i holds the latencies in [BUCKET_BOUNDS_MS[i - 1], BUCKET_BOUNDS_MS[i]) ms.
+            while (i < BUCKET_BOUNDS_MS.length && latencyMs >= BUCKET_BOUNDS_MS[i]) {
+                i++;
+            }
+            return i;
+        }
+
+        private static double nanosToMs(long nanos) {
+            return nanos / 1000000.0;
+        }
+    }
+
+    private final Histogram mDidScan = new Histogram();
+    private final Histogram mDidRecognizeNewCodes = new Histogram();
+    private final Histogram mDidRecognizeText = new Histogram();
+
+
+    /**
+     * Returns the histogram of the given PickerControllerBase.RESULT_EVENT_* kind.
+     */
+    Histogram forEvent(int event) {
+        if (event == PickerControllerBase.RESULT_EVENT_DID_RECOGNIZE_NEW_CODES) {
+            return mDidRecognizeNewCodes;
+        } else if (event == PickerControllerBase.RESULT_EVENT_DID_RECOGNIZE_TEXT) {
+            return mDidRecognizeText;
+        }
+        return mDidScan;
+    }
+
+    void reset() {
+        mDidScan.reset();
+        mDidRecognizeNewCodes.reset();
+        mDidRecognizeText.reset();
+    }
+
+    JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        try {
+            json.put("didScan", mDidScan.toJson());
+            json.put("didRecognizeNewCodes", mDidRecognizeNewCodes.toJson());
+            json.put("didRecognizeText", mDidRecognizeText.toJson());
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return json;
+    }
+}
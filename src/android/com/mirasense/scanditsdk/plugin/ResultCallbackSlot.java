@@ -0,0 +1,116 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Completion handshake of a single blocking result callback between the engine thread, which sent
+ * the result and waits for the decision of JS, and the threads that finish, release or time out
+ * the callback.
+ *
+ * The outcome is published with a single compare-and-set, so exactly one of them wins and the
+ * engine thread wakes up once with a consistent decision. The engine thread parks instead of
+ * waiting on a monitor, nobody has to hold a lock to finish the callback.
+ */
+class ResultCallbackSlot {
+
+    static class Decision {
+        // 0 if the state should not change.
+        final int nextState;
+        // Rejected code ids of didScan and didRecognizeText, null if not part of the decision.
+        final List<Long> rejectedCodeIds;
+        // Rejected tracked code ids of didRecognizeNewCodes, null if not part of the decision.
+        final List<Long> rejectedTrackedCodeIds;
+
+        Decision(int nextState, List<Long> rejectedCodeIds, List<Long> rejectedTrackedCodeIds) {
+            this.nextState = nextState;
+            this.rejectedCodeIds = rejectedCodeIds;
+            this.rejectedTrackedCodeIds = rejectedTrackedCodeIds;
+        }
+    }
+
+    // The callback was released without a decision, e.g. because the picker state changed.
+    static final Decision RELEASED = new Decision(0, null, null);
+    // JS didn't finish the callback in time.
+    static final Decision TIMED_OUT = new Decision(0, null, null);
+    // The engine thread doesn't wait for the callback, e.g. because the picker is not active.
+    static final Decision NOT_WAITING = new Decision(0, null, null);
+    // JS finished the callback after it had timed out, the decision was dropped.
+    static final Decision FINISHED_LATE = new Decision(0, null, null);
+
+    final int callbackId;
+    // The PickerControllerBase.RESULT_EVENT_* kind of the callback.
+    final int event;
+    // System.nanoTime() when the slot was created, right before the result was sent.
+    final long sentAtNanos;
+    private final Thread mWaiter;
+    private final AtomicReference<Decision> mDecision = new AtomicReference<Decision>();
+
+
+    /**
+     * Creates the slot for a callback, must be called on the thread that waits for it.
+     */
+    ResultCallbackSlot(int callbackId, int event) {
+        this.callbackId = callbackId;
+        this.event = event;
+        sentAtNanos = System.nanoTime();
+        mWaiter = Thread.currentThread();
+    }
+
+    /**
+     * Publishes the decision of JS and wakes up the engine thread.
+     *
+     * @return false if the callback already had an outcome, the decision is not applied then.
+     */
+    boolean complete(Decision decision) {
+        if (!mDecision.compareAndSet(null, decision)) {
+            return false;
+        }
+        LockSupport.unpark(mWaiter);
+        return true;
+    }
+
+    /**
+     * Records that JS finished the callback after it had timed out.
+     *
+     * @return false if the callback did not time out or its late finish was already recorded.
+     */
+    boolean completeLate() {
+        return mDecision.compareAndSet(TIMED_OUT, FINISHED_LATE);
+    }
+
+    /**
+     * Parks the calling (engine) thread until the callback has an outcome, the timeout elapsed or
+     * shouldWait becomes false.
+     *
+     * @return the decision of JS or one of RELEASED, TIMED_OUT and NOT_WAITING.
+     */
+    Decision await(long timeoutNanos, AtomicBoolean shouldWait) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        Decision decision;
+        while ((decision = mDecision.get()) == null) {
+            long remaining = deadline - System.nanoTime();
+            if (!shouldWait.get() || Thread.currentThread().isInterrupted()) {
+                mDecision.compareAndSet(null, NOT_WAITING);
+            } else if (remaining <= 0) {
+                mDecision.compareAndSet(null, TIMED_OUT);
+            } else {
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+        return decision;
+    }
+}
@@ -0,0 +1,97 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.os.Bundle;
+
+/**
+ * Describes how barcode results (didScan, didRecognizeNewCodes) are marshalled before they are
+ * handed to the JS layer. The format is chosen per picker through the options passed to show().
+ * Instances are immutable, updating the format at runtime replaces the instance used by the picker.
+ */
+class ResultFormat {
+
+    public final static int ENCODING_JSON = 0;
+    public final static int ENCODING_BINARY = 1;
+
+    // How the raw data of codes is passed with the json encoding. The binary encoding always
+    // passes the raw bytes.
+    public final static int RAW_DATA_ARRAY = 0;
+    public final static int RAW_DATA_BASE64 = 1;
+
+    // The optional fields of a marshalled code. Data, symbology, uniqueId and the recognized flag
+    // are always passed. Must match values of resultdecoder.js
+    public final static int FIELD_LOCATION = 1;
+    public final static int FIELD_CONVERTED_LOCATION = 1 << 1;
+    public final static int FIELD_PREDICTED_LOCATION = 1 << 2;
+    public final static int FIELD_CONVERTED_PREDICTED_LOCATION = 1 << 3;
+    public final static int FIELD_RAW_DATA = 1 << 4;
+    public final static int FIELD_COMPOSITE_FLAG = 1 << 5;
+    public final static int FIELD_GS1_DATA_CARRIER = 1 << 6;
+    public final static int FIELDS_ALL = (1 << 7) - 1;
+
+    private int mEncoding = ENCODING_JSON;
+    private int mRawDataEncoding = RAW_DATA_ARRAY;
+    private int mFields = FIELDS_ALL;
+    // Whether didScan only passes the changes of allRecognizedCodes, see SessionDeltaTracker.
+    private boolean mIncrementalSession = false;
+    // Whether codes carry the symbologyId instead of the symbology name, see SymbologyTable.
+    private boolean mSymbologyIds = false;
+
+
+    static ResultFormat fromOptions(Bundle options) {
+        return new ResultFormat().withOptions(options);
+    }
+
+    /**
+     * Returns a copy of this format in which all the properties present in the options (e.g. from
+     * updateOverlay or applySettings) are replaced.
+     */
+    ResultFormat withOptions(Bundle options) {
+        ResultFormat format = new ResultFormat();
+        format.mEncoding = DeliveryParamParser.getResultEncoding(options, mEncoding);
+        format.mRawDataEncoding = DeliveryParamParser.getRawDataEncoding(options, mRawDataEncoding);
+        format.mFields = DeliveryParamParser.getCodeFields(options, mFields);
+        format.mIncrementalSession = DeliveryParamParser.isIncrementalSessionDelivery(options,
+                mIncrementalSession);
+        format.mSymbologyIds = DeliveryParamParser.isSymbologyIdEncoding(options, mSymbologyIds);
+        return format;
+    }
+
+    public int getEncoding() {
+        return mEncoding;
+    }
+
+    public boolean isBinary() {
+        return mEncoding == ENCODING_BINARY;
+    }
+
+    public int getRawDataEncoding() {
+        return mRawDataEncoding;
+    }
+
+    public int getFields() {
+        return mFields;
+    }
+
+    public boolean hasField(int field) {
+        return (mFields & field) != 0;
+    }
+
+    public boolean isIncrementalSession() {
+        return mIncrementalSession;
+    }
+
+    public boolean isSymbologyIds() {
+        return mSymbologyIds;
+    }
+}
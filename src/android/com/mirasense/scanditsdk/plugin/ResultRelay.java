@@ -12,12 +12,10 @@
 
 package com.mirasense.scanditsdk.plugin;
 
-import android.os.Bundle;
-
-import android.content.Context;
 import android.graphics.Point;
+import android.graphics.Rect;
+import android.util.Base64;
 
-import com.scandit.barcodepicker.BarcodePicker;
 import com.scandit.barcodepicker.PropertyChangeListener;
 import com.scandit.barcodepicker.ScanSession;
 import com.scandit.barcodepicker.ocr.RecognizedText;
@@ -25,6 +23,7 @@ import com.scandit.recognition.Barcode;
 import com.scandit.recognition.Quadrilateral;
 import com.scandit.recognition.TrackedBarcode;
 
+import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -39,13 +38,31 @@ public class ResultRelay {
         mCallback = callback;
     }
     
-    public static int relayResult(Bundle bundle) {
+    /**
+     * Hands a result from the full-screen picker activity directly to the controller, which lives
+     * in the same process. Only results that finish the activity go through the intent instead.
+     *
+     * @param waitForResult Whether to block until the JS callback finished.
+     * @return the state the picker should switch to, only meaningful when waiting for the result.
+     */
+    public static int relayResult(PluginResult result, boolean waitForResult) {
         if (mCallback != null) {
-            return mCallback.onRelayedResult(bundle);
+            return mCallback.onRelayedResult(result, waitForResult);
         }
         return 0;
     }
 
+    /**
+     * Hands an event JS doesn't have to answer (didChangeState, didChangeProperty, ...) from the
+     * full-screen picker activity to the controller, which batches it with the other pending
+     * events if the app asked for it.
+     */
+    public static void relayEvent(JSONArray args) {
+        if (mCallback != null) {
+            mCallback.onRelayedEvent(args);
+        }
+    }
+
     public static JSONObject jsonForPropertyChange(int propertyName, int newState) {
         String name;
         switch (propertyName) {
@@ -75,138 +92,463 @@ public class ResultRelay {
         return json;
     }
 
-    public static JSONObject jsonForDidProcessFrame(String base64Data) {
+    /**
+     * @param data The image of the whole frame or of the region, null if crops are passed.
+     * @param dataIsUrl Whether the image is passed as FrameStore url instead of base64 data url.
+     * @param region The region of the frame the image shows, null for the whole frame.
+     * @param crops The crops around each code (see jsonForFrameCrop), null if base64Data is passed.
+     * @param sequence Sequence number of the frame, increases with every exported frame.
+     * @param uniqueIds The uniqueIds of the codes whose recognition triggered the export.
+     * @param droppedFrames How many frames have been dropped so far because the encoder fell
+     *                      behind.
+     */
+    public static JSONObject jsonForDidProcessFrame(String data, boolean dataIsUrl, Rect region,
+                                                    JSONArray crops, long sequence,
+                                                    long[] uniqueIds, long droppedFrames) {
         JSONObject json = new JSONObject();
         try {
-            json.put("base64Data", base64Data);
+            if (data != null) {
+                json.put(dataIsUrl ? "url" : "base64Data", data);
+            }
+            if (region != null) {
+                json.put("region", jsonForRegion(region));
+            }
+            if (crops != null) {
+                json.put("crops", crops);
+            }
+            json.put("frameSequence", sequence);
+            JSONArray ids = new JSONArray();
+            for (long uniqueId : uniqueIds) {
+                ids.put(uniqueId);
+            }
+            json.put("uniqueIds", ids);
+            json.put("droppedFrames", droppedFrames);
         } catch (JSONException e) {
             e.printStackTrace();
         }
         return json;
     }
 
-    public static JSONObject jsonForLicenseValidationFail(String errorMessage) {
+    public static JSONObject jsonForFrameCrop(long uniqueId, String data, boolean dataIsUrl,
+                                              Rect region) {
         JSONObject json = new JSONObject();
         try {
-            json.put("errorMessage", errorMessage);
+            json.put("uniqueId", uniqueId);
+            json.put(dataIsUrl ? "url" : "base64Data", data);
+            json.put("region", jsonForRegion(region));
         } catch (JSONException e) {
             e.printStackTrace();
         }
         return json;
     }
 
-    public static JSONObject jsonForSession(ScanSession session, BarcodePicker picker) {
+    private static JSONObject jsonForRegion(Rect region) throws JSONException {
         JSONObject json = new JSONObject();
-        try {
-            json.put("newlyRecognizedCodes", jsonForCodes(session.getNewlyRecognizedCodes(), picker));
-            json.put("newlyLocalizedCodes", jsonForCodes(session.getNewlyLocalizedCodes(), picker));
-            json.put("allRecognizedCodes", jsonForCodes(session.getAllRecognizedCodes(), picker));
-        } catch (JSONException e) {
-            e.printStackTrace();
-        }
+        json.put("x", region.left);
+        json.put("y", region.top);
+        json.put("width", region.width());
+        json.put("height", region.height());
         return json;
     }
 
-    public static JSONObject jsonForTrackedCodes(List<TrackedBarcode> trackedCodes, BarcodePicker picker) {
+    public static JSONObject jsonForLicenseValidationFail(String errorMessage) {
         JSONObject json = new JSONObject();
         try {
-            json.put("newlyTrackedCodes", jsonForCodes(trackedCodes, picker));
+            json.put("errorMessage", errorMessage);
         } catch (JSONException e) {
             e.printStackTrace();
         }
         return json;
     }
 
-    public static JSONArray jsonForCodes(List<? extends Barcode> codes, BarcodePicker picker) {
-        JSONArray array = new JSONArray();
-
-        for (Barcode code : codes) {
-            JSONObject object = new JSONObject();
-            try {
-                object.put("symbology", code.getSymbologyName());
-                object.put("gs1DataCarrier", code.isGs1DataCarrier());
-                object.put("recognized", code.isRecognized());
-                object.put("data", code.getData());
-                object.put("location", jsonForQuadrilateral(code.getLocation()));
-                // XXX The JS layer expects the value to be in dp instead of pixels, hence we need the extra
-                // scaling for the converted locations.
-                object.put("convertedLocation", jsonForQuadrilateral(convertQuadrilateral(picker, code.getLocation())));
-                object.put("compositeFlag", code.getCompositeFlag());
-                if (code instanceof TrackedBarcode) {
-                    object.put("uniqueId", ((TrackedBarcode) code).getId());
-                    object.put("predictedLocation", jsonForQuadrilateral(((TrackedBarcode) code).getPredictedLocation()));
-                    // XXX The JS layer expects the value to be in dp instead of pixels, hence we need the extra
-                    // scaling for the converted locations.
-                    object.put("convertedPredictedLocation", jsonForQuadrilateral(convertQuadrilateral(picker, ((TrackedBarcode) code).getPredictedLocation())));
-                } else {
-                    object.put("uniqueId", code.getHandle());
+    /**
+     * Starts a result callback of the given PickerControllerBase.RESULT_EVENT_* kind on the
+     * controller, see PickerControllerBase.beginResultCallback.
+     */
+    public static int beginResultCallback(int event) {
+        if (mCallback != null) {
+            return mCallback.onBeginResultCallback(event);
+        }
+        return 0;
+    }
+
+    /**
+     * Hands the result of a callback started with beginResultCallback to the controller.
+     *
+     * @return the state the picker should switch to, 0 if it should not change.
+     */
+    public static int relayResultCallback(PluginResult result, int event, int callbackId) {
+        if (mCallback != null) {
+            return mCallback.onRelayedResultCallback(result, event, callbackId);
+        }
+        return 0;
+    }
+
+    /**
+     * The results of the full-screen picker activity's PickerResultHandler, relayed to the
+     * controller like the ones above.
+     */
+    static final PickerResultHandler.Sink SINK = new PickerResultHandler.Sink() {
+        @Override
+        public int beginResultCallback(int event) {
+            return ResultRelay.beginResultCallback(event);
+        }
+
+        @Override
+        public int sendResultCallback(PluginResult result, int event, int callbackId) {
+            return relayResultCallback(result, event, callbackId);
+        }
+
+        @Override
+        public void sendEvent(JSONArray args) {
+            relayEvent(args);
+        }
+    };
+
+    /**
+     * Returns the encoded event args of the didScan event for the given session. With the
+     * incremental session delivery allRecognizedCodes are replaced by the sessionEpoch and
+     * removedCodes, unless a new epoch starts.
+     *
+     * @param callbackId The id of the result callback, passed as callbackId. 0 if the result
+     *                   carries no id.
+     */
+    public static String jsonForSession(ScanSession session, PickerCoordinateTransform transform,
+                                        ResultFormat format, SessionDeltaTracker tracker,
+                                        SymbologyTable symbologies, int callbackId) {
+        SessionDeltaTracker.Delta delta = deltaForSession(session, format, tracker);
+        JsonResultWriter writer = JsonResultWriter.obtain();
+        writer.beginArray();
+        writer.value(ScanditSDK.DID_SCAN_EVENT);
+        writer.beginObject();
+        writer.name("newlyRecognizedCodes");
+        jsonForCodes(writer, session.getNewlyRecognizedCodes(), transform, format, symbologies);
+        writer.name("newlyLocalizedCodes");
+        jsonForCodes(writer, session.getNewlyLocalizedCodes(), transform, format, symbologies);
+        if (delta == null || delta.snapshot) {
+            writer.name("allRecognizedCodes");
+            jsonForCodes(writer, session.getAllRecognizedCodes(), transform, format, symbologies);
+        }
+        if (delta != null) {
+            writer.name("sessionEpoch").value(delta.epoch);
+            writer.name("removedCodes");
+            writer.beginArray();
+            for (String[] code : delta.removedCodes) {
+                writer.beginObject();
+                writer.name("symbology").value(code[0]);
+                writer.name("data").value(code[1]);
+                writer.endObject();
+            }
+            writer.endArray();
+        }
+        jsonForSymbologyTable(writer, symbologies);
+        jsonForCallbackId(writer, callbackId);
+        writer.endObject();
+        writer.endArray();
+        return writer.finish();
+    }
+
+    /**
+     * Returns the encoded event args of the didRecognizeNewCodes event for the given codes.
+     */
+    public static String jsonForTrackedCodes(List<TrackedBarcode> trackedCodes,
+                                             PickerCoordinateTransform transform,
+                                             ResultFormat format, SymbologyTable symbologies,
+                                             int callbackId) {
+        JsonResultWriter writer = JsonResultWriter.obtain();
+        writer.beginArray();
+        writer.value(ScanditSDK.DID_RECOGNIZE_NEW_CODES);
+        writer.beginObject();
+        writer.name("newlyTrackedCodes");
+        jsonForCodes(writer, trackedCodes, transform, format, symbologies);
+        jsonForSymbologyTable(writer, symbologies);
+        jsonForCallbackId(writer, callbackId);
+        writer.endObject();
+        writer.endArray();
+        return writer.finish();
+    }
+
+    private static void jsonForCodes(JsonResultWriter writer, List<? extends Barcode> codes,
+                                     PickerCoordinateTransform transform, ResultFormat format,
+                                     SymbologyTable symbologies) {
+        // XXX The JS layer expects the value to be in dp instead of pixels, hence we need the extra
+        // scaling for the converted locations.
+        int[] converted = format.hasField(ResultFormat.FIELD_CONVERTED_LOCATION)
+                ? transform.convertLocations(codes) : null;
+        int[] convertedPredicted = format.hasField(ResultFormat.FIELD_CONVERTED_PREDICTED_LOCATION)
+                ? transform.convertPredictedLocations(codes) : null;
+        writer.beginArray();
+        for (int i = 0, count = codes.size(); i < count; i++) {
+            Barcode code = codes.get(i);
+            writer.beginObject();
+            if (format.isSymbologyIds()) {
+                writer.name("symbologyId").value(symbologies.idForCode(code));
+            } else {
+                writer.name("symbology").value(code.getSymbologyName());
+            }
+            if (format.hasField(ResultFormat.FIELD_GS1_DATA_CARRIER)) {
+                writer.name("gs1DataCarrier").value(code.isGs1DataCarrier());
+            }
+            writer.name("recognized").value(code.isRecognized());
+            writer.name("data").value(code.getData());
+            if (format.hasField(ResultFormat.FIELD_LOCATION)) {
+                writer.name("location");
+                jsonForQuadrilateral(writer, code.getLocation());
+            }
+            if (converted != null) {
+                writer.name("convertedLocation");
+                jsonForCorners(writer, converted, i * 8);
+            }
+            if (format.hasField(ResultFormat.FIELD_COMPOSITE_FLAG)) {
+                writer.name("compositeFlag").value(code.getCompositeFlag());
+            }
+            if (code instanceof TrackedBarcode) {
+                TrackedBarcode trackedCode = (TrackedBarcode) code;
+                writer.name("uniqueId").value(trackedCode.getId());
+                if (format.hasField(ResultFormat.FIELD_PREDICTED_LOCATION)) {
+                    writer.name("predictedLocation");
+                    jsonForQuadrilateral(writer, trackedCode.getPredictedLocation());
                 }
-                if (code.isRecognized()) {
-                    JSONArray bytes = new JSONArray();
-                    byte[] rawData = code.getRawData();
-                    for (byte theByte : rawData) {
-                        bytes.put((int) theByte);
-                    }
-                    object.put("rawData", bytes);
+                if (convertedPredicted != null) {
+                    writer.name("convertedPredictedLocation");
+                    jsonForCorners(writer, convertedPredicted, i * 8);
                 }
-                array.put(object);
-            } catch (JSONException e) {
-                e.printStackTrace();
+            } else {
+                writer.name("uniqueId").value(code.getHandle());
+            }
+            if (code.isRecognized() && format.hasField(ResultFormat.FIELD_RAW_DATA)) {
+                writer.name("rawData");
+                jsonForRawData(writer, code.getRawData(), format);
             }
+            writer.endObject();
         }
-        return array;
+        writer.endArray();
     }
 
-    private static Quadrilateral convertQuadrilateral(BarcodePicker picker, Quadrilateral rect) {
-        return new Quadrilateral(
-                dpFromPx(picker.getContext(), picker.convertPointToPickerCoordinates(rect.top_left)),
-                dpFromPx(picker.getContext(), picker.convertPointToPickerCoordinates(rect.top_right)),
-                dpFromPx(picker.getContext(), picker.convertPointToPickerCoordinates(rect.bottom_left)),
-                dpFromPx(picker.getContext(), picker.convertPointToPickerCoordinates(rect.bottom_right))
-        );
+    public static byte[] binaryForSession(ScanSession session, PickerCoordinateTransform transform,
+                                          ResultFormat format, SessionDeltaTracker tracker,
+                                          SymbologyTable symbologies, int callbackId) {
+        SessionDeltaTracker.Delta delta = deltaForSession(session, format, tracker);
+        BinaryResultWriter writer = new BinaryResultWriter(1024);
+        writer.writeHeader(BinaryResultWriter.EVENT_DID_SCAN, binaryHeaderFields(format));
+        binaryForCodes(writer, BinaryResultWriter.SECTION_NEWLY_RECOGNIZED_CODES,
+                session.getNewlyRecognizedCodes(), transform, format, symbologies);
+        binaryForCodes(writer, BinaryResultWriter.SECTION_NEWLY_LOCALIZED_CODES,
+                session.getNewlyLocalizedCodes(), transform, format, symbologies);
+        if (delta == null || delta.snapshot) {
+            binaryForCodes(writer, BinaryResultWriter.SECTION_ALL_RECOGNIZED_CODES,
+                    session.getAllRecognizedCodes(), transform, format, symbologies);
+        }
+        if (delta != null) {
+            writer.beginSection(BinaryResultWriter.SECTION_SESSION_DELTA);
+            writer.writeInt(delta.epoch);
+            writer.writeInt(delta.removedCodes.size());
+            for (String[] code : delta.removedCodes) {
+                writer.writeString(code[0]);
+                writer.writeString(code[1]);
+            }
+        }
+        binaryForSymbologyTable(writer, symbologies);
+        binaryForCallbackId(writer, callbackId);
+        return writer.toByteArray();
     }
 
-    private static Point dpFromPx(Context context, Point point) {
-        float displayDensity = context.getResources().getDisplayMetrics().density;
-        return new Point(
-                (int) (point.x / displayDensity),
-                (int) (point.y / displayDensity)
-        );
+    private static SessionDeltaTracker.Delta deltaForSession(ScanSession session, ResultFormat format,
+                                                             SessionDeltaTracker tracker) {
+        if (!format.isIncrementalSession()) {
+            tracker.invalidate();
+            return null;
+        }
+        return tracker.update(session);
     }
 
-    private static JSONObject jsonForQuadrilateral(Quadrilateral quadrilateral) {
-        JSONObject obj = new JSONObject();
-        try {
-            JSONArray array = new JSONArray();
-            array.put(quadrilateral.top_left.x);
-            array.put(quadrilateral.top_left.y);
-            obj.put("topLeft", array);
-
-            array = new JSONArray();
-            array.put(quadrilateral.top_right.x);
-            array.put(quadrilateral.top_right.y);
-            obj.put("topRight", array);
-
-            array = new JSONArray();
-            array.put(quadrilateral.bottom_left.x);
-            array.put(quadrilateral.bottom_left.y);
-            obj.put("bottomLeft", array);
-
-            array = new JSONArray();
-            array.put(quadrilateral.bottom_right.x);
-            array.put(quadrilateral.bottom_right.y);
-            obj.put("bottomRight", array);
-        } catch (JSONException e) {
-            e.printStackTrace();
+    public static byte[] binaryForTrackedCodes(List<TrackedBarcode> trackedCodes,
+                                               PickerCoordinateTransform transform,
+                                               ResultFormat format, SymbologyTable symbologies,
+                                               int callbackId) {
+        BinaryResultWriter writer = new BinaryResultWriter(1024);
+        writer.writeHeader(BinaryResultWriter.EVENT_DID_RECOGNIZE_NEW_CODES,
+                binaryHeaderFields(format));
+        binaryForCodes(writer, BinaryResultWriter.SECTION_NEWLY_TRACKED_CODES, trackedCodes,
+                transform, format, symbologies);
+        binaryForSymbologyTable(writer, symbologies);
+        binaryForCallbackId(writer, callbackId);
+        return writer.toByteArray();
+    }
+
+    private static void binaryForCallbackId(BinaryResultWriter writer, int callbackId) {
+        if (callbackId != 0) {
+            writer.beginSection(BinaryResultWriter.SECTION_CALLBACK_ID);
+            writer.writeInt(callbackId);
         }
+    }
 
-        return obj;
+    private static void jsonForCallbackId(JsonResultWriter writer, int callbackId) {
+        if (callbackId != 0) {
+            writer.name("callbackId").value(callbackId);
+        }
     }
 
-    public static JSONObject jsonForRecognizedText(RecognizedText recognizedText) {
+    private static int binaryHeaderFields(ResultFormat format) {
+        if (format.isSymbologyIds()) {
+            return format.getFields() | BinaryResultWriter.FIELDS_SYMBOLOGY_ID;
+        }
+        return format.getFields();
+    }
+
+    private static void binaryForSymbologyTable(BinaryResultWriter writer, SymbologyTable symbologies) {
+        int first = symbologies.getFirstUnsentIndex();
+        if (first == symbologies.size()) {
+            return;
+        }
+        writer.beginSection(BinaryResultWriter.SECTION_SYMBOLOGY_TABLE);
+        writer.writeInt(symbologies.size() - first);
+        for (int i = first; i < symbologies.size(); i++) {
+            writer.writeInt(symbologies.getId(i));
+            writer.writeString(symbologies.getName(i));
+        }
+        symbologies.markAllSent();
+    }
+
+    private static void binaryForCodes(BinaryResultWriter writer, int section,
+                                       List<? extends Barcode> codes,
+                                       PickerCoordinateTransform transform, ResultFormat format,
+                                       SymbologyTable symbologies) {
+        int[] converted = format.hasField(ResultFormat.FIELD_CONVERTED_LOCATION)
+                ? transform.convertLocations(codes) : null;
+        int[] convertedPredicted = format.hasField(ResultFormat.FIELD_CONVERTED_PREDICTED_LOCATION)
+                ? transform.convertPredictedLocations(codes) : null;
+        writer.beginSection(section);
+        writer.writeInt(codes.size());
+        for (int i = 0, count = codes.size(); i < count; i++) {
+            Barcode code = codes.get(i);
+            boolean tracked = code instanceof TrackedBarcode;
+            int flags = 0;
+            if (code.isGs1DataCarrier()) flags |= BinaryResultWriter.CODE_FLAG_GS1_DATA_CARRIER;
+            if (code.isRecognized()) flags |= BinaryResultWriter.CODE_FLAG_RECOGNIZED;
+            if (tracked) flags |= BinaryResultWriter.CODE_FLAG_TRACKED;
+            // same as for the json encoding, raw data is only passed for recognized codes.
+            boolean withRawData = code.isRecognized() && format.hasField(ResultFormat.FIELD_RAW_DATA);
+            if (withRawData) flags |= BinaryResultWriter.CODE_FLAG_RAW_DATA;
+
+            writer.writeByte(flags);
+            if (format.hasField(ResultFormat.FIELD_COMPOSITE_FLAG)) {
+                writer.writeInt(code.getCompositeFlag());
+            }
+            writer.writeLong(tracked ? ((TrackedBarcode) code).getId() : code.getHandle());
+            if (format.isSymbologyIds()) {
+                writer.writeInt(symbologies.idForCode(code));
+            } else {
+                writer.writeString(code.getSymbologyName());
+            }
+            writer.writeString(code.getData());
+            if (withRawData) {
+                writer.writeBytes(code.getRawData());
+            }
+            if (format.hasField(ResultFormat.FIELD_LOCATION)) {
+                binaryForQuadrilateral(writer, code.getLocation());
+            }
+            if (converted != null) {
+                binaryForCorners(writer, converted, i * 8);
+            }
+            if (tracked) {
+                if (format.hasField(ResultFormat.FIELD_PREDICTED_LOCATION)) {
+                    binaryForQuadrilateral(writer, ((TrackedBarcode) code).getPredictedLocation());
+                }
+                if (convertedPredicted != null) {
+                    binaryForCorners(writer, convertedPredicted, i * 8);
+                }
+            }
+        }
+    }
+
+    private static void binaryForQuadrilateral(BinaryResultWriter writer, Quadrilateral quadrilateral) {
+        writer.writeInt(quadrilateral.top_left.x);
+        writer.writeInt(quadrilateral.top_left.y);
+        writer.writeInt(quadrilateral.top_right.x);
+        writer.writeInt(quadrilateral.top_right.y);
+        writer.writeInt(quadrilateral.bottom_left.x);
+        writer.writeInt(quadrilateral.bottom_left.y);
+        writer.writeInt(quadrilateral.bottom_right.x);
+        writer.writeInt(quadrilateral.bottom_right.y);
+    }
+
+    private static void binaryForCorners(BinaryResultWriter writer, int[] corners, int offset) {
+        for (int i = offset; i < offset + 8; i++) {
+            writer.writeInt(corners[i]);
+        }
+    }
+
+    /**
+     * Writes the entries of the symbology table that have not been sent yet, if any.
+     */
+    private static void jsonForSymbologyTable(JsonResultWriter writer, SymbologyTable symbologies) {
+        int first = symbologies.getFirstUnsentIndex();
+        if (first == symbologies.size()) {
+            return;
+        }
+        writer.name("symbologyTable");
+        writer.beginObject();
+        for (int i = first; i < symbologies.size(); i++) {
+            writer.name(String.valueOf(symbologies.getId(i))).value(symbologies.getName(i));
+        }
+        writer.endObject();
+        symbologies.markAllSent();
+    }
+
+    private static void jsonForRawData(JsonResultWriter writer, byte[] rawData, ResultFormat format) {
+        if (format.getRawDataEncoding() == ResultFormat.RAW_DATA_BASE64) {
+            writer.value(Base64.encodeToString(rawData, Base64.NO_WRAP));
+            return;
+        }
+        writer.beginArray();
+        for (byte theByte : rawData) {
+            writer.value(theByte);
+        }
+        writer.endArray();
+    }
+
+    private static void jsonForQuadrilateral(JsonResultWriter writer, Quadrilateral quadrilateral) {
+        writer.beginObject();
+        writer.name("topLeft");
+        jsonForPoint(writer, quadrilateral.top_left);
+        writer.name("topRight");
+        jsonForPoint(writer, quadrilateral.top_right);
+        writer.name("bottomLeft");
+        jsonForPoint(writer, quadrilateral.bottom_left);
+        writer.name("bottomRight");
+        jsonForPoint(writer, quadrilateral.bottom_right);
+        writer.endObject();
+    }
+
+    private static void jsonForPoint(JsonResultWriter writer, Point point) {
+        writer.beginArray().value(point.x).value(point.y).endArray();
+    }
+
+    /**
+     * Writes the corners at [offset, offset + 8) of the output of PickerCoordinateTransform as a
+     * quadrilateral.
+     */
+    private static void jsonForCorners(JsonResultWriter writer, int[] corners, int offset) {
+        writer.beginObject();
+        writer.name("topLeft");
+        writer.beginArray().value(corners[offset]).value(corners[offset + 1]).endArray();
+        writer.name("topRight");
+        writer.beginArray().value(corners[offset + 2]).value(corners[offset + 3]).endArray();
+        writer.name("bottomLeft");
+        writer.beginArray().value(corners[offset + 4]).value(corners[offset + 5]).endArray();
+        writer.name("bottomRight");
+        writer.beginArray().value(corners[offset + 6]).value(corners[offset + 7]).endArray();
+        writer.endObject();
+    }
+
+    public static JSONObject jsonForRecognizedText(RecognizedText recognizedText, int callbackId) {
         JSONObject json = new JSONObject();
         try {
             json.put("text", recognizedText.getText());
+            if (callbackId != 0) {
+                json.put("callbackId", callbackId);
+            }
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -214,6 +556,12 @@ public class ResultRelay {
     }
 
     public interface Callback {
-        int onRelayedResult(Bundle bundle);
+        int onRelayedResult(PluginResult result, boolean waitForResult);
+
+        void onRelayedEvent(JSONArray args);
+
+        int onBeginResultCallback(int event);
+
+        int onRelayedResultCallback(PluginResult result, int event, int callbackId);
     }
 }
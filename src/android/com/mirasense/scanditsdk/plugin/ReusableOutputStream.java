@@ -0,0 +1,68 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * ByteArrayOutputStream that is reset and written again for every frame instead of being
+ * allocated anew. Its buffer is presized for the frames with ensureCapacity and only grows if an
+ * encoded frame does not fit, afterwards it keeps the larger size. The content is read in place
+ * through getBuffer() and size() instead of copying it with toByteArray().
+ *
+ * Not thread-safe, every thread that encodes frames needs its own stream.
+ */
+class ReusableOutputStream extends ByteArrayOutputStream {
+
+    ReusableOutputStream(int capacity) {
+        super(capacity);
+    }
+
+    /**
+     * Resets the stream and makes sure it can take the given number of bytes without growing.
+     */
+    void resetWithCapacity(int capacity) {
+        reset();
+        if (buf.length < capacity) {
+            buf = new byte[capacity];
+        }
+    }
+
+    /**
+     * Returns the buffer holding the size() bytes written since the last reset.
+     */
+    byte[] getBuffer() {
+        return buf;
+    }
+
+    /**
+     * Overwrites four bytes that have already been written with the big endian int.
+     */
+    void putInt(int offset, int value) {
+        buf[offset] = (byte) (value >>> 24);
+        buf[offset + 1] = (byte) (value >>> 16);
+        buf[offset + 2] = (byte) (value >>> 8);
+        buf[offset + 3] = (byte) value;
+    }
+
+    void writeInt(int value) {
+        write(value >>> 24);
+        write(value >>> 16);
+        write(value >>> 8);
+        write(value);
+    }
+
+    void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+}
@@ -13,34 +13,317 @@
 package com.mirasense.scanditsdk.plugin;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.ImageFormat;
 import android.graphics.Rect;
 import android.graphics.YuvImage;
 import android.util.Base64;
 
-import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 import static android.util.Base64.encodeToString;
 
+/**
+ * Encodes the NV21 camera frames passed to JS. JPEGs are compressed straight from the NV21 data,
+ * only PNGs need a Bitmap, which is filled directly from the NV21 data as well. Frames larger than
+ * the max dimension of the format are scaled down (nearest neighbor) before they are compressed.
+ * Regions of the frame are cropped in the same pass, the rest of the frame is never touched.
+ *
+ * Grayscale frames only read the Y plane of the NV21 data, the chroma is never converted.
+ *
+ * The frames are encoded into a ReusableOutputStream, callers that encode many frames pass their
+ * own so that its buffer is reused.
+ */
 public class SampleBufferConverter {
 
-    public static String base64StringFromFrame(byte[] frameBytes, int width, int height) {
-        Bitmap jpegBitmap = getBitmapFromYuv(frameBytes, width, height);
-        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-        jpegBitmap.compress(Bitmap.CompressFormat.PNG, 100, outStream);
-        String base64String = encodeToString(outStream.toByteArray(), Base64.DEFAULT);
+    private static final byte[] PNG_SIGNATURE = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'
+    };
+    private static final byte[] IHDR = {'I', 'H', 'D', 'R'};
+    private static final byte[] IDAT = {'I', 'D', 'A', 'T'};
+    private static final byte[] IEND = {'I', 'E', 'N', 'D'};
+    // The neutral value of the VU plane, NV21 frames with it are gray.
+    private static final byte NEUTRAL_CHROMA = (byte) 128;
+
+    public static String base64StringFromFrame(byte[] frameBytes, int width, int height,
+                                               FrameFormat format) {
+        return base64StringFromFrame(frameBytes, width, height, new Rect(0, 0, width, height),
+                format);
+    }
+
+    /**
+     * Encodes the region of the frame, its left and top have to be even.
+     */
+    public static String base64StringFromFrame(byte[] frameBytes, int width, int height,
+                                               Rect region, FrameFormat format) {
+        return base64StringFromFrame(frameBytes, width, height, region, format,
+                new ReusableOutputStream(0));
+    }
+
+    static String base64StringFromFrame(byte[] frameBytes, int width, int height, Rect region,
+                                        FrameFormat format, ReusableOutputStream outputStream) {
+        encodeFrame(frameBytes, width, height, region, format, outputStream);
+        String base64String = encodeToString(outputStream.getBuffer(), 0, outputStream.size(),
+                Base64.DEFAULT);
 
         // Return a String which is easily readable by js side.
-        return "data:image/png;base64," + base64String;
+        return (format.isPng() ? "data:image/png;base64," : "data:image/jpeg;base64,")
+                + base64String;
+    }
+
+    static byte[] encodeFrame(byte[] frameBytes, int width, int height, Rect region,
+                              FrameFormat format) {
+        ReusableOutputStream outputStream = new ReusableOutputStream(0);
+        encodeFrame(frameBytes, width, height, region, format, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Encodes the region of the frame into the output stream, which is reset first.
+     */
+    static void encodeFrame(byte[] frameBytes, int width, int height, Rect region,
+                            FrameFormat format, ReusableOutputStream outputStream) {
+        if (format.isGrayscale()) {
+            encodeGrayscaleFrame(frameBytes, width, region, format, outputStream);
+            return;
+        }
+        int scaledWidth = region.width();
+        int scaledHeight = region.height();
+        int maxDimension = format.getMaxDimension();
+        if (maxDimension != FrameFormat.UNLIMITED_DIMENSION
+                && (scaledWidth > maxDimension || scaledHeight > maxDimension)) {
+            float scale = (float) maxDimension / Math.max(scaledWidth, scaledHeight);
+            // NV21 needs even dimensions.
+            scaledWidth = Math.max(2, (int) (scaledWidth * scale) & ~1);
+            scaledHeight = Math.max(2, (int) (scaledHeight * scale) & ~1);
+        }
+
+        if (format.isPng()) {
+            int[] pixels = argbFromNv21(frameBytes, width, height, region, scaledWidth,
+                    scaledHeight);
+            Bitmap bitmap = Bitmap.createBitmap(pixels, scaledWidth, scaledHeight,
+                    Bitmap.Config.ARGB_8888);
+            outputStream.resetWithCapacity(scaledWidth * scaledHeight);
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
+            bitmap.recycle();
+            return;
+        }
+
+        // JPEGs of camera frames are rarely larger than a quarter of the pixel count.
+        outputStream.resetWithCapacity(scaledWidth * scaledHeight / 4);
+        if (scaledWidth == region.width() && scaledHeight == region.height()) {
+            // the YuvImage crops the region itself.
+            YuvImage yuvImage = new YuvImage(frameBytes, ImageFormat.NV21, width, height, null);
+            yuvImage.compressToJpeg(region, format.getQuality(), outputStream);
+        } else {
+            byte[] scaled = scaleNv21(frameBytes, width, height, region, scaledWidth,
+                    scaledHeight);
+            YuvImage yuvImage = new YuvImage(scaled, ImageFormat.NV21, scaledWidth, scaledHeight,
+                    null);
+            yuvImage.compressToJpeg(new Rect(0, 0, scaledWidth, scaledHeight),
+                    format.getQuality(), outputStream);
+        }
+    }
+
+    /**
+     * Scales the region of the NV21 frame to the given (even) size, picking the nearest source
+     * pixel.
+     */
+    static byte[] scaleNv21(byte[] frameBytes, int width, int height, Rect region,
+                            int scaledWidth, int scaledHeight) {
+        byte[] scaled = new byte[scaledWidth * scaledHeight * 3 / 2];
+        int[] sourceX = new int[scaledWidth];
+        for (int x = 0; x < scaledWidth; x++) {
+            sourceX[x] = region.left + x * region.width() / scaledWidth;
+        }
+        for (int y = 0; y < scaledHeight; y++) {
+            int sourceRow = (region.top + y * region.height() / scaledHeight) * width;
+            int row = y * scaledWidth;
+            for (int x = 0; x < scaledWidth; x++) {
+                scaled[row + x] = frameBytes[sourceRow + sourceX[x]];
+            }
+        }
+        // the interleaved VU plane has half the resolution, the pairs are copied together.
+        int uvOffset = width * height;
+        int scaledUvOffset = scaledWidth * scaledHeight;
+        for (int y = 0; y < scaledHeight / 2; y++) {
+            int sourceY = region.top + 2 * y * region.height() / scaledHeight;
+            int sourceRow = uvOffset + (sourceY >> 1) * width;
+            int row = scaledUvOffset + y * scaledWidth;
+            for (int x = 0; x < scaledWidth; x += 2) {
+                int source = sourceRow + (sourceX[x] & ~1);
+                scaled[row + x] = frameBytes[source];
+                scaled[row + x + 1] = frameBytes[source + 1];
+            }
+        }
+        return scaled;
+    }
+
+    /**
+     * Converts the region of the NV21 frame to ARGB pixels of the given size in a single pass.
+     */
+    private static int[] argbFromNv21(byte[] frameBytes, int width, int height, Rect region,
+                                      int scaledWidth, int scaledHeight) {
+        int[] pixels = new int[scaledWidth * scaledHeight];
+        int uvOffset = width * height;
+        for (int y = 0; y < scaledHeight; y++) {
+            int sourceY = region.top + y * region.height() / scaledHeight;
+            int lumaRow = sourceY * width;
+            int uvRow = uvOffset + (sourceY >> 1) * width;
+            for (int x = 0; x < scaledWidth; x++) {
+                int sourceX = region.left + x * region.width() / scaledWidth;
+                int luma = frameBytes[lumaRow + sourceX] & 0xff;
+                int uvIndex = uvRow + (sourceX & ~1);
+                int v = (frameBytes[uvIndex] & 0xff) - 128;
+                int u = (frameBytes[uvIndex + 1] & 0xff) - 128;
+                int r = clamp(luma + ((91881 * v) >> 16));
+                int g = clamp(luma - ((22544 * u + 46793 * v) >> 16));
+                int b = clamp(luma + ((116129 * u) >> 16));
+                pixels[y * scaledWidth + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
     }
 
+    /**
+     * Encodes the luminance of the region, downsampled by the factor of the format or the next
+     * larger factor that respects the max dimension. PNGs are written as 8 bit grayscale images.
+     * JPEGs go through the YuvImage with a neutral VU plane, it has no grayscale mode.
+     */
+    static void encodeGrayscaleFrame(byte[] frameBytes, int width, Rect region,
+                                     FrameFormat format, ReusableOutputStream outputStream) {
+        int factor = format.getDownsample();
+        int maxDimension = format.getMaxDimension();
+        int longest = Math.max(region.width(), region.height());
+        if (maxDimension != FrameFormat.UNLIMITED_DIMENSION && longest > maxDimension * factor) {
+            factor = (longest + maxDimension - 1) / maxDimension;
+        }
+        // at least 2x2 pixels are left, as NV21 requires.
+        factor = Math.max(1, Math.min(factor, Math.min(region.width(), region.height()) / 2));
+        int scaledWidth = region.width() / factor;
+        int scaledHeight = region.height() / factor;
+
+        if (format.isPng()) {
+            byte[] luma = new byte[scaledWidth * scaledHeight];
+            lumaFromNv21(frameBytes, width, region, factor, scaledWidth, scaledHeight, luma);
+            grayscalePng(luma, scaledWidth, scaledHeight, outputStream);
+            return;
+        }
+
+        scaledWidth &= ~1;
+        scaledHeight &= ~1;
+        byte[] nv21 = new byte[scaledWidth * scaledHeight * 3 / 2];
+        lumaFromNv21(frameBytes, width, region, factor, scaledWidth, scaledHeight, nv21);
+        Arrays.fill(nv21, scaledWidth * scaledHeight, nv21.length, NEUTRAL_CHROMA);
+        outputStream.resetWithCapacity(scaledWidth * scaledHeight / 4);
+        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, scaledWidth, scaledHeight, null);
+        yuvImage.compressToJpeg(new Rect(0, 0, scaledWidth, scaledHeight), format.getQuality(),
+                outputStream);
+    }
+
+    /**
+     * Writes the luminance of the region to the start of luma, each pixel is the average of a
+     * factor x factor block. The Y plane is read once, row by row.
+     */
+    static void lumaFromNv21(byte[] frameBytes, int width, Rect region, int factor,
+                             int scaledWidth, int scaledHeight, byte[] luma) {
+        if (factor == 1) {
+            for (int y = 0; y < scaledHeight; y++) {
+                System.arraycopy(frameBytes, (region.top + y) * width + region.left, luma,
+                        y * scaledWidth, scaledWidth);
+            }
+            return;
+        }
+        int[] sums = new int[scaledWidth];
+        int blockSize = factor * factor;
+        for (int y = 0; y < scaledHeight; y++) {
+            Arrays.fill(sums, 0);
+            for (int blockRow = 0; blockRow < factor; blockRow++) {
+                int source = (region.top + y * factor + blockRow) * width + region.left;
+                for (int x = 0; x < scaledWidth; x++) {
+                    int sum = 0;
+                    for (int i = 0; i < factor; i++) {
+                        sum += frameBytes[source++] & 0xff;
+                    }
+                    sums[x] += sum;
+                }
+            }
+            int row = y * scaledWidth;
+            for (int x = 0; x < scaledWidth; x++) {
+                luma[row + x] = (byte) (sums[x] / blockSize);
+            }
+        }
+    }
+
+    /**
+     * Encodes the luminance as 8 bit grayscale PNG. The rows use the sub filter, which is cheap
+     * and compresses camera images much better than no filter. Deflated for speed, the frames are
+     * encoded on the fly. The chunks are written in place, their lengths and checksums are filled
+     * in afterwards.
+     */
+    static void grayscalePng(byte[] luma, int width, int height, ReusableOutputStream png) {
+        png.resetWithCapacity(width * height / 2 + 64);
+        png.write(PNG_SIGNATURE, 0, PNG_SIGNATURE.length);
+
+        int chunk = startChunk(png, IHDR);
+        png.writeInt(width);
+        png.writeInt(height);
+        png.write(8);  // bit depth
+        png.write(0);  // color type grayscale
+        png.write(0);  // compression
+        png.write(0);  // filter
+        png.write(0);  // interlace
+        endChunk(png, chunk);
+
+        chunk = startChunk(png, IDAT);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] row = new byte[width + 1];
+        byte[] buffer = new byte[16 * 1024];
+        row[0] = 1;  // sub filter
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            row[1] = luma[offset];
+            for (int x = 1; x < width; x++) {
+                row[x + 1] = (byte) (luma[offset + x] - luma[offset + x - 1]);
+            }
+            deflater.setInput(row);
+            while (!deflater.needsInput()) {
+                png.write(buffer, 0, deflater.deflate(buffer));
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            png.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        endChunk(png, chunk);
+
+        endChunk(png, startChunk(png, IEND));
+    }
+
+    /**
+     * Writes the header of a chunk with a length to be filled in by endChunk.
+     *
+     * @return the offset of the chunk.
+     */
+    private static int startChunk(ReusableOutputStream png, byte[] type) {
+        int offset = png.size();
+        png.writeInt(0);
+        png.write(type, 0, type.length);
+        return offset;
+    }
+
+    private static void endChunk(ReusableOutputStream png, int offset) {
+        int length = png.size() - offset - 8;
+        png.putInt(offset, length);
+        CRC32 crc = new CRC32();
+        // the checksum covers the type and the data.
+        crc.update(png.getBuffer(), offset + 4, length + 4);
+        png.writeInt((int) crc.getValue());
+    }
 
-    private static Bitmap getBitmapFromYuv(byte[] bytes, int width, int height) {
-        YuvImage yuvImage = new YuvImage(bytes, ImageFormat.NV21, width, height, null);
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        yuvImage.compressToJpeg(new Rect(0, 0, width, height), 100, outputStream);
-        byte[] jpegByteArray = outputStream.toByteArray();
-        return BitmapFactory.decodeByteArray(jpegByteArray, 0, jpegByteArray.length);
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
     }
 }
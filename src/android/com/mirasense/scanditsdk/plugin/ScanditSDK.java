@@ -14,6 +14,7 @@ package com.mirasense.scanditsdk.plugin;
 
 import android.Manifest;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
 
@@ -24,13 +25,17 @@ import com.scandit.base.util.JSONParseException;
 
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaPlugin;
+import org.apache.cordova.CordovaResourceApi;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Iterator;
 
 
 public class ScanditSDK extends CordovaPlugin {
@@ -43,6 +48,8 @@ public class ScanditSDK extends CordovaPlugin {
     public static final String DID_CHANGE_PROPERTY = "didChangeProperty";
     public static final String DID_FAIL_TO_VALIDATE_LICENSE = "didFailToValidateLicense";
     public static final String DID_PROCESS_FRAME = "didProcessFrame";
+    // Carries several of the events above, see EventCoalescer.
+    public static final String EVENT_BATCH = "eventBatch";
 
 
     private static final String INIT_LICENSE_COMMAND = "initLicense";
@@ -58,6 +65,9 @@ public class ScanditSDK extends CordovaPlugin {
     private static final String ENABLE_TORCH_COMMAND = "torch";
     private static final String FINISH_DID_SCAN_COMMAND = "finishDidScanCallback";
     private static final String FINISH_DID_RECOGNIZE_NEW_CODES_COMMAND = "finishDidRecognizeNewCodesCallback";
+    private static final String GET_COORDINATE_TRANSFORM_COMMAND = "getCoordinateTransform";
+    private static final String GET_METRICS_COMMAND = "getMetrics";
+    private static final String RESET_METRICS_COMMAND = "resetMetrics";
     private static final int REQUEST_CAMERA_PERMISSION = 505;
 
     private CallbackContext mCallbackContext;
@@ -140,6 +150,21 @@ public class ScanditSDK extends CordovaPlugin {
             finishDidScanCallback(args);
         } else if (action.equals(FINISH_DID_RECOGNIZE_NEW_CODES_COMMAND)) {
             finishDidRecognizeNewCodesCallback(args);
+        } else if (action.equals(GET_COORDINATE_TRANSFORM_COMMAND)) {
+            getCoordinateTransform(callbackContext);
+        } else if (action.equals(GET_METRICS_COMMAND)) {
+            // the metrics are thread-safe and independent of the picker.
+            JSONObject metrics = PickerControllerBase.sMetrics.toJson();
+            try {
+                metrics.put("framePool", FramePool.getInstance().toJson());
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+            callbackContext.success(metrics);
+        } else if (action.equals(RESET_METRICS_COMMAND)) {
+            PickerControllerBase.sMetrics.reset();
+            FramePool.getInstance().resetCounts();
+            callbackContext.success();
         } else {
             callbackContext.error("Invalid Action: " + action);
             return false;
@@ -182,9 +207,9 @@ public class ScanditSDK extends CordovaPlugin {
             try {
                 final JSONObject settings = unifyRecognitionMode(data.getJSONObject(0));
                 final Bundle options = new Bundle();
-                setOptionsOnBundle(data.getJSONObject(1), options);
+                Marshal.setOptionsOnBundle(data.getJSONObject(1), options);
                 final Bundle overlayOptions = new Bundle();
-                setOptionsOnBundle(data.getJSONObject(2), overlayOptions);
+                Marshal.setOptionsOnBundle(data.getJSONObject(2), overlayOptions);
                 showPicker(settings, options, overlayOptions, false);
 
             } catch (JSONException e) {
@@ -229,6 +254,12 @@ public class ScanditSDK extends CordovaPlugin {
             mWorker.getHandler().post(new Runnable() {
                 @Override
                 public void run() {
+                    if (mPickerController != null) {
+                        // The result format (e.g. codeFields) can be changed together with the settings.
+                        Bundle resultFormatOptions = new Bundle();
+                        Marshal.setOptionsOnBundle(settings, resultFormatOptions);
+                        mPickerController.updateResultFormat(resultFormatOptions);
+                    }
                     cordova.getActivity().runOnUiThread(new Runnable() {
                         public void run() {
                             if (mPickerController == null)
@@ -274,8 +305,10 @@ public class ScanditSDK extends CordovaPlugin {
                 if (mPickerController != null) {
                     final Bundle bundle = new Bundle();
                     try {
-                        setOptionsOnBundle(data.getJSONObject(0), bundle);
+                        Marshal.setOptionsOnBundle(data.getJSONObject(0), bundle);
                         mPickerController.updateUI(bundle);
+                        mPickerController.updateResultFormat(bundle);
+                        mPickerController.updateFrameExportPolicy(bundle);
                     } catch (JSONException e) {
                         e.printStackTrace();
                     }
@@ -284,6 +317,23 @@ public class ScanditSDK extends CordovaPlugin {
         });
     }
 
+    private void getCoordinateTransform(final CallbackContext callbackContext) {
+        mWorker.getHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                JSONObject transform = null;
+                if (mPickerController != null) {
+                    transform = mPickerController.getCoordinateTransform();
+                }
+                if (transform == null) {
+                    callbackContext.error("The picker is not shown.");
+                    return;
+                }
+                callbackContext.success(transform);
+            }
+        });
+    }
+
     private void cancel(final JSONArray data) {
         mWorker.getHandler().post(new Runnable() {
             @Override
@@ -336,7 +386,7 @@ public class ScanditSDK extends CordovaPlugin {
                 if (mPickerController != null) {
                     final Bundle bundle = new Bundle();
                     try {
-                        setOptionsOnBundle(data.getJSONObject(0), bundle);
+                        Marshal.setOptionsOnBundle(data.getJSONObject(0), bundle);
                         mPickerController.updateLayout(bundle);
                     } catch (JSONException e) {
                         e.printStackTrace();
@@ -373,48 +423,6 @@ public class ScanditSDK extends CordovaPlugin {
         mPickerController.finishDidRecognizeNewCodesCallback(data);
     }
 
-    private void setOptionsOnBundle(JSONObject options, Bundle bundle) {
-        @SuppressWarnings("unchecked")
-        Iterator<String> iter = options.keys();
-        while (iter.hasNext()) {
-            String key = iter.next();
-            Object obj = options.opt(key);
-            if (obj != null) {
-                if (obj instanceof Float) {
-                    bundle.putFloat(key.toLowerCase(), (Float) obj);
-                } else if (obj instanceof Double) {
-                    bundle.putFloat(key.toLowerCase(), new Float((Double) obj));
-                } else if (obj instanceof Integer) {
-                    bundle.putInt(key.toLowerCase(), (Integer) obj);
-                } else if (obj instanceof Boolean) {
-                    bundle.putBoolean(key.toLowerCase(), (Boolean) obj);
-                } else if (obj instanceof String) {
-                    bundle.putString(key.toLowerCase(), (String) obj);
-                } else if (obj instanceof JSONArray) {
-                    ArrayList<Object> list = new ArrayList<Object>();
-                    JSONArray array = (JSONArray) obj;
-                    for (int i = 0; i < array.length(); i++) {
-                        try {
-                            Object item = array.get(i);
-                            if (item instanceof Double) {
-                                list.add(new Float((Double) item));
-                            } else {
-                                list.add(array.get(i));
-                            }
-                        } catch (JSONException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                    bundle.putSerializable(key.toLowerCase(), list);
-                } else if (obj instanceof JSONObject) {
-                    Bundle dictionary = new Bundle();
-                    setOptionsOnBundle((JSONObject) obj, dictionary);
-                    bundle.putBundle(key.toLowerCase(), dictionary);
-                }
-            }
-        }
-    }
-
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
         if (mPickerController == null) return;
@@ -435,6 +443,30 @@ public class ScanditSDK extends CordovaPlugin {
         mPickerController.onActivityResume();
     }
 
+    // The frames of frameDelivery "url" are loaded by the WebView from the FrameStore through the
+    // requests below, they never cross the bridge.
+    @Override
+    public Boolean shouldAllowRequest(String url) {
+        return FrameStore.isFrameUrl(url) ? Boolean.TRUE : null;
+    }
+
+    @Override
+    public Uri remapUri(Uri uri) {
+        return FrameStore.isFrameUrl(uri.toString()) ? toPluginUri(uri) : null;
+    }
+
+    @Override
+    public CordovaResourceApi.OpenForReadResult handleOpenForRead(Uri uri) throws IOException {
+        Uri frameUri = fromPluginUri(uri);
+        String name = frameUri.getLastPathSegment();
+        File file = FrameStore.getInstance(cordova.getActivity()).get(name);
+        if (file == null) {
+            throw new FileNotFoundException("Frame " + frameUri + " is not stored anymore.");
+        }
+        return new CordovaResourceApi.OpenForReadResult(uri, new FileInputStream(file),
+                FrameStore.mimeTypeForName(name), file.length(), null);
+    }
+
     public void setResizeListener(ResizeScannerInterface listener) {
         resizeListener = new WeakReference<ResizeScannerInterface>(listener);
         if (mPickerController instanceof SubViewPickerController) {
@@ -0,0 +1,167 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import com.scandit.barcodepicker.ScanSession;
+import com.scandit.recognition.Barcode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the allRecognizedCodes the JS side knows about when the session is delivered
+ * incrementally (sessionDelivery: "incremental"). The JS side (Scandit.SessionMirror) appends the
+ * newly recognized codes of every didScan to its copy of allRecognizedCodes, so only the removed
+ * codes have to be sent in addition.
+ *
+ * Whenever the mirror can not be updated that way (first result, the session was cleared, codes
+ * appeared that were never newly recognized) a new epoch starts and the full allRecognizedCodes
+ * are sent once, replacing the mirror.
+ *
+ * Codes are identified by symbology and data, the same way on both sides. Not thread-safe, it is
+ * only used from the thread delivering the didScan results.
+ */
+class SessionDeltaTracker {
+
+    static class Delta {
+        final int epoch;
+        // Whether the full allRecognizedCodes have to be sent, starting a new epoch.
+        final boolean snapshot;
+        // The {symbology, data} of the codes that have been removed from allRecognizedCodes.
+        final List<String[]> removedCodes;
+
+        Delta(int epoch, boolean snapshot, List<String[]> removedCodes) {
+            this.epoch = epoch;
+            this.snapshot = snapshot;
+            this.removedCodes = removedCodes;
+        }
+    }
+
+    private static final List<String[]> NO_REMOVED_CODES = Collections.emptyList();
+
+    // The known codes mapped to themselves, to get at their marks.
+    private Map<CodeKey, CodeKey> mKnownCodes = null;
+    private int mEpoch = 0;
+    // Incremented with every update, the known codes still in the session are marked with it.
+    private int mMark = 0;
+    // Reused to look up the codes of the session without creating keys.
+    private final CodeKey mProbe = new CodeKey(null, null);
+
+
+    /**
+     * Forgets the codes known to the JS side, e.g. because results were delivered with the full
+     * session in between. The next update starts a new epoch.
+     */
+    void invalidate() {
+        mKnownCodes = null;
+    }
+
+    Delta update(ScanSession session) {
+        List<Barcode> allCodes = session.getAllRecognizedCodes();
+        if (mKnownCodes == null || (allCodes.isEmpty() && !mKnownCodes.isEmpty())) {
+            return startEpoch(allCodes);
+        }
+        for (Barcode code : session.getNewlyRecognizedCodes()) {
+            addKnownCode(code);
+        }
+        // marks every known code that is still in the session, codes that are in the session
+        // several times are counted once.
+        mMark++;
+        int markedCount = 0;
+        for (Barcode code : allCodes) {
+            CodeKey known = mKnownCodes.get(mProbe.set(code.getSymbologyName(), code.getData()));
+            if (known == null) {
+                // the code appeared without being newly recognized.
+                return startEpoch(allCodes);
+            }
+            if (known.mark != mMark) {
+                known.mark = mMark;
+                markedCount++;
+            }
+        }
+        if (markedCount == mKnownCodes.size()) {
+            // the common case, the session only grew by the newly recognized codes.
+            return new Delta(mEpoch, false, NO_REMOVED_CODES);
+        }
+
+        List<String[]> removedCodes = new ArrayList<String[]>();
+        for (Iterator<CodeKey> iter = mKnownCodes.keySet().iterator(); iter.hasNext(); ) {
+            CodeKey key = iter.next();
+            if (key.mark != mMark) {
+                removedCodes.add(new String[]{key.symbology, key.data});
+                iter.remove();
+            }
+        }
+        return new Delta(mEpoch, false, removedCodes);
+    }
+
+    private Delta startEpoch(List<Barcode> allCodes) {
+        mKnownCodes = new HashMap<CodeKey, CodeKey>(Math.max(16, allCodes.size() * 2));
+        for (Barcode code : allCodes) {
+            addKnownCode(code);
+        }
+        mEpoch++;
+        return new Delta(mEpoch, true, NO_REMOVED_CODES);
+    }
+
+    private void addKnownCode(Barcode code) {
+        if (!mKnownCodes.containsKey(mProbe.set(code.getSymbologyName(), code.getData()))) {
+            CodeKey key = new CodeKey(code.getSymbologyName(), code.getData());
+            mKnownCodes.put(key, key);
+        }
+    }
+
+    /**
+     * Identifies a code by symbology and data, the mark is not part of the identity.
+     */
+    private static class CodeKey {
+
+        String symbology;
+        String data;
+        int mark;
+
+
+        CodeKey(String symbology, String data) {
+            this.symbology = symbology;
+            this.data = data;
+        }
+
+        CodeKey set(String symbology, String data) {
+            this.symbology = symbology;
+            this.data = data;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof CodeKey)) {
+                return false;
+            }
+            CodeKey key = (CodeKey) other;
+            return equal(symbology, key.symbology) && equal(data, key.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (symbology == null ? 0 : symbology.hashCode())
+                    + (data == null ? 0 : data.hashCode());
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
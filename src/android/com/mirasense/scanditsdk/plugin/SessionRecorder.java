@@ -0,0 +1,403 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import android.content.Context;
+import android.graphics.Point;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.scandit.barcodepicker.ScanSession;
+import com.scandit.recognition.Barcode;
+import com.scandit.recognition.Quadrilateral;
+import com.scandit.recognition.TrackedBarcode;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records the sessions and frames the engine passes to didScan and didProcess, so that scanning
+ * that is slow in the field can be replayed and benchmarked on a JVM (see SessionReplayBenchmark
+ * in src/android/benchmark). Enabled with the recordSession option passed to show().
+ *
+ * The records are appended to memory-mapped files of recordingMaxFileBytes in the
+ * scandit-recordings directory of the app files. Appending a record only copies it into the
+ * mapping, the kernel writes it to disk, also if the app is killed. When a record does not fit
+ * anymore, the file is truncated to its records and the next one is started. Only the newest
+ * recordingMaxFiles files are kept, including the ones of earlier sessions.
+ *
+ * Layout of a file:
+ *  header:  MAGIC:u32 VERSION:u32 record*
+ *  record:  type:u8 timestamp:i64 sessionLength:u32 session [width:u32 height:u32 frame]
+ *  session: didScan: newlyRecognizedCodes:codes newlyLocalizedCodes:codes
+ *                    allRecognizedCodes:codes
+ *           didProcess: matrixScan:u8 newlyRecognizedCodes:codes trackedCodes:codes
+ *  codes:   count:u32 code*, count -1 if the session has no tracked codes
+ *  code:    uniqueId:i64 symbology:i32 symbologyName:str data:str rawData:bytes location:quad
+ *           recognized:u8 compositeFlag:i32 gs1DataCarrier:u8 [predictedLocation:quad]
+ *  str/bytes: length:u32 followed by the (UTF-8 encoded) bytes, length -1 for null
+ *  quad:    topLeft, topRight, bottomLeft, bottomRight as x:i32 y:i32 pairs
+ *
+ * The type is TYPE_DID_SCAN or TYPE_DID_PROCESS and written last, a zero type marks the end of a
+ * file that was not truncated. The timestamp is the System.nanoTime() of the callback. Only
+ * didProcess records have the NV21 frame of width * height * 3 / 2 bytes, it is downsampled by the
+ * recordingDownsample option and the locations are scaled accordingly. Only the tracked codes have
+ * the predicted location.
+ *
+ * The records are written on the engine thread. Frames are copied into the mapping without
+ * intermediate buffers, which costs as much as the copy the frame export makes anyway.
+ */
+class SessionRecorder {
+
+    static final int MAGIC = 0x53435243;
+    static final int VERSION = 1;
+    static final byte TYPE_END = 0;
+    static final byte TYPE_DID_SCAN = 1;
+    static final byte TYPE_DID_PROCESS = 2;
+    static final int NO_DOWNSAMPLING = 1;
+    static final long DEFAULT_MAX_FILE_BYTES = 64 * 1024 * 1024;
+    static final int DEFAULT_MAX_FILES = 4;
+
+    private static final String DIRECTORY = "scandit-recordings";
+    private static final String SUFFIX = ".rec";
+    private static final int FILE_HEADER_BYTES = 4 + 4;
+    private static final int RECORD_HEADER_BYTES = 1 + 8 + 4;
+    private static final int FRAME_HEADER_BYTES = 4 + 4;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+    private final int mDownsample;
+    private final long mMaxFileBytes;
+    private final int mMaxFiles;
+    // The files of a recorder are named after its creation and numbered.
+    private final long mCreatedMillis = System.currentTimeMillis();
+    private int mFileCount = 0;
+    private FileChannel mChannel;
+    private MappedByteBuffer mBuffer;
+    // The session of the record that is written.
+    private final ReusableOutputStream mSession = new ReusableOutputStream(0);
+    // One row of a downsampled frame.
+    private byte[] mRow;
+    private boolean mStopped = false;
+    private long mDroppedRecords = 0;
+
+
+    /**
+     * Returns a recorder with the options passed to show(), null if recordSession is not set.
+     */
+    static SessionRecorder fromOptions(Context context, Bundle options) {
+        if (!DeliveryParamParser.shouldRecordSession(options)) {
+            return null;
+        }
+        return new SessionRecorder(new File(context.getFilesDir(), DIRECTORY),
+                DeliveryParamParser.getRecordingDownsample(options, NO_DOWNSAMPLING),
+                DeliveryParamParser.getRecordingMaxFileBytes(options, DEFAULT_MAX_FILE_BYTES),
+                DeliveryParamParser.getRecordingMaxFiles(options, DEFAULT_MAX_FILES));
+    }
+
+    SessionRecorder(File directory, int downsample, long maxFileBytes, int maxFiles) {
+        mDirectory = directory;
+        mDownsample = downsample;
+        mMaxFileBytes = maxFileBytes;
+        mMaxFiles = maxFiles;
+    }
+
+    synchronized void recordDidScan(ScanSession session) {
+        if (mStopped) {
+            return;
+        }
+        long now = System.nanoTime();
+        mSession.reset();
+        writeCodes(session.getNewlyRecognizedCodes(), false);
+        writeCodes(session.getNewlyLocalizedCodes(), false);
+        writeCodes(session.getAllRecognizedCodes(), false);
+        append(TYPE_DID_SCAN, now, null, 0, 0);
+    }
+
+    /**
+     * Records the frame and the session, matrixScan tells how the controller handles them.
+     */
+    synchronized void recordDidProcess(byte[] frame, int width, int height, ScanSession session,
+                                       boolean matrixScan) {
+        if (mStopped) {
+            return;
+        }
+        long now = System.nanoTime();
+        mSession.reset();
+        mSession.write(matrixScan ? 1 : 0);
+        writeCodes(session.getNewlyRecognizedCodes(), false);
+        writeCodes(session.getTrackedCodes() != null ? session.getTrackedCodes().values() : null,
+                true);
+        append(TYPE_DID_PROCESS, now, frame, width, height);
+    }
+
+    /**
+     * Truncates the current file, records passed afterwards are ignored.
+     */
+    synchronized void close() {
+        mStopped = true;
+        try {
+            finishFile();
+        } catch (IOException e) {
+            Log.e("ScanditSDK", "Failed to finish the session recording");
+            e.printStackTrace();
+        }
+    }
+
+    private void writeCodes(Collection<? extends Barcode> codes, boolean tracked) {
+        if (codes == null) {
+            mSession.writeInt(-1);
+            return;
+        }
+        mSession.writeInt(codes.size());
+        for (Barcode code : codes) {
+            mSession.writeLong(FrameExporter.uniqueId(code));
+            mSession.writeInt(code.getSymbology());
+            writeString(code.getSymbologyName());
+            writeString(code.getData());
+            writeBytes(code.getRawData());
+            writeQuad(code.getLocation());
+            mSession.write(code.isRecognized() ? 1 : 0);
+            mSession.writeInt(code.getCompositeFlag());
+            mSession.write(code.isGs1DataCarrier() ? 1 : 0);
+            if (tracked) {
+                writeQuad(((TrackedBarcode) code).getPredictedLocation());
+            }
+        }
+    }
+
+    private void writeString(String value) {
+        writeBytes(value != null ? value.getBytes(UTF_8) : null);
+    }
+
+    private void writeBytes(byte[] value) {
+        if (value == null) {
+            mSession.writeInt(-1);
+            return;
+        }
+        mSession.writeInt(value.length);
+        mSession.write(value, 0, value.length);
+    }
+
+    private void writeQuad(Quadrilateral quad) {
+        for (Point corner : new Point[]{ quad.top_left, quad.top_right, quad.bottom_left,
+                quad.bottom_right }) {
+            mSession.writeInt(corner.x / mDownsample);
+            mSession.writeInt(corner.y / mDownsample);
+        }
+    }
+
+    /**
+     * Appends a record with the session in mSession.
+     */
+    private void append(byte type, long timestampNanos, byte[] frame, int width, int height) {
+        int recordWidth = (width / mDownsample) & ~1;
+        int recordHeight = (height / mDownsample) & ~1;
+        long size = RECORD_HEADER_BYTES + mSession.size();
+        if (frame != null) {
+            size += FRAME_HEADER_BYTES + recordWidth * recordHeight * 3 / 2;
+        }
+        if (size > mMaxFileBytes - FILE_HEADER_BYTES) {
+            if (mDroppedRecords++ == 0) {
+                Log.e("ScanditSDK", "Session record of " + size + " bytes does not fit into "
+                        + "recordingMaxFileBytes, dropping it.");
+            }
+            return;
+        }
+        try {
+            if (mBuffer == null || mBuffer.remaining() < size) {
+                startFile();
+            }
+            int start = mBuffer.position();
+            mBuffer.position(start + 1);
+            mBuffer.putLong(timestampNanos);
+            mBuffer.putInt(mSession.size());
+            mBuffer.put(mSession.getBuffer(), 0, mSession.size());
+            if (frame != null) {
+                mBuffer.putInt(recordWidth);
+                mBuffer.putInt(recordHeight);
+                putFrame(frame, width, height, recordWidth, recordHeight);
+            }
+            // only complete records have a type.
+            mBuffer.put(start, type);
+        } catch (IOException e) {
+            Log.e("ScanditSDK", "Failed to record the session, stopping the recording");
+            e.printStackTrace();
+            close();
+        }
+    }
+
+    private void putFrame(byte[] frame, int width, int height, int recordWidth,
+                          int recordHeight) {
+        if (mDownsample == NO_DOWNSAMPLING) {
+            if (recordWidth == width && recordHeight == height) {
+                mBuffer.put(frame, 0, width * height * 3 / 2);
+                return;
+            }
+            // odd sizes are cropped to the even size of the record header, row by row.
+            for (int y = 0; y < recordHeight; y++) {
+                mBuffer.put(frame, y * width, recordWidth);
+            }
+            for (int y = 0; y < recordHeight / 2; y++) {
+                mBuffer.put(frame, width * height + y * width, recordWidth);
+            }
+            return;
+        }
+        if (mRow == null || mRow.length < recordWidth) {
+            mRow = new byte[recordWidth];
+        }
+        for (int y = 0; y < recordHeight; y++) {
+            int row = y * mDownsample * width;
+            for (int x = 0; x < recordWidth; x++) {
+                mRow[x] = frame[row + x * mDownsample];
+            }
+            mBuffer.put(mRow, 0, recordWidth);
+        }
+        // the VU pair of every 2x2 block is taken from the block of the frame at the same
+        // position.
+        for (int y = 0; y < recordHeight / 2; y++) {
+            int row = width * height + y * mDownsample * width;
+            for (int x = 0; x < recordWidth; x += 2) {
+                mRow[x] = frame[row + x * mDownsample];
+                mRow[x + 1] = frame[row + x * mDownsample + 1];
+            }
+            mBuffer.put(mRow, 0, recordWidth);
+        }
+    }
+
+    private void startFile() throws IOException {
+        finishFile();
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + mDirectory);
+        }
+        // make room for the new file.
+        File[] files = recordings(mDirectory);
+        for (int i = 0; i <= files.length - mMaxFiles; i++) {
+            if (!files[i].delete()) {
+                Log.e("ScanditSDK", "Unable to delete the session recording " + files[i]);
+            }
+        }
+        File file = new File(mDirectory, String.format(Locale.US, "session-%013d-%04d%s",
+                mCreatedMillis, mFileCount++, SUFFIX));
+        mChannel = new RandomAccessFile(file, "rw").getChannel();
+        mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, mMaxFileBytes);
+        mBuffer.putInt(MAGIC);
+        mBuffer.putInt(VERSION);
+    }
+
+    private void finishFile() throws IOException {
+        if (mChannel == null) {
+            return;
+        }
+        FileChannel channel = mChannel;
+        int length = mBuffer.position();
+        mChannel = null;
+        mBuffer = null;
+        try {
+            channel.truncate(length);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * A record read back from a recording.
+     */
+    static class Record {
+
+        final byte type;
+        final long timestampNanos;
+        // The session in the layout of the type.
+        final byte[] session;
+        // The NV21 frame of didProcess records, null for didScan records.
+        final byte[] frame;
+        final int width;
+        final int height;
+
+
+        Record(byte type, long timestampNanos, byte[] session, byte[] frame, int width,
+               int height) {
+            this.type = type;
+            this.timestampNanos = timestampNanos;
+            this.session = session;
+            this.frame = frame;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Returns the recordings in the directory, oldest first.
+     */
+    static File[] recordings(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SUFFIX);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Reads all the records of a recording. Reading stops at the first incomplete record, i.e.
+     * at the end of a file the app was killed while writing to.
+     */
+    static List<Record> read(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            MappedByteBuffer buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                    input.length());
+            if (buffer.remaining() < FILE_HEADER_BYTES || buffer.getInt() != MAGIC
+                    || buffer.getInt() != VERSION) {
+                throw new IOException(file + " is not a session recording of version " + VERSION);
+            }
+            List<Record> records = new ArrayList<Record>();
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                byte type = buffer.get();
+                if (type == TYPE_END) {
+                    break;
+                }
+                long timestampNanos = buffer.getLong();
+                byte[] session = new byte[buffer.getInt()];
+                buffer.get(session);
+                byte[] frame = null;
+                int width = 0;
+                int height = 0;
+                if (type == TYPE_DID_PROCESS) {
+                    width = buffer.getInt();
+                    height = buffer.getInt();
+                    frame = new byte[width * height * 3 / 2];
+                    buffer.get(frame);
+                }
+                records.add(new Record(type, timestampNanos, session, frame, width, height));
+            }
+            return records;
+        } finally {
+            input.close();
+        }
+    }
+}
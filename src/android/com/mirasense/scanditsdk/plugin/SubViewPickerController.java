@@ -36,7 +36,6 @@ import com.scandit.barcodepicker.ScanSettings;
 import com.scandit.barcodepicker.ocr.RecognizedText;
 import com.scandit.barcodepicker.ocr.TextRecognitionListener;
 import com.scandit.base.util.JSONParseException;
-import com.scandit.recognition.TrackedBarcode;
 
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaPlugin;
@@ -46,11 +45,8 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -71,16 +67,15 @@ public class SubViewPickerController extends PickerControllerBase implements
     private SubViewPickerOrientationHandler mOrientationHandler = null;
     private boolean mContinuousMode = false;
     private boolean mIsDidScanDefined = false;
-    private boolean mShouldPassBarcodeFrame = false;
-    private boolean mCloseWhenDidScanCallbackFinishes = false;
+    private final PickerResultHandler mResultHandler = new PickerResultHandler(this);
+    // null unless the session is recorded.
+    private volatile SessionRecorder mRecorder = null;
     private AtomicBoolean mPendingClose = new AtomicBoolean(false);
     // Can't use Size, because the class is not available in all the releases we support.
     // chosen such that dim.x <= dim.y
     private Point mScreenDimensions = null;
     private List<Long> mRejectedCodeIds;
 
-    private Set<Long> mLastFrameTrackedCodeIds = new HashSet<Long>();
-    private List<Long> mRejectedTrackedCodeIds;
     private WeakReference<ResizeScannerInterface> resizeListener = new WeakReference<ResizeScannerInterface>(null);
 
     SubViewPickerController(CordovaPlugin plugin, CallbackContext callbacks) {
@@ -108,9 +103,21 @@ public class SubViewPickerController extends PickerControllerBase implements
         mPendingClose.set(false);
         mContinuousMode = PhonegapParamParser.shouldRunInContinuousMode(options);
         mIsDidScanDefined = PhonegapParamParser.isDidScanDefined(options);
-        mShouldPassBarcodeFrame = PhonegapParamParser.shouldPassBarcodeFrame(options);
+        FrameExporter frameExporter = mResultHandler.getFrameExporter();
+        frameExporter.setFormat(FrameFormat.fromOptions(options));
+        frameExporter.setPolicy(FrameExportPolicy.fromOptions(options));
+        frameExporter.setStore(FrameStore.getInstance(mPlugin.cordova.getActivity(), options));
+        FramePool.getInstance().setCapacity(DeliveryParamParser.getFramePoolCapacity(options,
+                FramePool.DEFAULT_CAPACITY));
+        setResultCallbackTimeout(DeliveryParamParser.getResultCallbackTimeout(options,
+                ADAPTIVE_RESULT_CALLBACK_TIMEOUT));
+        setPipelinedEvents(DeliveryParamParser.getPipelinedEvents(options));
+        setEventBatchInterval(DeliveryParamParser.getEventBatchInterval(options));
+        mResultHandler.reset(ResultFormat.fromOptions(options),
+                PhonegapParamParser.shouldPassBarcodeFrame(options));
+        closeRecorder();
+        mRecorder = SessionRecorder.fromOptions(mPlugin.cordova.getActivity(), options);
         mOrientationHandler = new SubViewPickerOrientationHandler(Looper.getMainLooper(), mPlugin, null);
-        mCloseWhenDidScanCallbackFinishes = false;
         mOrientationHandler.start(true);
         final Activity pluginActivity = mPlugin.cordova.getActivity();
         DisplayMetrics display = pluginActivity.getApplicationContext().getResources().getDisplayMetrics();
@@ -167,16 +174,6 @@ public class SubViewPickerController extends PickerControllerBase implements
         });
     }
 
-    @Override
-    public void finishDidScanCallback(JSONArray data) {
-        super.finishDidScanCallback(data);
-        // deal with calls to cancel in the didScan callback.
-        if (mCloseWhenDidScanCallbackFinishes) {
-            mCloseWhenDidScanCallbackFinishes = false;
-            this.close();
-        }
-    }
-
     @Override
     protected void setRejectedCodeIds(List<Long> rejectedCodeIds) {
         mRejectedCodeIds = rejectedCodeIds;
@@ -184,7 +181,7 @@ public class SubViewPickerController extends PickerControllerBase implements
 
     @Override
     protected void setRejectedTrackedCodeIds(List<Long> rejectedCodeIds) {
-        mRejectedTrackedCodeIds = rejectedCodeIds;
+        mResultHandler.setRejectedTrackedCodeIds(rejectedCodeIds);
     }
 
     @Override
@@ -234,6 +231,23 @@ public class SubViewPickerController extends PickerControllerBase implements
         });
     }
 
+    @Override
+    public void updateResultFormat(Bundle options) {
+        mResultHandler.updateResultFormat(options);
+    }
+
+    @Override
+    public void updateFrameExportPolicy(Bundle options) {
+        FrameExporter frameExporter = mResultHandler.getFrameExporter();
+        frameExporter.setPolicy(frameExporter.getPolicy().withOptions(options));
+    }
+
+    @Override
+    public JSONObject getCoordinateTransform() {
+        if (mPicker == null) return null;
+        return mResultHandler.getCoordinateTransform(mPicker).toJson();
+    }
+
     @Override
     public void updateLayout(final Bundle layoutOptions) {
         final Activity pluginActivity = mPlugin.cordova.getActivity();
@@ -294,7 +308,7 @@ public class SubViewPickerController extends PickerControllerBase implements
     public void didEnter(String entry) {
         JSONArray args = Marshal.createEventArgs(ScanditSDK.DID_MANUAL_SEARCH_EVENT, entry);
         PluginResult result = Marshal.createOkResult(args);
-        mCallbackContext.sendPluginResult(result);
+        sendPluginResult(result);
         if (!mContinuousMode) {
             this.close();
         }
@@ -314,22 +328,20 @@ public class SubViewPickerController extends PickerControllerBase implements
         mPickerStateMachine.getPicker().setTextRecognitionListener(null);
         mPickerStateMachine.getPicker().setPropertyChangeListener(null);
 
-        if (isResultCallbackInFlight()) {
-            // we get here if the didScan callback is still in progress. We need to delay
+        if (deferCloseWhileResultCallbackInFlight()) {
+            // we get here if a result callback is still in progress. We need to delay
             // processing the cancel call to avoid a dead-lock. The picker will be closed
-            // (removed) when finishDidScanCallback is called.
-            mCloseWhenDidScanCallbackFinishes = true;
+            // (removed) when the engine thread returns from the callback.
             return;
         }
         // say that there is a pending close.
         mPendingClose.set(true);
-        mCloseWhenDidScanCallbackFinishes = false;
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
                 mOrientationHandler.stop();
                 internalRemoveSubviewPicker();
-                mCallbackContext.sendPluginResult(Marshal.createCancel());
+                sendCancelResult();
                 mPendingClose.set(false);
             }
         });
@@ -375,12 +387,20 @@ public class SubViewPickerController extends PickerControllerBase implements
         }
         mLayout = null;
         mPickerStateMachine = null;
+        closeRecorder();
         ResizeScannerInterface listener = resizeListener.get();
         if (listener != null) {
             listener.scannerDismissed();
         }
     }
 
+    private void closeRecorder() {
+        SessionRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.close();
+        }
+    }
+
     private void removeSubviewPicker() {
         this.runOnUiThread(new Runnable() {
             public void run() {
@@ -390,7 +410,7 @@ public class SubViewPickerController extends PickerControllerBase implements
     }
 
     private void sendRuntimeError(String error) {
-        mCallbackContext.sendPluginResult(Marshal.createFailResult(error));
+        sendPluginResult(Marshal.createFailResult(error));
     }
 
     private ViewGroup getPickerParent() {
@@ -428,17 +448,17 @@ public class SubViewPickerController extends PickerControllerBase implements
 
     @Override
     public void didScan(ScanSession session) {
+        SessionRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.recordDidScan(session);
+        }
         // don't do anything if:
         // there is a pending close operation (otherwise we will deadlock)
         // or the didScan callback is undefined
         if (mPendingClose.get() || !mIsDidScanDefined) {
             return;
         }
-        JSONArray eventArgs = Marshal.createEventArgs(ScanditSDK.DID_SCAN_EVENT,
-                ResultRelay.jsonForSession(session, mPicker));
-        PluginResult result = Marshal.createOkResult(eventArgs);
-
-        int nextState = sendPluginResultBlocking(result);
+        int nextState = mResultHandler.didScan(session, mPicker);
         if (!mContinuousMode) {
             nextState = PickerStateMachine.PAUSED;
         }
@@ -451,63 +471,18 @@ public class SubViewPickerController extends PickerControllerBase implements
 
     @Override
     public void didProcess(byte[] bytes, int width, int height, ScanSession session) {
+        boolean matrixScan = mPickerStateMachine == null
+                || mPickerStateMachine.isMatrixScanEnabled();
+        SessionRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.recordDidProcess(bytes, width, height, session, matrixScan);
+        }
         // don't do anything if there is a pending close operation. otherwise we will deadlock
         if (mPendingClose.get()) {
             return;
         }
 
-        if ((mPickerStateMachine != null && !mPickerStateMachine.isMatrixScanEnabled())) {
-            // Call didProcessFrame only when new codes have been recognized.
-            if (session.getNewlyRecognizedCodes().size() > 0) {
-                returnFrameBufferIfWanted(bytes, width, height);
-            }
-            return;
-        }
-
-        // If tracked codes are null for whatever reason, there is nothing more to do.
-        if (session.getTrackedCodes() == null) {
-            return;
-        }
-
-        Map<Long, TrackedBarcode> trackedCodes = session.getTrackedCodes();
-        List<TrackedBarcode> newlyTrackedCodes = new ArrayList<TrackedBarcode>();
-        Set<Long> recognizedCodeIds = new HashSet<Long>();
-
-        for (Map.Entry<Long, TrackedBarcode> entry : trackedCodes.entrySet()) {
-            // Check if it's a new identifier.
-            if (entry.getValue().isRecognized()) {
-                recognizedCodeIds.add(entry.getKey());
-                if (!mLastFrameTrackedCodeIds.contains(entry.getKey())) {
-                    // Add the new identifier.
-                    mLastFrameTrackedCodeIds.add(entry.getKey());
-                    newlyTrackedCodes.add(entry.getValue());
-                }
-            }
-        }
-        // Update the recognized code ids for next frame.
-        mLastFrameTrackedCodeIds = recognizedCodeIds;
-
-        if (newlyTrackedCodes.size() > 0) {
-            JSONArray eventArgs = Marshal.createEventArgs(ScanditSDK.DID_RECOGNIZE_NEW_CODES,
-                    ResultRelay.jsonForTrackedCodes(newlyTrackedCodes, mPicker));
-            PluginResult result = Marshal.createOkResult(eventArgs);
-            sendPluginResultBlocking(result);
-            Marshal.rejectTrackedCodes(session, mRejectedTrackedCodeIds);
-
-            // Call didProcessFrame only when new codes have started to be tracked.
-            returnFrameBufferIfWanted(bytes, width, height);
-        }
-    }
-
-    private void returnFrameBufferIfWanted(byte[] bytes, int width, int height) {
-        if (mShouldPassBarcodeFrame) {
-            String base64Data = SampleBufferConverter.base64StringFromFrame(bytes, width, height);
-
-            JSONArray args = Marshal.createEventArgs(ScanditSDK.DID_PROCESS_FRAME,
-                    ResultRelay.jsonForDidProcessFrame(base64Data));
-            PluginResult result = Marshal.createOkResult(args);
-            mCallbackContext.sendPluginResult(result);
-        }
+        mResultHandler.didProcess(bytes, width, height, session, matrixScan, mPicker);
     }
 
     @Override
@@ -516,11 +491,12 @@ public class SubViewPickerController extends PickerControllerBase implements
             // return if there is a pending close. Otherwise we might deadlock
             return TextRecognitionListener.PICKER_STATE_STOPPED;
         }
+        int callbackId = beginResultCallback(RESULT_EVENT_DID_RECOGNIZE_TEXT);
         JSONArray eventArgs = Marshal.createEventArgs(ScanditSDK.DID_RECOGNIZE_TEXT_EVENT,
-                ResultRelay.jsonForRecognizedText(recognizedText));
+                ResultRelay.jsonForRecognizedText(recognizedText, callbackId));
         PluginResult result = Marshal.createOkResult(eventArgs);
 
-        int nextState = sendPluginResultBlocking(result);
+        int nextState = sendResultCallback(result, RESULT_EVENT_DID_RECOGNIZE_TEXT, callbackId);
         if (!mContinuousMode) {
             nextState = PickerStateMachine.PAUSED;
         }
@@ -542,28 +518,26 @@ public class SubViewPickerController extends PickerControllerBase implements
     @Override
     public void pickerEnteredState(BarcodePickerWithSearchBar picker, int newState) {
         JSONArray didChangeStateArgs = Marshal.createEventArgs(ScanditSDK.DID_CHANGE_STATE_EVENT, newState);
-        mCallbackContext.sendPluginResult(Marshal.createOkResult(didChangeStateArgs));
+        sendEvent(didChangeStateArgs);
     }
 
     @Override
     public void pickerSwitchedMatrixScanState(BarcodePickerWithSearchBar picker, boolean matrixScan) {
-        mLastFrameTrackedCodeIds.clear();
+        mResultHandler.clearTrackedCodes();
     }
 
     @Override
     public void onPropertyChange(int name, int newState) {
         JSONArray args = Marshal.createEventArgs(ScanditSDK.DID_CHANGE_PROPERTY,
                 ResultRelay.jsonForPropertyChange(name, newState));
-        PluginResult result = Marshal.createOkResult(args);
-        mCallbackContext.sendPluginResult(result);
+        sendEvent(args);
     }
 
     @Override
     public void failedToValidateLicense(String errorMessage) {
         JSONArray args = Marshal.createEventArgs(ScanditSDK.DID_FAIL_TO_VALIDATE_LICENSE,
                 ResultRelay.jsonForLicenseValidationFail(errorMessage));
-        PluginResult result = Marshal.createOkResult(args);
-        mCallbackContext.sendPluginResult(result);
+        sendEvent(args);
     }
     
     public void setResizeListener(ResizeScannerInterface listener) {
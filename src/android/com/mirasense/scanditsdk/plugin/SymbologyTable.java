@@ -0,0 +1,86 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import com.scandit.recognition.Barcode;
+
+import java.util.Arrays;
+
+/**
+ * Table of the symbology ids (Barcode.getSymbology()) and names sent to the JS side during a
+ * picker session when codes are marshalled with symbologyEncoding: "id". Every entry is sent once,
+ * together with the first result that contains a code of the symbology, afterwards the codes only
+ * carry the id. Scandit.SymbologyTable maps the ids back to the names on the JS side.
+ *
+ * Only a handful of symbologies are enabled at a time, hence the entries are kept in small arrays
+ * that are searched linearly, which doesn't allocate anything per code. Not thread-safe, it is only
+ * used from the thread delivering the results.
+ */
+class SymbologyTable {
+
+    private int[] mIds = new int[16];
+    private String[] mNames = new String[16];
+    private int mCount = 0;
+    // Entries [mSentCount, mCount) have not been sent to the JS side yet.
+    private int mSentCount = 0;
+
+
+    /**
+     * Returns the id of the code's symbology and adds it to the table if it is not known yet.
+     */
+    int idForCode(Barcode code) {
+        int id = code.getSymbology();
+        for (int i = 0; i < mCount; i++) {
+            if (mIds[i] == id) {
+                return id;
+            }
+        }
+        if (mCount == mIds.length) {
+            mIds = Arrays.copyOf(mIds, mCount * 2);
+            mNames = Arrays.copyOf(mNames, mCount * 2);
+        }
+        mIds[mCount] = id;
+        mNames[mCount] = code.getSymbologyName();
+        mCount++;
+        return id;
+    }
+
+    int size() {
+        return mCount;
+    }
+
+    /**
+     * The entries [getFirstUnsentIndex(), size()) have not been sent to the JS side yet.
+     */
+    int getFirstUnsentIndex() {
+        return mSentCount;
+    }
+
+    int getId(int index) {
+        return mIds[index];
+    }
+
+    String getName(int index) {
+        return mNames[index];
+    }
+
+    void markAllSent() {
+        mSentCount = mCount;
+    }
+
+    /**
+     * Marks all entries as unsent, e.g. for a new picker session.
+     */
+    void reset() {
+        mSentCount = 0;
+    }
+}
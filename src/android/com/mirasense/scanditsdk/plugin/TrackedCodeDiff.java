@@ -0,0 +1,229 @@
+//  Copyright 2016 Scandit AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+//  in compliance with the License. You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software distributed under the
+//  License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+//  express or implied. See the License for the specific language governing permissions and
+//  limitations under the License.
+package com.mirasense.scanditsdk.plugin;
+
+import com.scandit.recognition.TrackedBarcode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the recognized tracked codes of every MatrixScan frame with the ones of the previous
+ * frame: the newly tracked codes are passed to didRecognizeNewCodes, the ids of the codes that are
+ * still tracked and of the codes that were lost are available as well.
+ *
+ * The ids of the two frames are kept in two open addressing sets of primitive longs that swap
+ * their roles with every frame, the results in arrays and a list that are reused as well. Once
+ * they have grown to the number of codes on screen, a frame allocates nothing but the iterator of
+ * the tracked codes map. The results are valid until the next update.
+ *
+ * Only used on the engine thread, except for clear which may be called from any thread.
+ */
+class TrackedCodeDiff {
+
+    private LongSet mPreviousIds = new LongSet();
+    private LongSet mCurrentIds = new LongSet();
+    private final List<TrackedBarcode> mNewlyTrackedCodes = new ArrayList<TrackedBarcode>();
+    private long[] mStillTrackedIds = new long[LongSet.MIN_CAPACITY];
+    private int mStillTrackedCount = 0;
+    private long[] mLostIds = new long[LongSet.MIN_CAPACITY];
+    private int mLostCount = 0;
+    private volatile boolean mClearRequested = false;
+
+
+    /**
+     * Forgets the codes of the previous frame, so that all the codes of the next frame are new,
+     * e.g. because MatrixScan was switched on or off.
+     */
+    void clear() {
+        mClearRequested = true;
+    }
+
+    /**
+     * Compares the recognized codes among the tracked codes of a frame with the ones of the
+     * previous frame.
+     */
+    void update(Map<Long, TrackedBarcode> trackedCodes) {
+        if (mClearRequested) {
+            mClearRequested = false;
+            mCurrentIds.clear();
+        }
+        // the ids of the last frame become the previous ones.
+        LongSet previousIds = mCurrentIds;
+        mCurrentIds = mPreviousIds;
+        mPreviousIds = previousIds;
+        mCurrentIds.clear();
+        mNewlyTrackedCodes.clear();
+        mStillTrackedCount = 0;
+        for (TrackedBarcode code : trackedCodes.values()) {
+            if (!code.isRecognized()) {
+                continue;
+            }
+            long id = code.getId();
+            mCurrentIds.add(id);
+            if (previousIds.mark(id)) {
+                mStillTrackedIds = append(mStillTrackedIds, mStillTrackedCount++, id);
+            } else {
+                mNewlyTrackedCodes.add(code);
+            }
+        }
+        mLostCount = 0;
+        if (mStillTrackedCount < previousIds.size()) {
+            long[] ids = previousIds.mIds;
+            int[] generations = previousIds.mGenerations;
+            int[] marks = previousIds.mMarks;
+            int generation = previousIds.mGeneration;
+            for (int i = 0; i < ids.length; i++) {
+                if (generations[i] == generation && marks[i] != generation) {
+                    mLostIds = append(mLostIds, mLostCount++, ids[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the recognized codes that were not recognized in the previous frame, in the order
+     * of the tracked codes.
+     */
+    List<TrackedBarcode> getNewlyTrackedCodes() {
+        return mNewlyTrackedCodes;
+    }
+
+    int getStillTrackedCount() {
+        return mStillTrackedCount;
+    }
+
+    /**
+     * Returns the id of a code that was recognized in the previous frame and still is, index is
+     * in [0, getStillTrackedCount()).
+     */
+    long getStillTrackedId(int index) {
+        return mStillTrackedIds[index];
+    }
+
+    int getLostCount() {
+        return mLostCount;
+    }
+
+    /**
+     * Returns the id of a code that was recognized in the previous frame but not anymore, index
+     * is in [0, getLostCount()).
+     */
+    long getLostId(int index) {
+        return mLostIds[index];
+    }
+
+    private static long[] append(long[] ids, int index, long id) {
+        if (index == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+        ids[index] = id;
+        return ids;
+    }
+
+    /**
+     * A set of longs with linear probing. A slot is occupied if its generation is the one of the
+     * set, so clearing the set only increments the generation. The same goes for the marks, which
+     * record the ids found by the next frame.
+     */
+    static class LongSet {
+
+        static final int MIN_CAPACITY = 64;
+
+        private long[] mIds = new long[MIN_CAPACITY];
+        private int[] mGenerations = new int[MIN_CAPACITY];
+        private int[] mMarks = new int[MIN_CAPACITY];
+        private int mShift = 64 - Integer.numberOfTrailingZeros(MIN_CAPACITY);
+        private int mGeneration = 1;
+        private int mSize = 0;
+
+
+        int size() {
+            return mSize;
+        }
+
+        void clear() {
+            mSize = 0;
+            if (++mGeneration == 0) {
+                // the generations wrapped around, slots of old generations must not match.
+                Arrays.fill(mGenerations, 0);
+                Arrays.fill(mMarks, 0);
+                mGeneration = 1;
+            }
+        }
+
+        /**
+         * Marks the id if it is in the set.
+         *
+         * @return whether the id is in the set.
+         */
+        boolean mark(long id) {
+            int index = indexOf(id);
+            if (index < 0) {
+                return false;
+            }
+            mMarks[index] = mGeneration;
+            return true;
+        }
+
+        private int indexOf(long id) {
+            int mask = mIds.length - 1;
+            for (int i = slot(id); mGenerations[i] == mGeneration; i = (i + 1) & mask) {
+                if (mIds[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void add(long id) {
+            if (2 * (mSize + 1) > mIds.length) {
+                grow();
+            }
+            int mask = mIds.length - 1;
+            int i = slot(id);
+            while (mGenerations[i] == mGeneration) {
+                if (mIds[i] == id) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            mIds[i] = id;
+            mGenerations[i] = mGeneration;
+            mSize++;
+        }
+
+        private void grow() {
+            long[] ids = mIds;
+            int[] generations = mGenerations;
+            int generation = mGeneration;
+            mIds = new long[ids.length * 2];
+            mGenerations = new int[ids.length * 2];
+            mMarks = new int[ids.length * 2];
+            mShift--;
+            mGeneration = 1;
+            mSize = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (generations[i] == generation) {
+                    add(ids[i]);
+                }
+            }
+        }
+
+        private int slot(long id) {
+            // Fibonacci hashing, spreads the mostly consecutive ids evenly over the table.
+            return (int) ((id * 0x9E3779B97F4A7C15L) >>> mShift);
+        }
+    }
+}
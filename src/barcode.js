@@ -6,6 +6,54 @@ function Barcode(gs1DataCarrier, recognized) {
     this.isRecognized = function() {
         return recognized;
     }
+    // The raw data is converted on first access only, the native side passes it either as an array
+    // of bytes, as a base64 string or as a Uint8Array (binary result encoding).
+    var rawDataBytes = null;
+    this.getRawDataBytes = function() {
+        if (rawDataBytes === null) {
+            rawDataBytes = Barcode.rawDataToBytes(this.rawData);
+        }
+        return rawDataBytes;
+    }
+    // Codes marshalled with symbologyEncoding: "id" only carry the symbologyId, the name is looked
+    // up in the symbology table on first access.
+    var symbology = undefined;
+    Object.defineProperty(this, "symbology", {
+        enumerable: true,
+        get: function() {
+            if (symbology === undefined && this.symbologyId !== undefined) {
+                symbology = Scandit.SymbologyTable.nameForId(this.symbologyId);
+            }
+            return symbology;
+        },
+        set: function(value) {
+            symbology = value;
+        }
+    });
+}
+
+Barcode.RawDataEncoding = {
+    ARRAY: "array",
+    BASE64: "base64"
+}
+
+Barcode.rawDataToBytes = function(rawData) {
+    if (rawData === undefined || rawData === null) {
+        return new Uint8Array(0);
+    }
+    if (rawData instanceof Uint8Array) {
+        return rawData;
+    }
+    if (typeof rawData === "string") {
+        var decoded = atob(rawData);
+        var bytes = new Uint8Array(decoded.length);
+        for (var i = 0; i < decoded.length; i++) {
+            bytes[i] = decoded.charCodeAt(i);
+        }
+        return bytes;
+    }
+    // Array of signed bytes, the Uint8Array conversion wraps negative values.
+    return new Uint8Array(rawData);
 }
 
 Barcode.Symbology = {
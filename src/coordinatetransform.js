@@ -0,0 +1,38 @@
+// Transform from code locations (camera frame coordinates) to converted locations (picker
+// coordinates in dp), as used by the native side to compute convertedLocation and
+// convertedPredictedLocation. Apps that don't project the converted locations (codeFields option)
+// can use it to convert the locations of the codes they are interested in themselves.
+//
+// The transform changes when the picker is resized or rotated, or when the camera resolution
+// changes, so it should be fetched again after such changes.
+
+function CoordinateTransform(json) {
+    this.matrix = json.matrix;
+    this.density = json.density;
+}
+
+// Fetches the transform of the currently shown picker. failure is called if no picker is shown.
+CoordinateTransform.get = function(success, failure) {
+    cordova.exec(function(json) {
+        success(new CoordinateTransform(json));
+    }, failure, "ScanditSDK", "getCoordinateTransform", []);
+}
+
+CoordinateTransform.prototype.convertPoint = function(point) {
+    var m = this.matrix;
+    var x = point[0];
+    var y = point[1];
+    // truncated the same way as the native converted locations.
+    return [(m[0] * x + m[1] * y + m[2]) | 0, (m[3] * x + m[4] * y + m[5]) | 0];
+}
+
+CoordinateTransform.prototype.convertQuadrilateral = function(quadrilateral) {
+    return {
+        topLeft: this.convertPoint(quadrilateral.topLeft),
+        topRight: this.convertPoint(quadrilateral.topRight),
+        bottomLeft: this.convertPoint(quadrilateral.bottomLeft),
+        bottomRight: this.convertPoint(quadrilateral.bottomRight)
+    };
+}
+
+module.exports = CoordinateTransform;
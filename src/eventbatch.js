@@ -0,0 +1,29 @@
+// Unpacks the eventBatch events the native side sends when the eventBatchInterval option is set.
+// Events JS doesn't have to answer (didChangeState, didChangeProperty, didProcessFrame,
+// didFailToValidateLicense) are then collected for a display frame ("frame") or a number of ms and
+// passed together as
+//
+//   ["eventBatch", [[eventName, argument], ...]]
+//
+// in the order they occurred. Only the last change of every property is kept, e.g. a pinch gesture
+// results in a single relativeZoom change per batch. A single pending event is passed as is.
+
+function EventBatch() {
+}
+
+EventBatch.EVENT_NAME = "eventBatch";
+
+// Calls callback(eventName, argument) for every event of the passed [eventName, argument] event
+// arguments, once for events that are not batched.
+EventBatch.forEach = function(args, callback) {
+    if (args[0] != EventBatch.EVENT_NAME) {
+        callback(args[0], args[1]);
+        return;
+    }
+    var events = args[1];
+    for (var i = 0; i < events.length; i++) {
+        callback(events[i][0], events[i][1]);
+    }
+}
+
+module.exports = EventBatch;
@@ -0,0 +1,32 @@
+// Round trip latencies of the result callbacks that block the native engine thread (didScan,
+// didRecognizeNewCodes, didRecognizeText), measured from passing the result to JS until the
+// callback was finished, how often the engine thread was released because a callback took too long
+// and how many of those callbacks were finished later on (their decisions are dropped). Only
+// callbacks that are not pipelined are measured.
+//
+// get passes an object with one entry per event:
+//
+//   { count, timeouts, lateDecisions, p50, p99, max, buckets: [[upperBoundMs, count], ...] }
+//
+// All times are in ms, the percentiles are estimated from the buckets. The upper bound of the last
+// bucket is -1 (unbounded). The metrics are kept until reset is called or the app is restarted.
+// Unless the resultCallbackTimeout option is passed, the native side adapts the timeout to the p99
+// latencies, so reset also restarts the adaptation.
+//
+// On Android the object also has a framePool entry with the hits and misses of the buffers the
+// frames are copied into (see the framePoolCapacity option):
+//
+//   framePool: { capacity, frameSize, allocated, available, hits, misses }
+
+function ResultCallbackMetrics() {
+}
+
+ResultCallbackMetrics.get = function(success, failure) {
+    cordova.exec(success, failure, "ScanditSDK", "getMetrics", []);
+}
+
+ResultCallbackMetrics.reset = function(success, failure) {
+    cordova.exec(success, failure, "ScanditSDK", "resetMetrics", []);
+}
+
+module.exports = ResultCallbackMetrics;
@@ -0,0 +1,260 @@
+// Decodes results that the native side sends as an ArrayBuffer (resultEncoding: "binary") into
+// the same [eventName, payload] arguments the json encoding produces. The layout is written by
+// BinaryResultWriter.java and must be kept in sync with it.
+//
+// The raw data of codes is returned as a Uint8Array view into the received buffer. Only if
+// options.rawDataEncoding is "array" it is copied into an array of signed bytes like the json
+// encoding passes it, for apps written against that. Optional fields that were not projected
+// through the codeFields option are left out of the codes.
+
+function ResultDecoder() {
+}
+
+ResultDecoder.FORMAT_VERSION = 6;
+
+ResultDecoder.Encoding = {
+    JSON: "json",
+    BINARY: "binary"
+}
+
+ResultDecoder.Event = {
+    1: "didScan",
+    2: "didRecognizeNewCodes"
+}
+
+ResultDecoder.Section = {
+    0: "newlyRecognizedCodes",
+    1: "newlyLocalizedCodes",
+    2: "allRecognizedCodes",
+    3: "newlyTrackedCodes"
+}
+
+ResultDecoder.SECTION_SESSION_DELTA = 4;
+ResultDecoder.SECTION_SYMBOLOGY_TABLE = 5;
+// Present for all result callbacks, the id has to be passed back when finishing the callback.
+ResultDecoder.SECTION_CALLBACK_ID = 6;
+
+ResultDecoder.CodeFlag = {
+    GS1_DATA_CARRIER: 1,
+    RECOGNIZED: 1 << 1,
+    TRACKED: 1 << 2,
+    RAW_DATA: 1 << 3
+}
+
+// must match the FIELD_* values of ResultFormat.java
+ResultDecoder.Field = {
+    LOCATION: 1,
+    CONVERTED_LOCATION: 1 << 1,
+    PREDICTED_LOCATION: 1 << 2,
+    CONVERTED_PREDICTED_LOCATION: 1 << 3,
+    RAW_DATA: 1 << 4,
+    COMPOSITE_FLAG: 1 << 5,
+    GS1_DATA_CARRIER: 1 << 6
+}
+
+// Set in the header fields if the codes carry the symbologyId instead of the symbology name.
+ResultDecoder.FIELDS_SYMBOLOGY_ID = 1 << 7;
+
+ResultDecoder.isBinaryResult = function(message) {
+    return message instanceof ArrayBuffer;
+}
+
+ResultDecoder.decode = function(buffer, options) {
+    var rawDataAsArray = !!options && options.rawDataEncoding == "array";
+    var reader = new ResultDecoder.Reader(buffer);
+    if (reader.readUint8() != 0x53 || reader.readUint8() != 0x42 || reader.readUint8() != 0x52) {
+        throw new Error("Not a Scandit binary result");
+    }
+    var version = reader.readUint8();
+    if (version != ResultDecoder.FORMAT_VERSION) {
+        throw new Error("Unsupported binary result version " + version);
+    }
+    var eventName = ResultDecoder.Event[reader.readUint8()];
+    var fields = reader.readUint8();
+    var sectionCount = reader.readUint8();
+    var payload = {};
+    for (var i = 0; i < sectionCount; i++) {
+        var sectionId = reader.readUint8();
+        if (sectionId == ResultDecoder.SECTION_SESSION_DELTA) {
+            ResultDecoder.decodeSessionDelta(reader, payload);
+            continue;
+        }
+        if (sectionId == ResultDecoder.SECTION_SYMBOLOGY_TABLE) {
+            ResultDecoder.decodeSymbologyTable(reader, payload);
+            continue;
+        }
+        if (sectionId == ResultDecoder.SECTION_CALLBACK_ID) {
+            payload.callbackId = reader.readUint32();
+            continue;
+        }
+        payload[ResultDecoder.Section[sectionId]] = ResultDecoder.decodeCodes(reader, fields, rawDataAsArray);
+    }
+    return [eventName, payload];
+}
+
+ResultDecoder.decodeCodes = function(reader, fields, rawDataAsArray) {
+    var Field = ResultDecoder.Field;
+    var count = reader.readUint32();
+    var codes = new Array(count);
+    for (var i = 0; i < count; i++) {
+        var flags = reader.readUint8();
+        var code = {
+            recognized: (flags & ResultDecoder.CodeFlag.RECOGNIZED) != 0
+        };
+        if (fields & Field.GS1_DATA_CARRIER) {
+            code.gs1DataCarrier = (flags & ResultDecoder.CodeFlag.GS1_DATA_CARRIER) != 0;
+        }
+        if (fields & Field.COMPOSITE_FLAG) {
+            code.compositeFlag = reader.readInt32();
+        }
+        code.uniqueId = reader.readInt64();
+        if (fields & ResultDecoder.FIELDS_SYMBOLOGY_ID) {
+            code.symbologyId = reader.readInt32();
+        } else {
+            code.symbology = reader.readString();
+        }
+        code.data = reader.readString();
+        if (flags & ResultDecoder.CodeFlag.RAW_DATA) {
+            if (rawDataAsArray) {
+                code.rawData = Array.prototype.slice.call(reader.readInt8Array());
+            } else {
+                code.rawData = reader.readUint8Array();
+            }
+        }
+        if (fields & Field.LOCATION) {
+            code.location = reader.readQuadrilateral();
+        }
+        if (fields & Field.CONVERTED_LOCATION) {
+            code.convertedLocation = reader.readQuadrilateral();
+        }
+        if (flags & ResultDecoder.CodeFlag.TRACKED) {
+            if (fields & Field.PREDICTED_LOCATION) {
+                code.predictedLocation = reader.readQuadrilateral();
+            }
+            if (fields & Field.CONVERTED_PREDICTED_LOCATION) {
+                code.convertedPredictedLocation = reader.readQuadrilateral();
+            }
+        }
+        codes[i] = code;
+    }
+    return codes;
+}
+
+// Same properties as passed by the json encoding with sessionDelivery: "incremental".
+ResultDecoder.decodeSessionDelta = function(reader, payload) {
+    payload.sessionEpoch = reader.readUint32();
+    var count = reader.readUint32();
+    var removedCodes = new Array(count);
+    for (var i = 0; i < count; i++) {
+        var symbology = reader.readString();
+        removedCodes[i] = {symbology: symbology, data: reader.readString()};
+    }
+    payload.removedCodes = removedCodes;
+}
+
+// Same property as passed by the json encoding with symbologyEncoding: "id".
+ResultDecoder.decodeSymbologyTable = function(reader, payload) {
+    var count = reader.readUint32();
+    var table = {};
+    for (var i = 0; i < count; i++) {
+        var id = reader.readInt32();
+        table[id] = reader.readString();
+    }
+    payload.symbologyTable = table;
+}
+
+ResultDecoder.Reader = function(buffer) {
+    this.buffer = buffer;
+    this.view = new DataView(buffer);
+    this.offset = 0;
+}
+
+ResultDecoder.Reader.prototype.readUint8 = function() {
+    return this.view.getUint8(this.offset++);
+}
+
+ResultDecoder.Reader.prototype.readInt32 = function() {
+    var value = this.view.getInt32(this.offset, true);
+    this.offset += 4;
+    return value;
+}
+
+ResultDecoder.Reader.prototype.readUint32 = function() {
+    var value = this.view.getUint32(this.offset, true);
+    this.offset += 4;
+    return value;
+}
+
+// Ids above 2^53 lose precision, exactly like they do when passed through the json encoding.
+ResultDecoder.Reader.prototype.readInt64 = function() {
+    var low = this.readUint32();
+    var high = this.readInt32();
+    return high * 4294967296 + low;
+}
+
+ResultDecoder.Reader.prototype.readUint8Array = function() {
+    var length = this.readUint32();
+    var bytes = new Uint8Array(this.buffer, this.offset, length);
+    this.offset += length;
+    return bytes;
+}
+
+ResultDecoder.Reader.prototype.readInt8Array = function() {
+    var length = this.readUint32();
+    var bytes = new Int8Array(this.buffer, this.offset, length);
+    this.offset += length;
+    return bytes;
+}
+
+// Strings written as null (length -1) are returned as null, like the json encoding passes them.
+ResultDecoder.Reader.prototype.readString = function() {
+    if (this.view.getInt32(this.offset, true) == -1) {
+        this.offset += 4;
+        return null;
+    }
+    return ResultDecoder.decodeUtf8(this.readUint8Array());
+}
+
+ResultDecoder.Reader.prototype.readPoint = function() {
+    var x = this.readInt32();
+    return [x, this.readInt32()];
+}
+
+ResultDecoder.Reader.prototype.readQuadrilateral = function() {
+    return {
+        topLeft: this.readPoint(),
+        topRight: this.readPoint(),
+        bottomLeft: this.readPoint(),
+        bottomRight: this.readPoint()
+    };
+}
+
+ResultDecoder.decodeUtf8 = function(bytes) {
+    if (typeof TextDecoder !== "undefined") {
+        if (!ResultDecoder.textDecoder) {
+            ResultDecoder.textDecoder = new TextDecoder("utf-8");
+        }
+        return ResultDecoder.textDecoder.decode(bytes);
+    }
+    // Older web views don't have a TextDecoder.
+    var result = "";
+    var i = 0;
+    while (i < bytes.length) {
+        var c = bytes[i++];
+        if (c >= 0xF0) {
+            c = ((c & 0x07) << 18) | ((bytes[i++] & 0x3F) << 12) | ((bytes[i++] & 0x3F) << 6) |
+                (bytes[i++] & 0x3F);
+            c -= 0x10000;
+            result += String.fromCharCode(0xD800 + (c >> 10), 0xDC00 + (c & 0x3FF));
+            continue;
+        } else if (c >= 0xE0) {
+            c = ((c & 0x0F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F);
+        } else if (c >= 0xC0) {
+            c = ((c & 0x1F) << 6) | (bytes[i++] & 0x3F);
+        }
+        result += String.fromCharCode(c);
+    }
+    return result;
+}
+
+module.exports = ResultDecoder;
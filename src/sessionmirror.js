@@ -0,0 +1,78 @@
+// Reconstructs allRecognizedCodes of didScan results that are delivered incrementally
+// (sessionDelivery: "incremental"). In that mode the native side only passes the newly recognized
+// codes, the codes removed from the session and the epoch of the mirror. allRecognizedCodes are
+// only passed when a new epoch starts (first result, cleared session), replacing the mirror.
+//
+// Codes are identified by symbology and data, the mirror keeps the first instance of a code that
+// has been passed for it. Scandit.SymbologyTable.apply has to be called with the payload first.
+//
+// A delta of another epoch than the one of the mirror can't be applied, e.g. because the result
+// that started the epoch was missed. Its payload is flagged with sessionUnsynced and carries no
+// allRecognizedCodes until the native side starts a new epoch.
+
+function SessionMirror() {
+    this.epoch = 0;
+    this.codes = [];
+    this.index = {};
+}
+
+SessionMirror.keyForCode = function(code) {
+    // codes marshalled with symbologyEncoding: "id" only carry the symbologyId.
+    var symbology = code.symbology !== undefined
+        ? code.symbology : Scandit.SymbologyTable.nameForId(code.symbologyId);
+    return symbology + "\u0000" + code.data;
+}
+
+// Updates the mirror with the payload of a didScan result and sets its allRecognizedCodes. Payloads
+// of the full session delivery are returned unchanged.
+SessionMirror.prototype.apply = function(payload) {
+    if (payload.sessionEpoch === undefined) {
+        return payload;
+    }
+    if (payload.allRecognizedCodes !== undefined) {
+        this.reset(payload.sessionEpoch, payload.allRecognizedCodes);
+    } else {
+        if (payload.sessionEpoch != this.epoch) {
+            payload.sessionUnsynced = true;
+            return payload;
+        }
+        this.remove(payload.removedCodes);
+        this.add(payload.newlyRecognizedCodes);
+        payload.allRecognizedCodes = this.codes.slice();
+    }
+    return payload;
+}
+
+SessionMirror.prototype.reset = function(epoch, codes) {
+    this.epoch = epoch;
+    this.codes = [];
+    this.index = {};
+    this.add(codes);
+}
+
+SessionMirror.prototype.add = function(codes) {
+    for (var i = 0; i < codes.length; i++) {
+        var key = SessionMirror.keyForCode(codes[i]);
+        if (!this.index.hasOwnProperty(key)) {
+            this.index[key] = true;
+            this.codes.push(codes[i]);
+        }
+    }
+}
+
+SessionMirror.prototype.remove = function(removedCodes) {
+    if (!removedCodes || removedCodes.length == 0) {
+        return;
+    }
+    var removed = {};
+    for (var i = 0; i < removedCodes.length; i++) {
+        var key = SessionMirror.keyForCode(removedCodes[i]);
+        removed[key] = true;
+        delete this.index[key];
+    }
+    this.codes = this.codes.filter(function(code) {
+        return !removed.hasOwnProperty(SessionMirror.keyForCode(code));
+    });
+}
+
+module.exports = SessionMirror;
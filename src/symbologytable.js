@@ -0,0 +1,31 @@
+// Maps the symbology ids of codes marshalled with symbologyEncoding: "id" back to the symbology
+// names. The native side passes every entry of its table once per picker session as the
+// symbologyTable property of a result, apply has to be called with every result payload before
+// the names of its codes are looked up.
+//
+// The ids are the symbology constants of the native SDK, so entries stay valid across sessions.
+
+function SymbologyTable() {
+}
+
+SymbologyTable.names = {};
+
+SymbologyTable.apply = function(payload) {
+    var table = payload.symbologyTable;
+    if (!table) {
+        return payload;
+    }
+    for (var id in table) {
+        if (table.hasOwnProperty(id)) {
+            SymbologyTable.names[id] = table[id];
+        }
+    }
+    return payload;
+}
+
+SymbologyTable.nameForId = function(id) {
+    var name = SymbologyTable.names[id];
+    return name !== undefined ? name : "unknown";
+}
+
+module.exports = SymbologyTable;